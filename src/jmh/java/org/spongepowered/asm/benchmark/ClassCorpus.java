@@ -0,0 +1,137 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * In-memory store of the classes and resources served by {@link
+ * MixinServiceBenchmark}. Benchmarks populate the corpus (usually using a
+ * {@link CorpusGenerator}) before the mixin subsystem is started, the configs
+ * added to the corpus are offered to the platform as the <tt>MixinConfigs</tt>
+ * of the primary container.
+ */
+public final class ClassCorpus {
+    
+    /**
+     * Class bytecode by internal name
+     */
+    private static final Map<String, byte[]> classes = new ConcurrentHashMap<String, byte[]>();
+    
+    /**
+     * Resources by path
+     */
+    private static final Map<String, byte[]> resources = new ConcurrentHashMap<String, byte[]>();
+    
+    /**
+     * Mixin config resources, in the order they were added
+     */
+    private static final List<String> configs = new ArrayList<String>();
+    
+    private ClassCorpus() {
+    }
+    
+    /**
+     * Write the supplied class and add it to the corpus. Generated classes
+     * only ever merge primitive values at branches, so frames can be computed
+     * without resolving any class hierarchy.
+     * 
+     * @param classNode class to add
+     * @return class bytecode
+     */
+    public static byte[] addClass(ClassNode classNode) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        classNode.accept(writer);
+        byte[] bytes = writer.toByteArray();
+        ClassCorpus.classes.put(classNode.name, bytes);
+        return bytes;
+    }
+    
+    /**
+     * Get the bytecode of a class in the corpus
+     * 
+     * @param name class name, internal or binary
+     * @return class bytecode or null if the class is not in the corpus
+     */
+    public static byte[] getClass(String name) {
+        return ClassCorpus.classes.get(name.replace('.', '/'));
+    }
+    
+    /**
+     * Get the number of classes in the corpus
+     */
+    public static int getClassCount() {
+        return ClassCorpus.classes.size();
+    }
+    
+    /**
+     * Add a resource to the corpus
+     * 
+     * @param path resource path
+     * @param contents resource contents
+     */
+    public static void addResource(String path, String contents) {
+        ClassCorpus.resources.put(path, contents.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Open a resource in the corpus
+     * 
+     * @param path resource path
+     * @return stream or null if the resource is not in the corpus
+     */
+    public static InputStream getResourceAsStream(String path) {
+        byte[] contents = ClassCorpus.resources.get(path);
+        return contents != null ? new ByteArrayInputStream(contents) : null;
+    }
+    
+    /**
+     * Add a mixin config to the corpus
+     * 
+     * @param path config resource path
+     * @param json config contents
+     */
+    public static synchronized void addConfig(String path, String json) {
+        ClassCorpus.addResource(path, json);
+        ClassCorpus.configs.add(path);
+    }
+    
+    /**
+     * Get the mixin configs in the corpus
+     */
+    public static synchronized List<String> getConfigs() {
+        return new ArrayList<String>(ClassCorpus.configs);
+    }
+    
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.SearchType;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Traversal;
+import org.spongepowered.asm.transformers.MixinClassWriter;
+
+/**
+ * Measures lookups which walk the class hierarchy using {@link ClassInfo}, and
+ * {@link MixinClassWriter#getCommonSuperClass} which is called for every
+ * frame merge of reference types when classes are written. Two target classes
+ * share a chain of base classes of the specified depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClassInfoBenchmark {
+    
+    /**
+     * Writer which exposes the common superclass lookup
+     */
+    static final class Writer extends MixinClassWriter {
+        
+        /**
+         * Create a writer which computes nothing
+         */
+        Writer() {
+            super(0);
+        }
+        
+        /**
+         * Calls {@link #getCommonSuperClass}
+         */
+        String getCommonSuperClassName(String type1, String type2) {
+            return this.getCommonSuperClass(type1, type2);
+        }
+        
+    }
+    
+    /**
+     * Number of base classes above the target classes
+     */
+    @Param({"4", "16"})
+    public int depth;
+    
+    private String target;
+    
+    private String sibling;
+    
+    private String root;
+    
+    private Writer writer;
+    
+    /**
+     * Generate the hierarchy and start the mixin subsystem
+     */
+    @Setup
+    public void setup() {
+        CorpusGenerator generator = new CorpusGenerator(this.depth, 1);
+        generator.generateTarget(0);
+        generator.generateTarget(1);
+        MixinServiceBenchmark.launch();
+        
+        this.target = CorpusGenerator.getTargetName(0);
+        this.sibling = CorpusGenerator.getTargetName(1);
+        this.root = CorpusGenerator.getBaseName(0);
+        this.writer = new Writer();
+    }
+    
+    /**
+     * Look up the target class
+     */
+    @Benchmark
+    public ClassInfo forName() {
+        return ClassInfo.forName(this.target);
+    }
+    
+    /**
+     * Check whether the target class extends the root base class
+     */
+    @Benchmark
+    public boolean hasSuperClass() {
+        return ClassInfo.forName(this.target).hasSuperClass(this.root);
+    }
+    
+    /**
+     * Find the method declared by the root base class
+     */
+    @Benchmark
+    public Method findMethodInHierarchy() {
+        return ClassInfo.forName(this.target).findMethodInHierarchy("base0", "()V", SearchType.ALL_CLASSES, Traversal.ALL);
+    }
+    
+    /**
+     * Look for a method which no class in the hierarchy declares
+     */
+    @Benchmark
+    public Method findMissingMethodInHierarchy() {
+        return ClassInfo.forName(this.target).findMethodInHierarchy("missing", "()V", SearchType.ALL_CLASSES, Traversal.ALL);
+    }
+    
+    /**
+     * Find the common superclass of the two target classes
+     */
+    @Benchmark
+    public String getCommonSuperClass() {
+        return this.writer.getCommonSuperClassName(this.target, this.sibling);
+    }
+    
+}
@@ -0,0 +1,440 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Generates target classes, mixins and mixin configs and adds them to the
+ * {@link ClassCorpus}.
+ * 
+ * <p>Target classes extend a chain of base classes of configurable depth, and
+ * have a number of <em>slots</em>, each slot being an <tt>int</tt> field
+ * <tt>field<i>N</i></tt> and a method <tt>method<i>N</i>(I)I</tt> which reads
+ * the field and calls <tt>Helper.compute(I)I</tt>. Mixins are generated in one
+ * of the {@link Variant variants} and target one or more slots of a single
+ * target class. Mixins targetting different slots never conflict with each
+ * other, so callers which need every mixin to apply should assign each slot of
+ * each target class to at most one mixin.</p>
+ */
+public final class CorpusGenerator {
+    
+    /**
+     * Mixin variants
+     */
+    public enum Variant {
+        
+        /**
+         * Class mixin with an <tt>&#064;Inject</tt> at HEAD of each slot method
+         */
+        INJECT,
+        
+        /**
+         * Class mixin with an <tt>&#064;Redirect</tt> of the helper call in
+         * each slot method
+         */
+        REDIRECT,
+        
+        /**
+         * Class mixin with an <tt>&#064;ModifyVariable</tt> of the argument of
+         * each slot method
+         */
+        MODIFY_VARIABLE,
+        
+        /**
+         * Interface mixin with an <tt>&#064;Accessor</tt> getter and setter for
+         * each slot field
+         */
+        ACCESSOR,
+        
+        /**
+         * Class mixin which implements an extension interface for each slot
+         */
+        INTERFACE
+        
+    }
+    
+    /**
+     * Package of generated target classes
+     */
+    public static final String TARGET_PACKAGE = "bench/target/";
+    
+    /**
+     * Package of generated mixin classes, each config has a sub package
+     */
+    public static final String MIXIN_PACKAGE = "bench/mixin/";
+    
+    /**
+     * Class containing the method called by each slot method
+     */
+    public static final String HELPER = CorpusGenerator.TARGET_PACKAGE + "Helper";
+    
+    private static final String MIXIN = "Lorg/spongepowered/asm/mixin/Mixin;";
+    private static final String AT = "Lorg/spongepowered/asm/mixin/injection/At;";
+    private static final String INJECT = "Lorg/spongepowered/asm/mixin/injection/Inject;";
+    private static final String REDIRECT = "Lorg/spongepowered/asm/mixin/injection/Redirect;";
+    private static final String MODIFY_VARIABLE = "Lorg/spongepowered/asm/mixin/injection/ModifyVariable;";
+    private static final String ACCESSOR = "Lorg/spongepowered/asm/mixin/gen/Accessor;";
+    private static final String CALLBACK_INFO_RETURNABLE = "Lorg/spongepowered/asm/mixin/injection/callback/CallbackInfoReturnable;";
+    
+    /**
+     * Number of base classes above each target class
+     */
+    private final int depth;
+    
+    /**
+     * Number of slots in each target class
+     */
+    private final int slots;
+    
+    /**
+     * Extension interfaces which have already been generated
+     */
+    private final Set<String> extensions = new HashSet<String>();
+    
+    /**
+     * Create a generator and generate the helper and base classes
+     * 
+     * @param depth number of base classes above each target class
+     * @param slots number of slots in each target class
+     */
+    public CorpusGenerator(int depth, int slots) {
+        this.depth = depth;
+        this.slots = slots;
+        
+        ClassNode helper = CorpusGenerator.createClass(CorpusGenerator.HELPER, "java/lang/Object");
+        MethodNode compute = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "compute", "(I)I", null, null);
+        compute.instructions.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        compute.instructions.add(new InsnNode(Opcodes.ICONST_2));
+        compute.instructions.add(new InsnNode(Opcodes.IMUL));
+        compute.instructions.add(new InsnNode(Opcodes.IRETURN));
+        helper.methods.add(compute);
+        ClassCorpus.addClass(helper);
+        
+        for (int level = 0; level < depth; level++) {
+            ClassNode base = CorpusGenerator.createClass(CorpusGenerator.getBaseName(level),
+                    level > 0 ? CorpusGenerator.getBaseName(level - 1) : "java/lang/Object");
+            base.methods.add(CorpusGenerator.createEmptyMethod(Opcodes.ACC_PUBLIC, "base" + level));
+            base.methods.add(CorpusGenerator.createEmptyMethod(Opcodes.ACC_PUBLIC, "shared"));
+            ClassCorpus.addClass(base);
+        }
+    }
+    
+    /**
+     * Get the name of the base class at the specified level, level 0 extends
+     * <tt>java.lang.Object</tt>
+     * 
+     * @param level hierarchy level
+     * @return internal class name
+     */
+    public static String getBaseName(int level) {
+        return CorpusGenerator.TARGET_PACKAGE + "Base" + level;
+    }
+    
+    /**
+     * Get the name of the target class with the specified index
+     * 
+     * @param index target index
+     * @return internal class name
+     */
+    public static String getTargetName(int index) {
+        return CorpusGenerator.TARGET_PACKAGE + "Target" + index;
+    }
+    
+    /**
+     * Get the selector of the method in the specified slot
+     * 
+     * @param slot slot
+     * @return method name and descriptor
+     */
+    public static String getSlotMethod(int slot) {
+        return "method" + slot + "(I)I";
+    }
+    
+    /**
+     * Generate a target class and add it to the corpus
+     * 
+     * @param index target index
+     * @return the generated class
+     */
+    public ClassNode generateTarget(int index) {
+        String name = CorpusGenerator.getTargetName(index);
+        ClassNode target = CorpusGenerator.createClass(name, this.depth > 0 ? CorpusGenerator.getBaseName(this.depth - 1) : "java/lang/Object");
+        if (this.depth > 0) {
+            target.methods.add(CorpusGenerator.createEmptyMethod(Opcodes.ACC_PUBLIC, "shared"));
+        }
+        
+        for (int slot = 0; slot < this.slots; slot++) {
+            target.fields.add(new FieldNode(Opcodes.ACC_PUBLIC, "field" + slot, "I", null, null));
+            
+            MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "method" + slot, "(I)I", null, null);
+            LabelNode start = new LabelNode();
+            LabelNode result = new LabelNode();
+            LabelNode end = new LabelNode();
+            InsnList insns = method.instructions;
+            insns.add(start);
+            insns.add(new VarInsnNode(Opcodes.ILOAD, 1));
+            insns.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            insns.add(new FieldInsnNode(Opcodes.GETFIELD, name, "field" + slot, "I"));
+            insns.add(new InsnNode(Opcodes.IADD));
+            insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC, CorpusGenerator.HELPER, "compute", "(I)I", false));
+            insns.add(new VarInsnNode(Opcodes.ISTORE, 2));
+            insns.add(result);
+            insns.add(new VarInsnNode(Opcodes.ILOAD, 2));
+            insns.add(new InsnNode(Opcodes.IRETURN));
+            insns.add(end);
+            method.localVariables = new ArrayList<LocalVariableNode>();
+            method.localVariables.add(new LocalVariableNode("this", Type.getObjectType(name).getDescriptor(), null, start, end, 0));
+            method.localVariables.add(new LocalVariableNode("value", "I", null, start, end, 1));
+            method.localVariables.add(new LocalVariableNode("result", "I", null, result, end, 2));
+            target.methods.add(method);
+        }
+        
+        ClassCorpus.addClass(target);
+        return target;
+    }
+    
+    /**
+     * Generate a class containing a single large static method <tt>large(I)I
+     * </tt> and add it to the corpus. The method consists of the specified
+     * number of blocks, each of which stores to one of 32 locals and branches
+     * around an increment of the stored local, so that the method contains a
+     * stack map frame for every block.
+     * 
+     * @param name internal class name
+     * @param blocks number of blocks
+     * @return the generated class
+     */
+    public static ClassNode generateLargeMethod(String name, int blocks) {
+        ClassNode owner = CorpusGenerator.createClass(name, "java/lang/Object");
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "large", "(I)I", null, null);
+        InsnList insns = method.instructions;
+        insns.add(new LdcInsnNode(name));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        for (int block = 0; block < blocks; block++) {
+            int local = 2 + (block % 32);
+            LabelNode skip = new LabelNode();
+            insns.add(new VarInsnNode(Opcodes.ILOAD, 0));
+            insns.add(new IntInsnNode(Opcodes.SIPUSH, block));
+            insns.add(new InsnNode(Opcodes.IADD));
+            insns.add(new VarInsnNode(Opcodes.ISTORE, local));
+            insns.add(new VarInsnNode(Opcodes.ILOAD, local));
+            insns.add(new JumpInsnNode(Opcodes.IFEQ, skip));
+            insns.add(new IincInsnNode(local, 1));
+            insns.add(skip);
+        }
+        insns.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        insns.add(new InsnNode(Opcodes.IRETURN));
+        owner.methods.add(method);
+        ClassCorpus.addClass(owner);
+        return owner;
+    }
+    
+    /**
+     * Generate a mixin and add it to the corpus
+     * 
+     * @param config config name, the mixin is generated in the config's
+     *      package
+     * @param name mixin simple name
+     * @param variant mixin variant
+     * @param target target class index
+     * @param slots target slots
+     * @return the generated mixin
+     */
+    public ClassNode generateMixin(String config, String name, Variant variant, int target, int... slots) {
+        String targetName = CorpusGenerator.getTargetName(target);
+        ClassNode mixin = CorpusGenerator.createClass(CorpusGenerator.MIXIN_PACKAGE + config + "/" + name, "java/lang/Object");
+        mixin.access |= Opcodes.ACC_ABSTRACT;
+        AnnotationNode annotation = new AnnotationNode(CorpusGenerator.MIXIN);
+        annotation.values = Arrays.<Object>asList("value", Arrays.<Type>asList(Type.getObjectType(targetName)));
+        mixin.invisibleAnnotations = new ArrayList<AnnotationNode>();
+        mixin.invisibleAnnotations.add(annotation);
+        
+        if (variant == Variant.ACCESSOR) {
+            mixin.access = Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT;
+            mixin.methods.clear();
+        }
+        
+        for (int slot : slots) {
+            switch (variant) {
+                case INJECT:
+                    MethodNode inject = CorpusGenerator.createEmptyMethod(Opcodes.ACC_PRIVATE, "onMethod" + slot,
+                            "(" + CorpusGenerator.CALLBACK_INFO_RETURNABLE + ")V");
+                    CorpusGenerator.annotate(inject, CorpusGenerator.INJECT, "method", Arrays.asList(CorpusGenerator.getSlotMethod(slot)),
+                            "at", Arrays.asList(CorpusGenerator.at("HEAD")));
+                    mixin.methods.add(inject);
+                    break;
+                    
+                case REDIRECT:
+                    MethodNode redirect = CorpusGenerator.createIncrementMethod("redirectCompute" + slot);
+                    CorpusGenerator.annotate(redirect, CorpusGenerator.REDIRECT, "method", Arrays.asList(CorpusGenerator.getSlotMethod(slot)),
+                            "at", CorpusGenerator.at("INVOKE", "target", "L" + CorpusGenerator.HELPER + ";compute(I)I"));
+                    mixin.methods.add(redirect);
+                    break;
+                    
+                case MODIFY_VARIABLE:
+                    MethodNode modify = CorpusGenerator.createIncrementMethod("modifyValue" + slot);
+                    CorpusGenerator.annotate(modify, CorpusGenerator.MODIFY_VARIABLE, "method", Arrays.asList(CorpusGenerator.getSlotMethod(slot)),
+                            "at", CorpusGenerator.at("HEAD"), "argsOnly", Boolean.TRUE);
+                    mixin.methods.add(modify);
+                    break;
+                    
+                case ACCESSOR:
+                    MethodNode getter = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "getField" + slot, "()I", null, null);
+                    CorpusGenerator.annotate(getter, CorpusGenerator.ACCESSOR, "value", "field" + slot);
+                    mixin.methods.add(getter);
+                    MethodNode setter = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "setField" + slot, "(I)V", null, null);
+                    CorpusGenerator.annotate(setter, CorpusGenerator.ACCESSOR, "value", "field" + slot);
+                    mixin.methods.add(setter);
+                    break;
+                    
+                case INTERFACE:
+                    mixin.interfaces.add(this.generateExtension(slot));
+                    MethodNode extension = new MethodNode(Opcodes.ACC_PUBLIC, "extension" + slot, "()I", null, null);
+                    extension.instructions.add(new LdcInsnNode(Integer.valueOf(slot)));
+                    extension.instructions.add(new InsnNode(Opcodes.IRETURN));
+                    mixin.methods.add(extension);
+                    break;
+                    
+                default:
+                    throw new IllegalArgumentException("Unsupported variant " + variant);
+            }
+        }
+        
+        ClassCorpus.addClass(mixin);
+        return mixin;
+    }
+    
+    /**
+     * Generate a mixin config and add it to the corpus
+     * 
+     * @param config config name
+     * @param mixins simple names of the mixins in the config
+     * @return config resource path
+     */
+    public static String generateConfig(String config, List<String> mixins) {
+        JsonObject json = new JsonObject();
+        json.addProperty("required", Boolean.TRUE);
+        json.addProperty("minVersion", "0.8");
+        json.addProperty("package", (CorpusGenerator.MIXIN_PACKAGE + config).replace('/', '.'));
+        json.addProperty("compatibilityLevel", "JAVA_8");
+        JsonArray mixinArray = new JsonArray();
+        for (String mixin : mixins) {
+            mixinArray.add(mixin);
+        }
+        json.add("mixins", mixinArray);
+        JsonObject injectors = new JsonObject();
+        injectors.addProperty("defaultRequire", Integer.valueOf(1));
+        json.add("injectors", injectors);
+        
+        String path = "bench." + config + ".mixins.json";
+        ClassCorpus.addConfig(path, new GsonBuilder().create().toJson(json));
+        return path;
+    }
+    
+    private String generateExtension(int slot) {
+        String name = CorpusGenerator.TARGET_PACKAGE + "Extension" + slot;
+        if (this.extensions.add(name)) {
+            ClassNode extension = new ClassNode();
+            extension.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, name, null, "java/lang/Object", null);
+            extension.methods.add(new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "extension" + slot, "()I", null, null));
+            ClassCorpus.addClass(extension);
+        }
+        return name;
+    }
+    
+    private static ClassNode createClass(String name, String superName) {
+        ClassNode classNode = new ClassNode();
+        classNode.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+        MethodNode ctor = new MethodNode(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        ctor.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        ctor.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false));
+        ctor.instructions.add(new InsnNode(Opcodes.RETURN));
+        classNode.methods.add(ctor);
+        return classNode;
+    }
+    
+    private static MethodNode createEmptyMethod(int access, String name) {
+        return CorpusGenerator.createEmptyMethod(access, name, "()V");
+    }
+    
+    private static MethodNode createEmptyMethod(int access, String name, String desc) {
+        MethodNode method = new MethodNode(access, name, desc, null, null);
+        method.instructions.add(new InsnNode(Opcodes.RETURN));
+        return method;
+    }
+    
+    private static MethodNode createIncrementMethod(String name) {
+        MethodNode method = new MethodNode(Opcodes.ACC_PRIVATE, name, "(I)I", null, null);
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 1));
+        method.instructions.add(new InsnNode(Opcodes.ICONST_1));
+        method.instructions.add(new InsnNode(Opcodes.IADD));
+        method.instructions.add(new InsnNode(Opcodes.IRETURN));
+        return method;
+    }
+    
+    private static AnnotationNode at(String value, Object... values) {
+        AnnotationNode at = new AnnotationNode(CorpusGenerator.AT);
+        at.values = new ArrayList<Object>();
+        at.values.add("value");
+        at.values.add(value);
+        at.values.addAll(Arrays.asList(values));
+        return at;
+    }
+    
+    private static void annotate(MethodNode method, String desc, Object... values) {
+        AnnotationNode annotation = new AnnotationNode(desc);
+        annotation.values = new ArrayList<Object>(Arrays.asList(values));
+        method.visibleAnnotations = new ArrayList<AnnotationNode>();
+        method.visibleAnnotations.add(annotation);
+    }
+    
+}
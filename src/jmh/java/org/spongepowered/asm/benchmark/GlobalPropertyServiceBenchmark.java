@@ -0,0 +1,94 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.spongepowered.asm.service.IGlobalPropertyService;
+import org.spongepowered.asm.service.IPropertyKey;
+
+/**
+ * Global property service for {@link MixinServiceBenchmark}, properties are
+ * simply held in a map for the lifetime of the benchmark JVM
+ */
+public class GlobalPropertyServiceBenchmark implements IGlobalPropertyService {
+    
+    /**
+     * Property key, identified by name
+     */
+    static final class Key implements IPropertyKey {
+        
+        private final String name;
+        
+        Key(String name) {
+            this.name = name;
+        }
+        
+        @Override
+        public String toString() {
+            return this.name;
+        }
+        
+    }
+    
+    private final Map<String, IPropertyKey> keys = new HashMap<String, IPropertyKey>();
+    
+    private final Map<IPropertyKey, Object> properties = new HashMap<IPropertyKey, Object>();
+
+    @Override
+    public synchronized IPropertyKey resolveKey(String name) {
+        IPropertyKey key = this.keys.get(name);
+        if (key == null) {
+            this.keys.put(name, key = new Key(name));
+        }
+        return key;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getProperty(IPropertyKey key) {
+        return (T)this.properties.get(key);
+    }
+
+    @Override
+    public synchronized void setProperty(IPropertyKey key, Object value) {
+        this.properties.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getProperty(IPropertyKey key, T defaultValue) {
+        Object value = this.properties.get(key);
+        return value != null ? (T)value : defaultValue;
+    }
+
+    @Override
+    public synchronized String getPropertyString(IPropertyKey key, String defaultValue) {
+        Object value = this.properties.get(key);
+        return value != null ? value.toString() : defaultValue;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.Locals;
+import org.spongepowered.asm.util.Locals.Settings;
+
+/**
+ * Measures {@link Locals#getLocalsAt} on a large method, querying the locals
+ * at evenly spaced instructions as a set of injectors capturing locals in the
+ * same method would. Measured both with the cached locals states of the method
+ * retained between queries and with the cache discarded first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LocalsBenchmark {
+    
+    /**
+     * Number of instructions between queried nodes
+     */
+    private static final int STRIDE = 64;
+    
+    /**
+     * Number of blocks in the generated method, each block is 8 nodes
+     */
+    @Param({"100", "1000", "4000"})
+    public int blocks;
+    
+    private ClassNode classNode;
+    
+    private MethodNode method;
+    
+    private AbstractInsnNode[] nodes;
+    
+    /**
+     * Generate the method and pick the nodes to query
+     * 
+     * @throws ClassNotFoundException if the generated class cannot be found
+     * @throws IOException if the generated class cannot be read
+     */
+    @Setup
+    public void setup() throws ClassNotFoundException, IOException {
+        MixinServiceBenchmark.launch();
+        String name = CorpusGenerator.TARGET_PACKAGE + "Large";
+        CorpusGenerator.generateLargeMethod(name, this.blocks);
+        this.classNode = MixinService.getService().getBytecodeProvider().getClassNode(name, false, 0);
+        for (MethodNode method : this.classNode.methods) {
+            if ("large".equals(method.name)) {
+                this.method = method;
+            }
+        }
+        
+        int size = this.method.instructions.size();
+        this.nodes = new AbstractInsnNode[(size + LocalsBenchmark.STRIDE - 1) / LocalsBenchmark.STRIDE];
+        for (int i = 0; i < this.nodes.length; i++) {
+            this.nodes[i] = this.method.instructions.get(i * LocalsBenchmark.STRIDE);
+        }
+    }
+    
+    /**
+     * Query every node, retaining cached states from previous invocations
+     * 
+     * @param blackhole blackhole
+     */
+    @Benchmark
+    public void getLocalsAtCached(Blackhole blackhole) {
+        for (AbstractInsnNode node : this.nodes) {
+            blackhole.consume(Locals.getLocalsAt(this.classNode, this.method, node, Settings.DEFAULT));
+        }
+    }
+    
+    /**
+     * Query every node after discarding the cached states of the method
+     * 
+     * @param blackhole blackhole
+     */
+    @Benchmark
+    public void getLocalsAtInvalidated(Blackhole blackhole) {
+        Locals.invalidate(this.method);
+        for (AbstractInsnNode node : this.nodes) {
+            blackhole.consume(Locals.getLocalsAt(this.classNode, this.method, node, Settings.DEFAULT));
+        }
+    }
+    
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.spongepowered.asm.benchmark.CorpusGenerator.Variant;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
+import org.spongepowered.asm.util.PrettyPrinter;
+import org.spongepowered.asm.util.perf.Profiler;
+import org.spongepowered.asm.util.perf.Profiler.Section;
+
+/**
+ * Headless startup harness. Generates a corpus of <em>mods</em>, each mod
+ * being a mixin config containing a number of mixins of mixed {@link Variant
+ * variants}, against a shared set of generated target classes. The mixin
+ * subsystem is then booted through {@link MixinServiceBenchmark} and every
+ * target class is passed through {@link IMixinTransformer#transformClassBytes}
+ * once, as a game launch would, so that classes are read and written by the
+ * transformer itself.
+ * 
+ * <p>The time taken to prepare the configs, apply the mixins and read and
+ * write the transformed classes is reported along with the peak heap usage.
+ * The apply time is taken from the processor's own <tt>mixin</tt> profiler
+ * section, the remainder of the transformation is reported as read and write
+ * time. Since the
+ * mixin subsystem can only be started once in a JVM, each corpus size must be
+ * run in its own process, the <tt>mixinHarness</tt> Gradle task runs one
+ * process per size.</p>
+ * 
+ * <p>Arguments are, in order, the number of mods (default 10), mixins per mod
+ * (default 10), target classes (default 100) and injectors per mixin (default
+ * 2).</p>
+ */
+public final class MixinHarness {
+    
+    /**
+     * Depth of the class hierarchy above each target class
+     */
+    private static final int DEPTH = 4;
+    
+    private final int mods;
+    
+    private final int mixins;
+    
+    private final int targets;
+    
+    private final int injectors;
+    
+    private long prepareTime, transformTime;
+    
+    private double applyTime;
+    
+    private int applied;
+    
+    private MixinHarness(int mods, int mixins, int targets, int injectors) {
+        this.mods = mods;
+        this.mixins = mixins;
+        this.targets = targets;
+        this.injectors = injectors;
+    }
+    
+    // CHECKSTYLE:OFF
+    public static void main(String[] args) {
+        int mods = MixinHarness.getArg(args, 0, 10);
+        int mixins = MixinHarness.getArg(args, 1, 10);
+        int targets = MixinHarness.getArg(args, 2, 100);
+        int injectors = MixinHarness.getArg(args, 3, 2);
+        new MixinHarness(mods, mixins, targets, injectors).run();
+    }
+    // CHECKSTYLE:ON
+    
+    private static int getArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+    
+    private void run() {
+        this.generate();
+        MixinHarness.resetPeakHeapUsage();
+        
+        // The processor only keeps its profiler active while applying mixins
+        // when the profiler is enabled, the apply time is read from it below
+        System.setProperty("mixin.debug.profiler", "true");
+        IMixinTransformer transformer = MixinServiceBenchmark.launch();
+        
+        // The first class transformed selects and prepares every config, the
+        // helper class is not targetted by any mixin so this is all it costs
+        String helper = CorpusGenerator.HELPER.replace('/', '.');
+        long start = System.nanoTime();
+        transformer.transformClassBytes(helper, helper, ClassCorpus.getClass(helper));
+        this.prepareTime = System.nanoTime() - start;
+        
+        Section applyTimer = Profiler.getProfiler("mixin").get("mixin");
+        double applyStart = applyTimer.getTotalSeconds();
+        for (int target = 0; target < this.targets; target++) {
+            String name = CorpusGenerator.getTargetName(target).replace('/', '.');
+            byte[] classBytes = ClassCorpus.getClass(name);
+            
+            start = System.nanoTime();
+            if (transformer.transformClassBytes(name, name, classBytes) != classBytes) {
+                this.applied++;
+            }
+            this.transformTime += System.nanoTime() - start;
+        }
+        this.applyTime = (applyTimer.getTotalSeconds() - applyStart) * 1000.0D;
+        
+        this.print();
+    }
+    
+    /**
+     * Generate the target classes and mods. Each mixin is given its own slots
+     * in one target class, mixins are spread evenly across the targets and
+     * cycle through the variants.
+     */
+    private void generate() {
+        int total = this.mods * this.mixins;
+        int mixinsPerTarget = (total + this.targets - 1) / this.targets;
+        CorpusGenerator generator = new CorpusGenerator(MixinHarness.DEPTH, mixinsPerTarget * this.injectors);
+        for (int target = 0; target < this.targets; target++) {
+            generator.generateTarget(target);
+        }
+        
+        Variant[] variants = Variant.values();
+        int index = 0;
+        for (int mod = 0; mod < this.mods; mod++) {
+            String config = "mod" + mod;
+            List<String> names = new ArrayList<String>();
+            for (int mixin = 0; mixin < this.mixins; mixin++, index++) {
+                int[] slots = new int[this.injectors];
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = (index / this.targets) * this.injectors + slot;
+                }
+                String name = "Mixin" + mixin;
+                generator.generateMixin(config, name, variants[index % variants.length], index % this.targets, slots);
+                names.add(name);
+            }
+            CorpusGenerator.generateConfig(config, names);
+        }
+    }
+    
+    private void print() {
+        new PrettyPrinter()
+            .add("Mixin startup harness").centre().hr()
+            .kv("Mods", "%d", this.mods)
+            .kv("Mixins", "%d (%d per mod)", this.mods * this.mixins, this.mixins)
+            .kv("Targets", "%d (%d transformed)", this.targets, this.applied)
+            .kv("Classes in corpus", "%d", ClassCorpus.getClassCount())
+            .add()
+            .kv("Prepare", "%9.3f ms", this.prepareTime * 1.0E-6D)
+            .kv("Apply", "%9.3f ms", this.applyTime)
+            .kv("Read and write", "%9.3f ms", this.transformTime * 1.0E-6D - this.applyTime)
+            .kv("Total", "%9.3f ms", (this.prepareTime + this.transformTime) * 1.0E-6D)
+            .kv("Peak heap usage", "%9d MB", MixinHarness.getPeakHeapUsage() >> 20)
+            .print(System.out);
+    }
+    
+    private static void resetPeakHeapUsage() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+    
+    /**
+     * Sum of the peak usage of each heap memory pool. Pools may peak at
+     * different times so this is an upper bound of the actual peak.
+     */
+    private static long getPeakHeapUsage() {
+        long peak = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+    
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.launch.platform.container.ContainerHandleVirtual;
+import org.spongepowered.asm.launch.platform.container.IContainerHandle;
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.logging.LoggerAdapterConsole;
+import org.spongepowered.asm.mixin.MixinEnvironment.Phase;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformerFactory;
+import org.spongepowered.asm.service.IClassBytecodeProvider;
+import org.spongepowered.asm.service.IClassProvider;
+import org.spongepowered.asm.service.IClassTracker;
+import org.spongepowered.asm.service.IMixinAuditTrail;
+import org.spongepowered.asm.service.ITransformerProvider;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.service.MixinServiceAbstract;
+import org.spongepowered.asm.util.Constants.ManifestAttributes;
+import org.spongepowered.asm.util.IConsumer;
+
+import com.google.common.base.Joiner;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Stand-in mixin service for benchmarks. Serves classes and resources from the
+ * in-memory {@link ClassCorpus}, falling back to the classpath for anything
+ * which is not in the corpus (such as JRE classes). The configs in the corpus
+ * are offered to the platform by the primary container, and the service moves
+ * the environment to the DEFAULT phase once the platform has been injected,
+ * see {@link #launch}.
+ */
+public class MixinServiceBenchmark extends MixinServiceAbstract implements IClassProvider, IClassBytecodeProvider {
+    
+    /**
+     * Callback used to advance the environment to later phases
+     */
+    private IConsumer<Phase> phaseConsumer;
+    
+    /**
+     * Transformer, created on demand
+     */
+    private IMixinTransformer transformer;
+
+    /**
+     * Start the mixin subsystem with the configs in the corpus and move to the
+     * DEFAULT phase, the corpus must be populated before this method is
+     * called. Returns the active transformer.
+     * 
+     * @return mixin transformer
+     */
+    public static IMixinTransformer launch() {
+        MixinBootstrap.init();
+        MixinBootstrap.getPlatform().inject();
+        MixinServiceBenchmark service = (MixinServiceBenchmark)MixinService.getService();
+        service.phaseConsumer.accept(Phase.DEFAULT);
+        return service.getTransformer();
+    }
+    
+    /**
+     * Get the mixin transformer, creating it if necessary
+     */
+    public synchronized IMixinTransformer getTransformer() {
+        if (this.transformer == null) {
+            this.transformer = this.getInternal(IMixinTransformerFactory.class).createTransformer();
+        }
+        return this.transformer;
+    }
+    
+    @Override
+    public String getName() {
+        return "Benchmark";
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+    
+    /**
+     * Keeps the phase callback so that {@link #launch} can move to the
+     * DEFAULT phase
+     * 
+     * @deprecated temporary
+     */
+    @Deprecated
+    @Override
+    public void wire(Phase phase, IConsumer<Phase> phaseConsumer) {
+        super.wire(phase, phaseConsumer);
+        this.phaseConsumer = phaseConsumer;
+    }
+
+    @Override
+    public IClassProvider getClassProvider() {
+        return this;
+    }
+
+    @Override
+    public IClassBytecodeProvider getBytecodeProvider() {
+        return this;
+    }
+
+    @Override
+    public ITransformerProvider getTransformerProvider() {
+        return null;
+    }
+
+    @Override
+    public IClassTracker getClassTracker() {
+        return null;
+    }
+
+    @Override
+    public IMixinAuditTrail getAuditTrail() {
+        return null;
+    }
+
+    @Override
+    public Collection<String> getPlatformAgents() {
+        return Collections.<String>emptyList();
+    }
+
+    @Override
+    public IContainerHandle getPrimaryContainer() {
+        return new ContainerHandleVirtual("benchmark").setAttribute(ManifestAttributes.MIXINCONFIGS, Joiner.on(',').join(ClassCorpus.getConfigs()));
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        InputStream resource = ClassCorpus.getResourceAsStream(name);
+        return resource != null ? resource : this.getClass().getClassLoader().getResourceAsStream(name);
+    }
+    
+    @Override
+    protected ILogger createLogger(String name) {
+        return new LoggerAdapterConsole(name);
+    }
+
+    @Override
+    @Deprecated
+    public URL[] getClassPath() {
+        return new URL[0];
+    }
+
+    @Override
+    public Class<?> findClass(String name) throws ClassNotFoundException {
+        return this.findClass(name, true);
+    }
+
+    @Override
+    public Class<?> findClass(String name, boolean initialize) throws ClassNotFoundException {
+        return Class.forName(name, initialize, this.getClass().getClassLoader());
+    }
+
+    @Override
+    public Class<?> findAgentClass(String name, boolean initialize) throws ClassNotFoundException {
+        return this.findClass(name, initialize);
+    }
+
+    @Override
+    public ClassNode getClassNode(String name) throws ClassNotFoundException, IOException {
+        return this.getClassNode(name, true);
+    }
+
+    @Override
+    public ClassNode getClassNode(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        return this.getClassNode(name, runTransformers, 0);
+    }
+
+    @Override
+    public ClassNode getClassNode(String name, boolean runTransformers, int readerFlags) throws ClassNotFoundException, IOException {
+        byte[] bytes = ClassCorpus.getClass(name);
+        if (bytes == null) {
+            InputStream stream = this.getClass().getClassLoader().getResourceAsStream(name.replace('.', '/') + ".class");
+            if (stream == null) {
+                throw new ClassNotFoundException(name);
+            }
+            try {
+                bytes = ByteStreams.toByteArray(stream);
+            } finally {
+                stream.close();
+            }
+        }
+        
+        ClassNode classNode = new ClassNode();
+        new ClassReader(bytes).accept(classNode, readerFlags);
+        return classNode;
+    }
+
+}
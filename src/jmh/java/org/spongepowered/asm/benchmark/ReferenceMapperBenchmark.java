@@ -0,0 +1,115 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.asm.mixin.refmap.ReferenceMapper;
+
+/**
+ * Measures {@link ReferenceMapper#remapWithContext} on a refmap containing
+ * the specified number of mappings for each of 100 mixin classes, both in the
+ * default mappings and in an obfuscation context
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReferenceMapperBenchmark {
+    
+    private static final String CONTEXT = "searge";
+    
+    private static final int CLASSES = 100;
+    
+    /**
+     * Number of mappings for each mixin class
+     */
+    @Param({"10", "100"})
+    public int mappings;
+    
+    private ReferenceMapper mapper;
+    
+    private String className;
+    
+    private String reference;
+    
+    /**
+     * Populate the refmap
+     */
+    @Setup
+    public void setup() {
+        MixinServiceBenchmark.launch();
+        this.mapper = new ReferenceMapper();
+        for (int mixin = 0; mixin < ReferenceMapperBenchmark.CLASSES; mixin++) {
+            String className = CorpusGenerator.MIXIN_PACKAGE + "refmap/Mixin" + mixin;
+            for (int mapping = 0; mapping < this.mappings; mapping++) {
+                String reference = CorpusGenerator.getSlotMethod(mapping);
+                String target = "Lbench/target/Target" + mixin + ";";
+                this.mapper.addMapping(null, className, reference, target + "a" + mapping + "(I)I");
+                this.mapper.addMapping(ReferenceMapperBenchmark.CONTEXT, className, reference, target + "func_" + mapping + "_a(I)I");
+            }
+        }
+        this.className = CorpusGenerator.MIXIN_PACKAGE + "refmap/Mixin" + (ReferenceMapperBenchmark.CLASSES / 2);
+        this.reference = CorpusGenerator.getSlotMethod(this.mappings / 2);
+    }
+    
+    /**
+     * Remap a reference in the default mappings
+     */
+    @Benchmark
+    public String remap() {
+        return this.mapper.remapWithContext(null, this.className, this.reference);
+    }
+    
+    /**
+     * Remap a reference in the obfuscation context
+     */
+    @Benchmark
+    public String remapWithContext() {
+        return this.mapper.remapWithContext(ReferenceMapperBenchmark.CONTEXT, this.className, this.reference);
+    }
+    
+    /**
+     * Remap a reference which has no mapping
+     */
+    @Benchmark
+    public String remapMissing() {
+        return this.mapper.remapWithContext(ReferenceMapperBenchmark.CONTEXT, this.className, "missing()V");
+    }
+    
+}
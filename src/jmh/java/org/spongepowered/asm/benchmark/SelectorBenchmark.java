@@ -0,0 +1,94 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
+import org.spongepowered.asm.mixin.injection.selectors.TargetSelector;
+import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
+
+/**
+ * Measures parsing of target selectors, which happens for every injector and
+ * for every injection point which has a target
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SelectorBenchmark {
+    
+    /**
+     * Selector to parse
+     */
+    @Param({"method0", "method0(I)I", "Lbench/target/Target0;method0(I)I", "Lbench/target/Helper;compute(I)I"})
+    public String selector;
+    
+    /**
+     * Start the mixin subsystem
+     */
+    @Setup
+    public void setup() {
+        MixinServiceBenchmark.launch();
+    }
+    
+    /**
+     * Parse the selector using {@link TargetSelector#parse}
+     */
+    @Benchmark
+    public ITargetSelector parseTargetSelector() {
+        return TargetSelector.parse(this.selector, null);
+    }
+    
+    /**
+     * Parse the selector using {@link MemberInfo#parse}
+     */
+    @Benchmark
+    public MemberInfo parseMemberInfo() {
+        return MemberInfo.parse(this.selector, null);
+    }
+    
+    /**
+     * Parse a regex selector
+     */
+    @Benchmark
+    public ITargetSelector parseRegex() {
+        return TargetSelector.parse("/^method\\d+$/", null);
+    }
+    
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.asm.benchmark.CorpusGenerator.Variant;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
+
+/**
+ * Measures {@link IMixinTransformer#transformClassBytes} for a target class
+ * with no mixins (the pass-through path taken by almost every class), a single
+ * injector and 100 injectors. The same class is transformed repeatedly, which
+ * is equivalent to the class being defined by several class loaders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransformBenchmark {
+    
+    /**
+     * Number of injectors applied to the target class
+     */
+    @Param({"0", "1", "100"})
+    public int injectors;
+    
+    private IMixinTransformer transformer;
+    
+    private String name;
+    
+    private byte[] classBytes;
+    
+    /**
+     * Generate the target class and mixin and start the mixin subsystem
+     */
+    @Setup
+    public void setup() {
+        CorpusGenerator generator = new CorpusGenerator(2, 100);
+        generator.generateTarget(0);
+        if (this.injectors > 0) {
+            int[] slots = new int[this.injectors];
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = slot;
+            }
+            generator.generateMixin("transform", "InjectMixin", Variant.INJECT, 0, slots);
+            CorpusGenerator.generateConfig("transform", Collections.<String>singletonList("InjectMixin"));
+        }
+        
+        this.transformer = MixinServiceBenchmark.launch();
+        this.name = CorpusGenerator.getTargetName(0).replace('/', '.');
+        this.classBytes = ClassCorpus.getClass(this.name);
+    }
+    
+    /**
+     * Transform the target class
+     */
+    @Benchmark
+    public byte[] transformClassBytes() {
+        return this.transformer.transformClassBytes(this.name, this.name, this.classBytes);
+    }
+    
+}
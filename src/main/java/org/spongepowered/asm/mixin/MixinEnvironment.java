@@ -229,6 +229,13 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         DEBUG_EXPORT_FILTER(Option.DEBUG_EXPORT, "filter", false),
         
+        /**
+         * Export classes into a single <tt>class.jar</tt> archive in the
+         * .mixin.out directory instead of as individual files. Classes exported
+         * to the archive are not decompiled.
+         */
+        DEBUG_EXPORT_ARCHIVE(Option.DEBUG_EXPORT, Inherit.INDEPENDENT, "archive"),
+        
         /**
          * Allow fernflower to be disabled even if it is found on the classpath
          */
@@ -292,6 +299,14 @@ public final class MixinEnvironment implements ITokenProvider {
          * is only enabled during mixin prepare operations)
          */
         DEBUG_PROFILER(Option.DEBUG_ALL, Inherit.ALLOW_OVERRIDE, "profiler"),
+        
+        /**
+         * Write the recorded profiler data to <tt>.mixin.out/profiler</tt> as
+         * JSON and CSV when the audit summary is generated. Unlike the printed
+         * summary, the exported data includes the time spent on each target
+         * class and each mixin, so that it can be compared between runs.
+         */
+        DEBUG_PROFILER_EXPORT(Option.DEBUG_PROFILER, Inherit.INDEPENDENT, "export"),
 
         /**
          * Dumps the bytecode for the target class to disk when mixin
@@ -327,6 +342,21 @@ public final class MixinEnvironment implements ITokenProvider {
          * Enables the hot-swap agent
          */
         HOT_SWAP("hotSwap"),
+
+        /**
+         * Enables the persistent cache of transformed classes. Transformed
+         * bytecode is stored on disk keyed by the input bytecode, the mixins
+         * applied and the environment, and is served from the cache on
+         * subsequent runs instead of applying the mixins again. Config plugins
+         * are not consulted for classes served from the cache, so this option
+         * should only be enabled when plugins behave deterministically.
+         */
+        CLASS_CACHE("classCache"),
+
+        /**
+         * File to store the transformed class cache in
+         */
+        CLASS_CACHE_FILE(Option.CLASS_CACHE, Inherit.INDEPENDENT, "file", ".mixin.out/cache/classes.bin"),
         
         /**
          * Parent for environment settings
@@ -426,7 +456,71 @@ public final class MixinEnvironment implements ITokenProvider {
          * with {@link ClassReader#EXPAND_FRAMES} flag which restores the
          * behaviour from versions 0.8.6 and below, newer versions default to 0.
          */
-        CLASSREADER_EXPAND_FRAMES(Option.TUNABLE, Inherit.INDEPENDENT, "classReaderExpandFrames", true, "false");
+        CLASSREADER_EXPAND_FRAMES(Option.TUNABLE, Inherit.INDEPENDENT, "classReaderExpandFrames", true, "false"),
+
+        /**
+         * Tunable for the target class reader behaviour. By default target
+         * classes are read with {@link ClassReader#EXPAND_FRAMES}, setting
+         * this option to <tt>true</tt> causes them to be read with compressed
+         * frames instead. The frames of individual methods are then expanded
+         * on demand, when local variable information is first required.
+         */
+        LAZY_EXPAND_FRAMES(Option.TUNABLE, Inherit.INDEPENDENT, "lazyExpandFrames", true, "false"),
+
+        /**
+         * Tunable for the transformer locking behaviour. By default all class
+         * transformations are serialised through a single monitor on the
+         * transformer. Setting this option to <tt>true</tt> allows independent
+         * target classes to be transformed in parallel, with locking applied
+         * per target class instead. This is only useful with parallel-capable
+         * class loaders.
+         */
+        CONCURRENT_TRANSFORM(Option.TUNABLE, Inherit.INDEPENDENT, "concurrentTransform", true, "false"),
+        
+        /**
+         * Tunable for frame computation when writing transformed classes. By
+         * default stack map frames are recomputed for every method in a
+         * transformed class. Setting this option to <tt>true</tt> recomputes
+         * frames only for methods which were added or modified and retains the
+         * original frames for all other methods.
+         */
+        INCREMENTAL_FRAMES(Option.TUNABLE, Inherit.INDEPENDENT, "incrementalFrames", true, "false"),
+        
+        /**
+         * Tunable for the config prepare phase. By default mixin classes are
+         * loaded one after another while configs are prepared. Setting this
+         * option to <tt>true</tt> loads and parses the mixin classes of all
+         * pending configs in parallel before they are prepared, preparation
+         * itself still runs in config priority order. This is only useful
+         * with bytecode providers which are safe to call concurrently.
+         */
+        PARALLEL_PREPARE(Option.TUNABLE, Inherit.INDEPENDENT, "parallelPrepare", true, "false"),
+        
+        /**
+         * Tunable for the eviction behaviour of the class metadata cache.
+         * Metadata for mixins, mixin targets and classes which have had mixins
+         * applied is never evicted. Available values for this option are:
+         * 
+         * <dl>
+         *   <dt>unbounded</dt>
+         *   <dd>Default behaviour, metadata is retained for the lifetime of
+         *     the process</dd>
+         *   <dt>soft</dt>
+         *   <dd>Metadata is softly referenced and may be reclaimed by the
+         *     garbage collector under memory pressure</dd>
+         *   <dt>size</dt>
+         *   <dd>At most <tt>mixin.tunable.classInfoCacheSize</tt> entries are
+         *     retained, the oldest entries are evicted first</dd>
+         * </dl>
+         */
+        CLASSINFO_CACHE_EVICTION(Option.TUNABLE, Inherit.INDEPENDENT, "classInfoCacheEviction", "unbounded"),
+        
+        /**
+         * Maximum number of evictable entries retained by the class metadata
+         * cache when <tt>mixin.tunable.classInfoCacheEviction</tt> is set to
+         * <tt>size</tt>
+         */
+        CLASSINFO_CACHE_SIZE(Option.TUNABLE, Inherit.INDEPENDENT, "classInfoCacheSize", "16384");
         
         /**
          * Type of inheritance for options
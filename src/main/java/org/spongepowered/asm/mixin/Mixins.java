@@ -33,10 +33,12 @@ import org.spongepowered.asm.logging.ILogger;
 import org.spongepowered.asm.launch.GlobalProperties;
 import org.spongepowered.asm.launch.GlobalProperties.Keys;
 import org.spongepowered.asm.mixin.extensibility.IMixinConfigSource;
+import org.spongepowered.asm.mixin.extensibility.IMixinCostAudit;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
 import org.spongepowered.asm.mixin.transformer.ClassInfo;
 import org.spongepowered.asm.mixin.transformer.Config;
 import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.perf.CostAudit;
 
 /**
  * Entry point for registering global mixin resources. Compatibility with
@@ -197,6 +199,16 @@ public final class Mixins {
         return Collections.<IMixinInfo>emptySet();
     }
 
+    /**
+     * Get the costs attributed to individual mixins and injectors. Costs are
+     * only recorded while the profiler is enabled.
+     * 
+     * @return mixin cost audit
+     */
+    public static IMixinCostAudit getCostAudit() {
+        return CostAudit.getInstance();
+    }
+
     /**
      * Register a gloabl error handler class
      * 
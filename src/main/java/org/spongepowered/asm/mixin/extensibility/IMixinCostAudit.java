@@ -0,0 +1,114 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.extensibility;
+
+import java.util.Collection;
+
+/**
+ * Costs attributed to individual mixins and injectors while the profiler is
+ * active. Each cost records the wall time and, where the JVM supports it, the
+ * number of bytes allocated by the transforming thread while performing an
+ * activity on behalf of a mixin. Costs of nested activities are included in
+ * the cost of the enclosing activity, for example the cost of preparing an
+ * injector is included in the cost of the <tt>apply.inject_prepare</tt> pass
+ * of its mixin.
+ */
+public interface IMixinCostAudit {
+    
+    /**
+     * Accumulated cost of one activity performed for one element of a mixin
+     */
+    public interface ICost {
+        
+        /**
+         * Get the name of the config which owns the mixin
+         */
+        public abstract String getConfig();
+        
+        /**
+         * Get the name of the mixin class
+         */
+        public abstract String getMixin();
+        
+        /**
+         * Get the activity, for example <tt>apply.main</tt> or
+         * <tt>inject.prepare</tt>
+         */
+        public abstract String getActivity();
+        
+        /**
+         * Get the element of the mixin the activity was performed for, for
+         * example an injector handler method, or an empty string if the
+         * activity applies to the whole mixin
+         */
+        public abstract String getElement();
+        
+        /**
+         * Get the total wall time spent in nanoseconds
+         */
+        public abstract long getTime();
+        
+        /**
+         * Get the total number of bytes allocated, or -1 if allocation
+         * counters are not supported by the JVM
+         */
+        public abstract long getAllocatedBytes();
+        
+        /**
+         * Get the number of times the activity was performed
+         */
+        public abstract long getCount();
+        
+    }
+    
+    /**
+     * Get whether costs are currently being recorded
+     */
+    public abstract boolean isActive();
+    
+    /**
+     * Get all recorded costs
+     * 
+     * @return read-only snapshot of the recorded costs
+     */
+    public abstract Collection<ICost> getCosts();
+    
+    /**
+     * Get the costs recorded for the specified mixin
+     * 
+     * @param mixin Mixin to get costs for
+     * @return read-only snapshot of the costs recorded for the mixin
+     */
+    public abstract Collection<ICost> getCosts(IMixinInfo mixin);
+    
+    /**
+     * Get the costs recorded for all mixins in the specified config
+     * 
+     * @param config Config to get costs for
+     * @return read-only snapshot of the costs recorded for the config
+     */
+    public abstract Collection<ICost> getCosts(IMixinConfig config);
+    
+}
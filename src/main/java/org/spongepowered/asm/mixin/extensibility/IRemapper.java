@@ -26,6 +26,15 @@ package org.spongepowered.asm.mixin.extensibility;
 
 /**
  * Interface for remap chain participants
+ * 
+ * <p>Results are cached by the {@link
+ * org.spongepowered.asm.obfuscation.RemapperChain RemapperChain} a remapper is
+ * added to, so a remapper must return the same result for the same query for
+ * as long as it is part of the chain. This includes returning the original
+ * name for members and types it does not map. A remapper which loads its
+ * mappings lazily, or reloads them, must call {@link
+ * org.spongepowered.asm.obfuscation.RemapperChain#invalidate
+ * RemapperChain.invalidate} once the new mappings are in place.</p>
  */
 public interface IRemapper {
 
@@ -25,9 +25,11 @@
 package org.spongepowered.asm.mixin.injection.code;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
 import org.spongepowered.asm.mixin.injection.struct.Constructor;
 import org.spongepowered.asm.mixin.injection.struct.IChainedDecoration;
 import org.spongepowered.asm.mixin.injection.struct.Target;
@@ -164,6 +166,35 @@ public class InsnListEx extends InsnListReadOnly implements IInsnListEx {
         }
     }
     
+    /**
+     * Get the nodes of the specified {@link AbstractInsnNode#getType type} in
+     * this list, in list order. The nodes are retrieved from the target's
+     * instruction index so the list is not scanned.
+     * 
+     * @param type node type
+     * @return read-only list of matching nodes
+     */
+    public List<AbstractInsnNode> getNodesOfType(int type) {
+        return this.target.getNodesOfType(type);
+    }
+    
+    /**
+     * Get the nodes in the supplied list which could be of the specified
+     * {@link AbstractInsnNode#getType type}. If the list is an extended list
+     * then only nodes of the specified type are returned, otherwise the list
+     * itself is returned and callers must still check the type of each node.
+     * 
+     * @param insns instruction list
+     * @param type node type, or -1 to return all nodes
+     * @return candidate nodes, in list order
+     */
+    public static Iterable<AbstractInsnNode> getNodesOfType(InsnList insns, int type) {
+        if (type < 0 || !(insns instanceof InsnListEx)) {
+            return insns;
+        }
+        return ((InsnListEx)insns).getNodesOfType(type);
+    }
+    
     /**
      * Decorate this insn list with arbitrary metadata for use by
      * context-specific injection points
@@ -26,6 +26,7 @@ package org.spongepowered.asm.mixin.injection.code;
 
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
@@ -285,6 +286,34 @@ public final class MethodSlice {
             return index >= this.start && index <= this.end ? index - this.start : -1;
         }
         
+        /* (non-Javadoc)
+         * @see org.spongepowered.asm.mixin.injection.code.InsnListEx
+         *      #getNodesOfType(int)
+         */
+        @Override
+        public List<AbstractInsnNode> getNodesOfType(int type) {
+            List<AbstractInsnNode> nodes = super.getNodesOfType(type);
+            int from = this.bisect(nodes, this.start), to = this.bisect(nodes, this.end + 1);
+            return nodes.subList(from, to);
+        }
+        
+        /**
+         * Find the position of the first node in the supplied list whose index
+         * in the underlying InsnList is not less than the specified index
+         */
+        private int bisect(List<AbstractInsnNode> nodes, int index) {
+            int low = 0, high = nodes.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (super.indexOf(nodes.get(mid)) < index) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
         /**
          * Returns the index of the instruction in the underlying InsnLis
          * 
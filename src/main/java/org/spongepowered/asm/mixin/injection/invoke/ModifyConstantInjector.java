@@ -68,6 +68,30 @@ public class ModifyConstantInjector extends RedirectInjector {
         super(info, "@ModifyConstant");
     }
     
+    /**
+     * Narrowing checks are performed before any constants are modified so that
+     * they all share a single analysis of the unmodified target method
+     */
+    @Override
+    protected void preInject(Target target, InjectionNode node) {
+        if (!this.info.getMixin().getOption(Option.DEBUG_VERBOSE) || node.isReplaced() || node.isRemoved()) {
+            return;
+        }
+        
+        Meta owner = node.<Meta>getDecoration(Meta.KEY);
+        if (owner != null && owner.getOwner() != this) {
+            return; // Conflict, reported when injecting
+        }
+        
+        AbstractInsnNode targetNode = node.getCurrentTarget();
+        if (Bytecode.isConstant(targetNode)) {
+            Type constantType = Bytecode.getConstantType(targetNode);
+            if (constantType.getSort() <= Type.INT) {
+                this.checkNarrowing(target, targetNode, constantType);
+            }
+        }
+    }
+    
     @Override
     protected void inject(Target target, InjectionNode node) {
         if (!this.preInject(node)) {
@@ -135,10 +159,6 @@ public class ModifyConstantInjector extends RedirectInjector {
     private void injectConstantModifier(Target target, AbstractInsnNode constNode) {
         final Type constantType = Bytecode.getConstantType(constNode);
         
-        if (constantType.getSort() <= Type.INT && this.info.getMixin().getOption(Option.DEBUG_VERBOSE)) {
-            this.checkNarrowing(target, constNode, constantType);
-        }
-        
         Extension extraStack = target.extendStack();
         final InsnList before = new InsnList();
         final InsnList after = new InsnList();
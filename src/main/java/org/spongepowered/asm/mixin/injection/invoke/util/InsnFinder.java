@@ -26,126 +26,15 @@ package org.spongepowered.asm.mixin.injection.invoke.util;
 
 import org.spongepowered.asm.logging.ILogger;
 import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.analysis.Analyzer;
-import org.objectweb.asm.tree.analysis.AnalyzerException;
-import org.objectweb.asm.tree.analysis.BasicInterpreter;
-import org.objectweb.asm.tree.analysis.BasicValue;
-import org.objectweb.asm.tree.analysis.Frame;
-import org.objectweb.asm.tree.analysis.Interpreter;
 import org.spongepowered.asm.mixin.injection.struct.Target;
 import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.asm.StackAnalysis;
 
 /**
  * Utility class for finding instructions using static analysis
  */
 public class InsnFinder {
     
-    /**
-     * Exception to be throw to quick-exit the analyser once result is found
-     */
-    static class AnalysisResultException extends RuntimeException {
-
-        private static final long serialVersionUID = 1L;
-
-        private AbstractInsnNode result;
-
-        public AnalysisResultException(AbstractInsnNode popNode) {
-            this.result = popNode;
-        }
-        
-        public AbstractInsnNode getResult() {
-            return this.result;
-        }
-        
-    }
-    
-    /**
-     * Current analyser state
-     */
-    enum AnalyzerState {
-        
-        /**
-         * Searching for the candidate instruction 
-         */
-        SEARCH,
-        
-        /**
-         * Walking through following instructions looking for matching pop 
-         */
-        ANALYSE,
-        
-        /**
-         * Analysis complete, unwinding rest of method so analyser completes
-         * normally 
-         */
-        COMPLETE
-    
-    }
-
-    /**
-     * Specialised {@link Analyzer} which searches for an instruction which pops
-     * the value pushed by the supplied instruction.
-     */
-    static class PopAnalyzer extends Analyzer<BasicValue> {
-        
-        /**
-         * Frame which is used as proxy to observe push/pop operations and find
-         * the candidate nodes
-         */
-        class PopFrame extends Frame<BasicValue> {
-            
-            private AbstractInsnNode current;
-            
-            private AnalyzerState state = AnalyzerState.SEARCH;
-            private int depth = 0;
-    
-            public PopFrame(int locals, int stack) {
-                super(locals, stack);
-            }
-            
-            @Override
-            public void execute(AbstractInsnNode insn, Interpreter<BasicValue> interpreter) throws AnalyzerException {
-                this.current = insn;
-                super.execute(insn, interpreter);
-            }
-            
-            @Override
-            public void push(BasicValue value) throws IndexOutOfBoundsException {
-                if (this.current == PopAnalyzer.this.node && this.state == AnalyzerState.SEARCH) {
-                    this.state = AnalyzerState.ANALYSE;
-                    this.depth++;
-                } else if (this.state == AnalyzerState.ANALYSE) {
-                    this.depth++;
-                }
-                super.push(value);
-            }
-            
-            @Override
-            public BasicValue pop() throws IndexOutOfBoundsException {
-                if (this.state == AnalyzerState.ANALYSE) {
-                    if (--this.depth == 0) {
-                        this.state = AnalyzerState.COMPLETE;
-                        throw new AnalysisResultException(this.current);
-                    }
-                }
-                return super.pop();
-            }
-            
-        }
-    
-        protected final AbstractInsnNode node;
-    
-        public PopAnalyzer(AbstractInsnNode node) {
-            super(new BasicInterpreter());
-            this.node = node;
-        }
-        
-        @Override
-        protected Frame<BasicValue> newFrame(final int locals, final int stack) {
-            return new PopFrame(locals, stack);
-        }
-    }
-    
     /**
      * Log more things
      */
@@ -153,22 +42,20 @@ public class InsnFinder {
     
     /**
      * Find the instruction which pops the value pushed by the specified
-     * instruction
+     * instruction. The target's shared {@link StackAnalysis} is used so that
+     * repeated queries against the same method only analyse it once.
      * 
      * @param target target method
      * @param node push node
      * @return pop instruction or null if not found
      */
     public AbstractInsnNode findPopInsn(Target target, AbstractInsnNode node) {
-        try {
-            new PopAnalyzer(node).analyze(target.classNode.name, target.method);
-        } catch (AnalyzerException ex) {
-            if (ex.getCause() instanceof AnalysisResultException) {
-                return ((AnalysisResultException)ex.getCause()).getResult();
-            }
-            InsnFinder.logger.catching(ex);
+        StackAnalysis analysis = target.getStackAnalysis();
+        AbstractInsnNode pop = analysis.getConsumer(node);
+        if (pop == null && analysis.getError() != null) {
+            InsnFinder.logger.catching(analysis.getError());
         }
-        return null;
+        return pop;
     }
 
 }
@@ -152,6 +152,11 @@ public class BeforeFieldAccess extends BeforeInvoke {
         return this.arrOpcode;
     }
 
+    @Override
+    protected int getCandidateNodeType() {
+        return this.isInsnScanRequired(BeforeFieldAccess.class) ? -1 : AbstractInsnNode.FIELD_INSN;
+    }
+
     @Override
     protected boolean matchesInsn(AbstractInsnNode insn) {
         if (insn instanceof FieldInsnNode && (((FieldInsnNode) insn).getOpcode() == this.opcode || this.opcode == -1)) {
@@ -25,7 +25,6 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -35,6 +34,7 @@ import org.objectweb.asm.tree.InsnNode;
 import org.spongepowered.asm.mixin.injection.IInjectionPointContext;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnListEx;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 import org.spongepowered.asm.mixin.injection.throwables.InvalidInjectionException;
 import org.spongepowered.asm.mixin.refmap.IMixinContext;
@@ -84,9 +84,7 @@ public class BeforeFinalReturn extends InjectionPoint {
         // RETURN opcode varies based on return type, thus we calculate what opcode we're actually looking for by inspecting the target method
         int returnOpcode = Type.getReturnType(desc).getOpcode(Opcodes.IRETURN);
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
-        while (iter.hasNext()) {
-            AbstractInsnNode insn = iter.next();
+        for (AbstractInsnNode insn : InsnListEx.getNodesOfType(insns, AbstractInsnNode.INSN)) {
             if (insn instanceof InsnNode && insn.getOpcode() == returnOpcode) {
                 ret = insn;
             }
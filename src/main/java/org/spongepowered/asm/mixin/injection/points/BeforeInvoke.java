@@ -24,8 +24,8 @@
  */
 package org.spongepowered.asm.mixin.injection.points;
 
+import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.ListIterator;
 import java.util.Locale;
 
 import org.spongepowered.asm.logging.ILogger;
@@ -37,6 +37,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.IInjectionPointContext;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnListEx;
 import org.spongepowered.asm.mixin.injection.selectors.ElementNode;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorByName;
@@ -128,6 +129,25 @@ public class BeforeInvoke extends InjectionPoint {
      * True to turn on strategy debugging to the console
      */
     private boolean log = false;
+    
+    /**
+     * Lowest class in the hierarchy of each injection point class which
+     * declares {@link #matchesInsn} or {@link #inspectInsn}, resolved once per
+     * class rather than once per injection point
+     */
+    private static final ClassValue<Class<?>> insnCallbackOwners = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+                for (Method method : cls.getDeclaredMethods()) {
+                    if ("matchesInsn".equals(method.getName()) || "inspectInsn".equals(method.getName())) {
+                        return cls;
+                    }
+                }
+            }
+            return Object.class;
+        }
+    };
 
     public BeforeInvoke(InjectionPointData data) {
         super(data);
@@ -189,13 +209,11 @@ public class BeforeInvoke extends InjectionPoint {
         
         int ordinal = 0, found = 0, matchCount = 0;
         
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
-        while (iter.hasNext()) {
-            AbstractInsnNode insn = iter.next();
-
+        for (AbstractInsnNode insn : InsnListEx.getNodesOfType(insns, this.getCandidateNodeType())) {
             if (this.matchesInsn(insn)) {
-                MemberInfo nodeInfo = new MemberInfo(insn);
-                this.log("{}->{} is considering {}", this.context, this.className, nodeInfo);
+                if (this.log) {
+                    this.log("{}->{} is considering {}", this.context, this.className, new MemberInfo(insn));
+                }
 
                 if (target.match(ElementNode.<AbstractInsnNode>of(insn)).isExactMatch()) {
                     this.log("{}->{} > found a matching insn, checking preconditions...", this.context, this.className);
@@ -231,6 +249,32 @@ public class BeforeInvoke extends InjectionPoint {
         return found > 0;
     }
 
+    /**
+     * Get the {@link AbstractInsnNode#getType type} of node which this
+     * injection point can match, so that only nodes of that type need to be
+     * visited when searching. Returns -1 if every node must be visited, which
+     * is the case if a subclass overrides {@link #matchesInsn} or
+     * {@link #inspectInsn}.
+     * 
+     * @return node type or -1
+     */
+    protected int getCandidateNodeType() {
+        return this.isInsnScanRequired(BeforeInvoke.class) ? -1 : AbstractInsnNode.METHOD_INSN;
+    }
+    
+    /**
+     * Get whether any class between this injection point's class and the
+     * specified base class overrides the instruction matching or inspection
+     * callbacks, in which case every instruction must be visited.
+     * 
+     * @param base Class which defines the callbacks being relied upon
+     * @return true if the callbacks are overridden below the base class
+     */
+    protected final boolean isInsnScanRequired(Class<? extends BeforeInvoke> base) {
+        Class<?> owner = BeforeInvoke.insnCallbackOwners.get(this.getClass());
+        return owner != base && base.isAssignableFrom(owner);
+    }
+
     protected boolean addInsn(InsnList insns, Collection<AbstractInsnNode> nodes, AbstractInsnNode insn) {
         nodes.add(insn);
         return true;
@@ -25,7 +25,6 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -35,6 +34,7 @@ import org.objectweb.asm.tree.InsnNode;
 import org.spongepowered.asm.mixin.injection.IInjectionPointContext;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnListEx;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 
 /**
@@ -98,9 +98,7 @@ public class BeforeReturn extends InjectionPoint {
         int returnOpcode = Type.getReturnType(desc).getOpcode(Opcodes.IRETURN);
         int ordinal = 0;
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
-        while (iter.hasNext()) {
-            AbstractInsnNode insn = iter.next();
+        for (AbstractInsnNode insn : InsnListEx.getNodesOfType(insns, AbstractInsnNode.INSN)) {
 
             if (insn instanceof InsnNode && insn.getOpcode() == returnOpcode) {
                 if (this.ordinal == -1 || this.ordinal == ordinal) {
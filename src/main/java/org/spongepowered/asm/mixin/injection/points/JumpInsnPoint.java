@@ -25,7 +25,6 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -33,6 +32,7 @@ import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.JumpInsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnListEx;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 
 /**
@@ -86,9 +86,7 @@ public class JumpInsnPoint extends InjectionPoint {
         boolean found = false;
         int ordinal = 0;
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
-        while (iter.hasNext()) {
-            AbstractInsnNode insn = iter.next();
+        for (AbstractInsnNode insn : InsnListEx.getNodesOfType(insns, AbstractInsnNode.JUMP_INSN)) {
 
             if (insn instanceof JumpInsnNode && (this.opCode == -1 || insn.getOpcode() == this.opCode)) {
                 if (this.ordinal == -1 || this.ordinal == ordinal) {
@@ -24,6 +24,8 @@
  */
 package org.spongepowered.asm.mixin.injection.selectors;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -84,6 +86,20 @@ public final class MemberMatcher implements ITargetSelector {
     private static final int SOURCE_NAME = 1;
     private static final int SOURCE_DESC = 2;
     
+    /**
+     * Maximum number of matchers held in the cache. Once the cache is full
+     * further inputs are parsed without being cached until the cache is next
+     * {@link #clearCache cleared}.
+     */
+    private static final int CACHE_SIZE = 4096;
+    
+    /**
+     * Parsed matchers, keyed by input. Matchers are immutable and do not
+     * depend on the selector context, so each distinct input is only parsed
+     * and its patterns compiled once.
+     */
+    private static final ConcurrentMap<String, MemberMatcher> cache = new ConcurrentHashMap<String, MemberMatcher>();
+    
     /**
      * Positional patterns. The match sources are packed into 3-element arrays
      * just to make the iteration for matching simpler
@@ -117,6 +133,29 @@ public final class MemberMatcher implements ITargetSelector {
      * @return parsed MemberMatcher
      */
     public static MemberMatcher parse(final String input, ISelectorContext context) {
+        MemberMatcher cached = MemberMatcher.cache.get(input);
+        if (cached == null) {
+            cached = MemberMatcher.parse(input);
+            if (MemberMatcher.cache.size() < MemberMatcher.CACHE_SIZE) {
+                MemberMatcher existing = MemberMatcher.cache.putIfAbsent(input, cached);
+                if (existing != null) {
+                    cached = existing;
+                }
+            }
+        }
+        return cached;
+    }
+    
+    /**
+     * Discard all cached matchers. Called by the processor when it moves to a
+     * new environment, since the selectors of the previous phase are not
+     * parsed again.
+     */
+    public static void clearCache() {
+        MemberMatcher.cache.clear();
+    }
+    
+    private static MemberMatcher parse(final String input) {
         Matcher matcher = MemberMatcher.PATTERN.matcher(input);
         Pattern[] patterns = new Pattern[3];
         Exception parseException = null;
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.injection.selectors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
+
+/**
+ * Index of the methods in a target class by name and by name and descriptor,
+ * shared by all injectors targetting the class. Used by {@link TargetSelectors}
+ * to narrow the methods which need to be matched against a selector, only
+ * {@link MemberInfo} selectors with an explicit name can be resolved using the
+ * index, all other selectors are matched against every method.
+ * 
+ * <p>Methods are added to, removed from and renamed in the target class as
+ * mixins are applied. Any code which changes <tt>classNode.methods</tt> or the
+ * name or descriptor of a method in it must call {@link #invalidate} so that
+ * the index is rebuilt the next time it is queried. The mixin applicator and
+ * {@link org.spongepowered.asm.mixin.injection.struct.InjectionInfo} do so
+ * after merging, renaming and injecting methods. As a safety net the index is
+ * also rebuilt when the number of methods or the last method changes, and
+ * when a candidate no longer has the name or descriptor it was indexed under,
+ * but a method removed and replaced in the middle of the list without calling
+ * {@link #invalidate} is not detected.</p>
+ */
+public final class TargetMethodIndex {
+    
+    /**
+     * Target class
+     */
+    private final ClassNode classNode;
+    
+    /**
+     * Methods by name, each entry holds the methods with the name and the same
+     * methods by descriptor, in class order
+     */
+    private final Map<String, Entry> byName = new HashMap<String, Entry>();
+    
+    /**
+     * Number of methods in the target class when the index was built, -1 if
+     * the index needs to be rebuilt
+     */
+    private int size = -1;
+    
+    /**
+     * Last method in the target class when the index was built
+     */
+    private MethodNode last;
+    
+    public TargetMethodIndex(ClassNode classNode) {
+        this.classNode = classNode;
+    }
+    
+    /**
+     * Discard the index, called whenever methods are added to, removed from or
+     * renamed in the target class
+     */
+    public void invalidate() {
+        this.size = -1;
+    }
+    
+    /**
+     * Get the methods in the target class which could match the specified
+     * selector, in class order
+     * 
+     * @param selector Selector to find candidates for
+     * @return candidate methods, the list must not be modified
+     */
+    public List<MethodNode> getCandidates(ITargetSelector selector) {
+        if (!(selector instanceof MemberInfo) || ((MemberInfo)selector).getName() == null) {
+            return this.classNode.methods;
+        }
+        
+        if (this.isStale()) {
+            this.rebuild();
+        }
+        
+        MemberInfo member = (MemberInfo)selector;
+        List<MethodNode> candidates = this.find(member.getName(), member.getDesc());
+        if (!TargetMethodIndex.isValid(candidates, member.getName(), member.getDesc())) {
+            this.rebuild();
+            candidates = this.find(member.getName(), member.getDesc());
+        }
+        return candidates;
+    }
+    
+    private boolean isStale() {
+        List<MethodNode> methods = this.classNode.methods;
+        return this.size != methods.size() || (this.size > 0 && methods.get(this.size - 1) != this.last);
+    }
+    
+    private List<MethodNode> find(String name, String desc) {
+        Entry entry = this.byName.get(name);
+        if (entry == null) {
+            return Collections.<MethodNode>emptyList();
+        }
+        if (desc == null) {
+            return entry.methods;
+        }
+        List<MethodNode> candidates = entry.byDesc.get(desc);
+        return candidates != null ? candidates : Collections.<MethodNode>emptyList();
+    }
+    
+    /**
+     * Check that candidates still have the name and descriptor they were
+     * indexed under, which catches methods renamed in place
+     */
+    private static boolean isValid(List<MethodNode> candidates, String name, String desc) {
+        for (MethodNode method : candidates) {
+            if (!name.equals(method.name) || (desc != null && !desc.equals(method.desc))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void rebuild() {
+        this.byName.clear();
+        for (MethodNode method : this.classNode.methods) {
+            Entry entry = this.byName.get(method.name);
+            if (entry == null) {
+                entry = new Entry();
+                this.byName.put(method.name, entry);
+            }
+            entry.add(method);
+        }
+        this.size = this.classNode.methods.size();
+        this.last = this.size > 0 ? this.classNode.methods.get(this.size - 1) : null;
+    }
+    
+    /**
+     * Methods sharing a name
+     */
+    static final class Entry {
+        
+        final List<MethodNode> methods = new ArrayList<MethodNode>(1);
+        
+        final Map<String, List<MethodNode>> byDesc = new HashMap<String, List<MethodNode>>(2);
+        
+        void add(MethodNode method) {
+            this.methods.add(method);
+            List<MethodNode> methods = this.byDesc.get(method.desc);
+            if (methods == null) {
+                methods = new ArrayList<MethodNode>(1);
+                this.byDesc.put(method.desc, methods);
+            }
+            methods.add(method);
+        }
+        
+    }
+
+}
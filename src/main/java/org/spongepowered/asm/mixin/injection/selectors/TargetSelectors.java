@@ -50,6 +50,7 @@ import org.spongepowered.asm.mixin.struct.AnnotatedMethodInfo;
 import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
 import org.spongepowered.asm.util.Annotations;
 import org.spongepowered.asm.util.Bytecode;
+import org.spongepowered.asm.util.perf.CostAudit;
 
 public class TargetSelectors implements Iterable<TargetSelectors.SelectedMethod> {
     
@@ -115,6 +116,12 @@ public class TargetSelectors implements Iterable<TargetSelectors.SelectedMethod>
      */
     private final ClassNode targetClassNode;
     
+    /**
+     * Shared index of methods in the target class, may be null in which case
+     * every method is matched against each selector
+     */
+    private final TargetMethodIndex methodIndex;
+    
     /**
      * The mixin
      */
@@ -144,8 +151,13 @@ public class TargetSelectors implements Iterable<TargetSelectors.SelectedMethod>
     private boolean doPermissivePass;
 
     public TargetSelectors(ISelectorContext context, ClassNode classNode) {
+        this(context, classNode, null);
+    }
+
+    public TargetSelectors(ISelectorContext context, ClassNode classNode, TargetMethodIndex methodIndex) {
         this.context = context;
         this.targetClassNode = classNode; 
+        this.methodIndex = methodIndex;
         this.mixin = context.getMixin();
         this.method = context.getMethod();       
         this.isStatic = this.method instanceof MethodNode && Bytecode.isStatic((MethodNode)this.method);
@@ -204,8 +216,15 @@ public class TargetSelectors implements Iterable<TargetSelectors.SelectedMethod>
      * Find methods in the target class which match the parsed selectors
      */
     public void find() {
-        this.findRootTargets();
-        // this.findNestedTargets();
+        CostAudit.Sample sample = CostAudit.begin();
+        try {
+            this.findRootTargets();
+            // this.findNestedTargets();
+        } finally {
+            if (sample != null) {
+                CostAudit.end(sample, this.mixin.getMixin(), "select", this.context.getElementDescription());
+            }
+        }
     }
 
     /**
@@ -227,7 +246,7 @@ public class TargetSelectors implements Iterable<TargetSelectors.SelectedMethod>
 
             scan: for (int pass = 0; pass < selectorPasses && matchCount < 1; pass++) {
                 ITargetSelector passSelector = pass == 0 ? selector : permissiveSelector;
-                for (MethodNode target : this.targetClassNode.methods) {
+                for (MethodNode target : this.getCandidates(passSelector)) {
                     if (passSelector.match(ElementNode.of(this.targetClassNode, target)).isExactMatch()) {
                         matchCount++;
 
@@ -296,6 +315,10 @@ public class TargetSelectors implements Iterable<TargetSelectors.SelectedMethod>
         while (recursed);
     }
 
+    private List<MethodNode> getCandidates(ITargetSelector selector) {
+        return this.methodIndex != null ? this.methodIndex.getCandidates(selector) : this.targetClassNode.methods;
+    }
+
     private void checkTarget(MethodNode target) {
         AnnotationNode merged = Annotations.getVisible(target, MixinMerged.class);
         if (merged == null) {
@@ -75,6 +75,7 @@ import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.asm.ASM;
 import org.spongepowered.asm.util.asm.MethodNodeEx;
 import org.spongepowered.asm.util.logging.MessageRouter;
+import org.spongepowered.asm.util.perf.CostAudit;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableSet;
@@ -334,7 +335,7 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
     protected InjectionInfo(MixinTargetContext mixin, MethodNode method, AnnotationNode annotation, String atKey) {
         super(mixin, method, annotation);
         this.isStatic = Bytecode.isStatic(method);
-        this.targets = new TargetSelectors(this, mixin.getTargetClassNode());
+        this.targets = new TargetSelectors(this, mixin.getTargetClassNode(), mixin.getTargetMethodIndex());
         this.slices = MethodSlices.parse(this);
         this.atKey = atKey;
         this.readAnnotation();
@@ -463,6 +464,7 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
      * Discover injection points
      */
     public void prepare() {
+        CostAudit.Sample sample = CostAudit.begin();
         this.activities.clear();
         try {
             this.targetNodes.clear();
@@ -488,6 +490,8 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
         } catch (Exception ex) {
             throw new InvalidMixinException(this.mixin, "Unexpecteded " + ex.getClass().getSimpleName() + " preparing "
                     + this.getElementDescription(), ex, this.activities);
+        } finally {
+            this.recordCost(sample, "inject.prepare");
         }
     }
     
@@ -495,8 +499,13 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
      * Perform pre-injection checks and tasks
      */
     public void preInject() {
-        for (Entry<Target, List<InjectionNode>> entry : this.targetNodes.entrySet()) {
-            this.injector.preInject(entry.getKey(), entry.getValue());
+        CostAudit.Sample sample = CostAudit.begin();
+        try {
+            for (Entry<Target, List<InjectionNode>> entry : this.targetNodes.entrySet()) {
+                this.injector.preInject(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            this.recordCost(sample, "inject.preinject");
         }
     }
     
@@ -504,40 +513,59 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
      * Perform injections
      */
     public void inject() {
-        for (Entry<Target, List<InjectionNode>> entry : this.targetNodes.entrySet()) {
-            this.injector.inject(entry.getKey(), entry.getValue());
+        CostAudit.Sample sample = CostAudit.begin();
+        try {
+            for (Entry<Target, List<InjectionNode>> entry : this.targetNodes.entrySet()) {
+                this.injector.inject(entry.getKey(), entry.getValue());
+            }
+            this.targets.clear();
+        } finally {
+            this.recordCost(sample, "inject.apply");
         }
-        this.targets.clear();
     }
     
     /**
      * Perform cleanup and post-injection tasks 
      */
     public void postInject() {
-        for (MethodNode method : this.injectedMethods) {
-            this.classNode.methods.add(method);
+        CostAudit.Sample sample = CostAudit.begin();
+        try {
+            for (MethodNode method : this.injectedMethods) {
+                this.classNode.methods.add(method);
+            }
+            if (!this.injectedMethods.isEmpty()) {
+                this.mixin.getTargetMethodIndex().invalidate();
+            }
+            
+            String description = this.getDescription();
+            String refMapStatus = this.mixin.getReferenceMapper().getStatus();
+            String extraInfo = AnnotatedMethodInfo.getDynamicInfo(this.method) + this.getMessages();
+            if ((this.mixin.getOption(Option.DEBUG_INJECTORS) && this.injectedCallbackCount < this.expectedCallbackCount)) {
+                throw new InvalidInjectionException(this,
+                        String.format("Injection validation failed: %s %s%s in %s expected %d invocation(s) but %d succeeded. Scanned %d target(s). %s%s",
+                                description, this.methodName, this.method.desc, this.mixin, this.expectedCallbackCount, this.injectedCallbackCount,
+                                this.targetCount, refMapStatus, extraInfo));
+            } else if (this.injectedCallbackCount < this.requiredCallbackCount) {
+                throw new InjectionError(
+                        String.format("Critical injection failure: %s %s%s in %s failed injection check, (%d/%d) succeeded. Scanned %d target(s). %s%s",
+                                description, this.methodName, this.method.desc, this.mixin, this.injectedCallbackCount, this.requiredCallbackCount,
+                                this.targetCount, refMapStatus, extraInfo));
+            } else if (this.injectedCallbackCount > this.maxCallbackCount) {
+                throw new InjectionError(
+                        String.format("Critical injection failure: %s %s%s in %s failed injection check, %d succeeded of %d allowed.%s",
+                        description, this.methodName, this.method.desc, this.mixin, this.injectedCallbackCount, this.maxCallbackCount, extraInfo));
+            }
+            
+            this.slices.postInject();
+        } finally {
+            this.recordCost(sample, "inject.postinject");
         }
-        
-        String description = this.getDescription();
-        String refMapStatus = this.mixin.getReferenceMapper().getStatus();
-        String extraInfo = AnnotatedMethodInfo.getDynamicInfo(this.method) + this.getMessages();
-        if ((this.mixin.getOption(Option.DEBUG_INJECTORS) && this.injectedCallbackCount < this.expectedCallbackCount)) {
-            throw new InvalidInjectionException(this,
-                    String.format("Injection validation failed: %s %s%s in %s expected %d invocation(s) but %d succeeded. Scanned %d target(s). %s%s",
-                            description, this.methodName, this.method.desc, this.mixin, this.expectedCallbackCount, this.injectedCallbackCount,
-                            this.targetCount, refMapStatus, extraInfo));
-        } else if (this.injectedCallbackCount < this.requiredCallbackCount) {
-            throw new InjectionError(
-                    String.format("Critical injection failure: %s %s%s in %s failed injection check, (%d/%d) succeeded. Scanned %d target(s). %s%s",
-                            description, this.methodName, this.method.desc, this.mixin, this.injectedCallbackCount, this.requiredCallbackCount,
-                            this.targetCount, refMapStatus, extraInfo));
-        } else if (this.injectedCallbackCount > this.maxCallbackCount) {
-            throw new InjectionError(
-                    String.format("Critical injection failure: %s %s%s in %s failed injection check, %d succeeded of %d allowed.%s",
-                    description, this.methodName, this.method.desc, this.mixin, this.injectedCallbackCount, this.maxCallbackCount, extraInfo));
+    }
+    
+    private void recordCost(CostAudit.Sample sample, String activity) {
+        if (sample != null) {
+            CostAudit.end(sample, this.mixin.getMixin(), activity, this.getElementDescription());
         }
-        
-        this.slices.postInject();
     }
     
     /**
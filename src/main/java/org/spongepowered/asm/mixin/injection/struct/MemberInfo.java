@@ -24,6 +24,10 @@
  */
 package org.spongepowered.asm.mixin.injection.struct;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
@@ -222,6 +226,72 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      */
     private static final String ARROW = "->";
     
+    /**
+     * Whitespace, which is stripped from input strings
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+    
+    /**
+     * Maximum number of inputs held in the parse cache. Once the cache is full
+     * further inputs are parsed without being cached until the cache is next
+     * {@link #clearCache cleared}.
+     */
+    private static final int CACHE_SIZE = 8192;
+    
+    /**
+     * Parsed input strings. Each entry holds the input with whitespace
+     * stripped and the tail split off, along with the result of the most
+     * recent parse of the input. MemberInfo is immutable so the result is
+     * shared by all callers whose context remaps the input to the same name.
+     */
+    private static final ConcurrentMap<String, ParsedInput> cache = new ConcurrentHashMap<String, ParsedInput>();
+    
+    /**
+     * Cached parse of a MemberInfo input string
+     */
+    static final class ParsedInput {
+        
+        /**
+         * Input with whitespace and tail removed, before remapping
+         */
+        final String name;
+        
+        /**
+         * Tail split from the input, can be null
+         */
+        final String tail;
+        
+        /**
+         * Most recent result for this input
+         */
+        volatile ParsedMember last;
+        
+        ParsedInput(String name, String tail) {
+            this.name = name;
+            this.tail = tail;
+        }
+        
+    }
+    
+    /**
+     * Result of parsing an input after remapping
+     */
+    static final class ParsedMember {
+        
+        /**
+         * Remapped name the member was parsed from
+         */
+        final String name;
+        
+        final MemberInfo info;
+        
+        ParsedMember(String name, MemberInfo info) {
+            this.name = name;
+            this.info = info;
+        }
+        
+    }
+    
     /**
      * Member owner in internal form but without L;, can be null
      */
@@ -869,20 +939,50 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      * @return parsed MemberInfo
      */
     public static MemberInfo parse(final String input, final ISelectorContext context) {
-        String desc = null;
-        String owner = null;
-        String name = Strings.nullToEmpty(input).replaceAll("\\s", "");
-        String tail = null;
-        
-        int arrowPos = name.indexOf(MemberInfo.ARROW);
-        if (arrowPos > -1) {
-            tail = name.substring(arrowPos + 2);
-            name = name.substring(0, arrowPos);
+        String key = Strings.nullToEmpty(input);
+        ParsedInput parsed = MemberInfo.cache.get(key);
+        if (parsed == null) {
+            String name = MemberInfo.WHITESPACE.matcher(key).replaceAll("");
+            String tail = null;
+            
+            int arrowPos = name.indexOf(MemberInfo.ARROW);
+            if (arrowPos > -1) {
+                tail = name.substring(arrowPos + 2);
+                name = name.substring(0, arrowPos);
+            }
+            
+            parsed = new ParsedInput(name, tail);
+            if (MemberInfo.cache.size() < MemberInfo.CACHE_SIZE) {
+                ParsedInput existing = MemberInfo.cache.putIfAbsent(key, parsed);
+                if (existing != null) {
+                    parsed = existing;
+                }
+            }
         }
-
-        if (context != null) {
-            name = context.remap(name);
+        
+        String name = context != null ? context.remap(parsed.name) : parsed.name;
+        ParsedMember last = parsed.last;
+        if (last != null && last.name.equals(name) && Objects.equal(last.info.input, input)) {
+            return last.info;
         }
+        
+        MemberInfo info = MemberInfo.parseMember(input, name, parsed.tail);
+        parsed.last = new ParsedMember(name, info);
+        return info;
+    }
+    
+    /**
+     * Discard all cached parse results. Called by the processor when it moves
+     * to a new environment, since the selectors of the previous phase are not
+     * parsed again.
+     */
+    public static void clearCache() {
+        MemberInfo.cache.clear();
+    }
+    
+    private static MemberInfo parseMember(final String input, String name, final String tail) {
+        String desc = null;
+        String owner = null;
 
         int parenPos = name.indexOf('(');
         int colonPos = name.indexOf(':');
@@ -25,6 +25,7 @@
 package org.spongepowered.asm.mixin.injection.struct;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -45,7 +46,9 @@ import org.spongepowered.asm.mixin.transformer.ClassInfo;
 import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.Constants;
 import org.spongepowered.asm.util.Counter;
+import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.Locals.SyntheticLocalVariableNode;
+import org.spongepowered.asm.util.asm.StackAnalysis;
 
 /**
  * Information about the current injection target (method) which bundles common
@@ -233,6 +236,70 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      * Labels for LVT ranges, generated as needed 
      */
     private LabelNode start, end;
+    
+    /**
+     * Index of the method instructions by node type, built on demand and
+     * discarded when instructions are added or removed via this target
+     */
+    private InsnIndex index;
+    
+    /**
+     * Stack analysis of the method, computed on demand and discarded along
+     * with the index when the method is modified via this target
+     */
+    private StackAnalysis stackAnalysis;
+
+    /**
+     * Instructions of a method grouped by node type
+     */
+    static final class InsnIndex {
+        
+        private final InsnList insns;
+        
+        private final int size;
+        
+        private final List<List<AbstractInsnNode>> nodes = new ArrayList<List<AbstractInsnNode>>();
+        
+        InsnIndex(InsnList insns) {
+            this.insns = insns;
+            this.size = insns.size();
+            for (AbstractInsnNode insn : insns) {
+                int type = insn.getType();
+                while (this.nodes.size() <= type) {
+                    this.nodes.add(new ArrayList<AbstractInsnNode>());
+                }
+                this.nodes.get(type).add(insn);
+            }
+        }
+        
+        /**
+         * Get whether the index is still valid for the specified node type.
+         * Guards against the instructions being changed without going through
+         * the target, in which case nodes may have been added or removed.
+         */
+        boolean isValid(int type) {
+            if (this.insns.size() != this.size) {
+                return false;
+            }
+            if (type >= 0 && type < this.nodes.size()) {
+                for (AbstractInsnNode insn : this.nodes.get(type)) {
+                    int pos = this.insns.indexOf(insn);
+                    if (pos < 0 || pos >= this.size || this.insns.get(pos) != insn) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        List<AbstractInsnNode> get(int type) {
+            if (type < 0 || type >= this.nodes.size()) {
+                return Collections.<AbstractInsnNode>emptyList();
+            }
+            return Collections.<AbstractInsnNode>unmodifiableList(this.nodes.get(type));
+        }
+        
+    }
 
     /**
      * Make a new Target for the supplied method
@@ -651,6 +718,46 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         return this.insns.get(index);
     }
     
+    /**
+     * Get the instructions of the specified {@link AbstractInsnNode#getType
+     * type} in the target method, in method order. The returned list is backed
+     * by an index which is built once and shared by all callers until the
+     * method is modified, allowing injection points to visit only the nodes
+     * they are interested in instead of scanning the whole method.
+     * 
+     * @param type node type
+     * @return read-only list of nodes of the specified type
+     */
+    public List<AbstractInsnNode> getNodesOfType(int type) {
+        InsnIndex index = this.index;
+        if (index == null || !index.isValid(type)) {
+            this.index = index = new InsnIndex(this.insns);
+        }
+        return index.get(type);
+    }
+    
+    /**
+     * Get the stack analysis for the target method. The analysis is performed
+     * once and shared by all callers until the method is modified, so that
+     * injectors which query the producers or consumers of many stack values in
+     * the same method do not each need to analyse the whole method.
+     * 
+     * @return stack analysis for the current state of the target method
+     */
+    public StackAnalysis getStackAnalysis() {
+        StackAnalysis analysis = this.stackAnalysis;
+        if (analysis == null || !analysis.isValid(this.method)) {
+            this.stackAnalysis = analysis = new StackAnalysis(this.classNode.name, this.method);
+        }
+        return analysis;
+    }
+    
+    private void invalidate() {
+        this.index = null;
+        this.stackAnalysis = null;
+        Locals.invalidate(this.method);
+    }
+    
     /* (non-Javadoc)
      * @see java.lang.Iterable#iterator()
      */
@@ -693,6 +800,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insert(InjectionNode location, final InsnList insns) {
         this.insns.insert(location.getCurrentTarget(), insns);
+        this.invalidate();
     }
     
     /**
@@ -703,6 +811,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insert(InjectionNode location, final AbstractInsnNode insn) {
         this.insns.insert(location.getCurrentTarget(), insn);
+        this.invalidate();
     }
     
     /**
@@ -713,6 +822,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insert(AbstractInsnNode location, final InsnList insns) {
         this.insns.insert(location, insns);
+        this.invalidate();
     }
 
     /**
@@ -723,6 +833,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insert(AbstractInsnNode location, final AbstractInsnNode insn) {
         this.insns.insert(location, insn);
+        this.invalidate();
     }
 
     /**
@@ -733,6 +844,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insertBefore(InjectionNode location, final InsnList insns) {
         this.insns.insertBefore(location.getCurrentTarget(), insns);
+        this.invalidate();
     }
 
     /**
@@ -743,6 +855,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insertBefore(InjectionNode location, final AbstractInsnNode insn) {
         this.insns.insertBefore(location.getCurrentTarget(), insn);
+        this.invalidate();
     }
     
     /**
@@ -753,6 +866,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insertBefore(AbstractInsnNode location, final InsnList insns) {
         this.insns.insertBefore(location, insns);
+        this.invalidate();
     }
     
     /**
@@ -763,6 +877,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insertBefore(AbstractInsnNode location, final AbstractInsnNode insn) {
         this.insns.insertBefore(location, insn);
+        this.invalidate();
     }
     
     /**
@@ -775,6 +890,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void replaceNode(AbstractInsnNode location, AbstractInsnNode insn) {
         this.insns.insertBefore(location, insn);
         this.insns.remove(location);
+        this.invalidate();
         this.injectionNodes.replace(location, insn);
     }
     
@@ -789,6 +905,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void replaceNode(AbstractInsnNode location, AbstractInsnNode champion, InsnList insns) {
         this.insns.insertBefore(location, insns);
         this.insns.remove(location);
+        this.invalidate();
         this.injectionNodes.replace(location, champion);
     }
     
@@ -804,6 +921,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void wrapNode(AbstractInsnNode location, AbstractInsnNode champion, InsnList before, InsnList after) {
         this.insns.insertBefore(location, before);
         this.insns.insert(location, after);
+        this.invalidate();
         this.injectionNodes.replace(location, champion);
     }
 
@@ -827,6 +945,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void removeNode(AbstractInsnNode insn) {
         this.insns.remove(insn);
+        this.invalidate();
         this.injectionNodes.remove(insn);
     }
 
@@ -871,6 +990,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         }
         
         this.method.localVariables.add(new SyntheticLocalVariableNode(name, desc, null, from, to, index));
+        Locals.invalidate(this.method);
     }
 
     /**
@@ -879,6 +999,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     private LabelNode getStartLabel() {
         if (this.start == null) {
             this.insns.insert(this.start = new LabelNode());
+            this.invalidate();
         }
         return this.start;
     }
@@ -889,6 +1010,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     private LabelNode getEndLabel() {
         if (this.end == null) {
             this.insns.add(this.end = new LabelNode());
+            this.invalidate();
         }
         return this.end;
     }
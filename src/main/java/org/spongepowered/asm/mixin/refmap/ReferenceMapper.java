@@ -24,12 +24,22 @@
  */
 package org.spongepowered.asm.mixin.refmap;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.TreeMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.tools.Diagnostic.Kind;
 
@@ -37,6 +47,8 @@ import org.spongepowered.asm.service.IMixinService;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.logging.MessageRouter;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import com.google.gson.Gson;
@@ -52,6 +64,11 @@ import com.google.gson.JsonParseException;
  * to be remapped to the target obfsucation environment as appropriate. If the
  * refmap is absent the environment is assumed to be deobfuscated (eg. dev-time)
  * and injections and other transformations will fail if this is not the case. 
+ * 
+ * <p>Refmaps are normally stored as JSON, but may also be precompiled to a
+ * compact binary form using {@link #writeBinary}. {@link #read(String)} accepts
+ * either format and detects which one it is given. Once loaded, lookups use
+ * hashed tables of interned strings.</p>
  */
 public final class ReferenceMapper implements IReferenceMapper, Serializable {
     
@@ -66,19 +83,43 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      * Passthrough mapper, used as failover 
      */
     public static final ReferenceMapper DEFAULT_MAPPER = new ReferenceMapper(true, "invalid");
+    
+    /**
+     * Magic number at the start of a binary refmap, the characters "MXRM"
+     */
+    private static final int BINARY_MAGIC = 0x4D58524D;
+    
+    /**
+     * Binary refmap format version
+     */
+    private static final int BINARY_VERSION = 1;
+    
+    /**
+     * Strings in loaded refmaps are interned, since the same class and member
+     * names recur across many refmaps
+     */
+    private static final Interner<String> strings = Interners.newWeakInterner();
 
     /**
      * "Default" mappings. The set of mappings to use as "default" is specified
      * by the AP. Each entry is keyed by the owning mixin, with the value map
      * containing the actual remappings for each owner
      */
-    private final Map<String, Map<String, String>> mappings = Maps.newTreeMap();
+    private Map<String, Map<String, String>> mappings = Maps.newTreeMap();
     
     /**
      * All mapping sets, keyed by environment type, eg. "notch", "searge". The
      * format of each map within this map is the same as for {@link #mappings}
      */
-    private final Map<String, Map<String, Map<String, String>>> data = Maps.newTreeMap();
+    private Map<String, Map<String, Map<String, String>>> data = Maps.newTreeMap();
+    
+    /**
+     * Reverse index for each mapping set, from reference to the remapped
+     * value, used when remapping without a class name. Keyed by context, with
+     * the default mappings under the <tt>null</tt> key. Built on demand and
+     * replaced rather than modified, so reads need no locking.
+     */
+    private transient volatile Map<String, Map<String, String>> references;
     
     /**
      * True if this refmap cannot be written. Only true for the
@@ -182,29 +223,41 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
             mappings = this.data.get(context);
             if (mappings == null) {
                 mappings = this.mappings;
+                context = null;
             }
         }
-        return this.remap(mappings, className, reference);
+        
+        Map<String, String> classMappings = className != null ? mappings.get(className) : this.getReferences(context, mappings);
+        String remappedReference = classMappings != null ? classMappings.get(reference) : null;
+        return remappedReference != null ? remappedReference : reference;
     }
     
     /**
-     * Remap the things
+     * Get the reverse index for the specified mapping set, building it if
+     * necessary. Where more than one class maps the same reference the first
+     * class in the mapping set takes precedence.
      */
-    private String remap(Map<String, Map<String, String>> mappings, String className, String reference) {
-        if (className == null) {
-            for (Map<String, String> mapping : mappings.values()) {
-                if (mapping.containsKey(reference)) {
-                    return mapping.get(reference);
+    private Map<String, String> getReferences(String context, Map<String, Map<String, String>> mappings) {
+        Map<String, Map<String, String>> references = this.references;
+        Map<String, String> index = references != null ? references.get(context) : null;
+        if (index != null) {
+            return index;
+        }
+        
+        index = new HashMap<String, String>();
+        for (Map<String, String> classMappings : mappings.values()) {
+            for (Entry<String, String> mapping : classMappings.entrySet()) {
+                if (!index.containsKey(mapping.getKey())) {
+                    index.put(mapping.getKey(), mapping.getValue());
                 }
             }
         }
         
-        Map<String, String> classMappings = mappings.get(className);
-        if (classMappings == null) {
-            return reference;
-        }
-        String remappedReference = classMappings.get(reference);
-        return remappedReference != null ? remappedReference : reference;
+        Map<String, Map<String, String>> newReferences = references != null
+                ? new HashMap<String, Map<String, String>>(references) : new HashMap<String, Map<String, String>>();
+        newReferences.put(context, index);
+        this.references = newReferences;
+        return index;
     }
     
     /**
@@ -234,9 +287,42 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
             classMappings = new TreeMap<String, String>();
             mappings.put(className, classMappings);
         }
+        this.references = null;
         return classMappings.put(conformedReference, newReference);
     }
     
+    /**
+     * Replace the mapping tables loaded from JSON with hashed tables of
+     * interned strings, preserving iteration order
+     */
+    private ReferenceMapper compact() {
+        this.mappings = ReferenceMapper.compact(this.mappings);
+        Map<String, Map<String, Map<String, String>>> data = new LinkedHashMap<String, Map<String, Map<String, String>>>();
+        if (this.data != null) {
+            for (Entry<String, Map<String, Map<String, String>>> entry : this.data.entrySet()) {
+                data.put(ReferenceMapper.strings.intern(entry.getKey()), ReferenceMapper.compact(entry.getValue()));
+            }
+        }
+        this.data = data;
+        this.references = null;
+        return this;
+    }
+    
+    private static Map<String, Map<String, String>> compact(Map<String, Map<String, String>> mappings) {
+        Map<String, Map<String, String>> compacted = new LinkedHashMap<String, Map<String, String>>();
+        if (mappings == null) {
+            return compacted;
+        }
+        for (Entry<String, Map<String, String>> classMappings : mappings.entrySet()) {
+            Map<String, String> compactedClass = new LinkedHashMap<String, String>();
+            for (Entry<String, String> mapping : classMappings.getValue().entrySet()) {
+                compactedClass.put(ReferenceMapper.strings.intern(mapping.getKey()), ReferenceMapper.strings.intern(mapping.getValue()));
+            }
+            compacted.put(ReferenceMapper.strings.intern(classMappings.getKey()), compactedClass);
+        }
+        return compacted;
+    }
+    
     /**
      * Write this refmap out to the specified writer
      * 
@@ -246,6 +332,68 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
         new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(this, writer);
     }
     
+    /**
+     * Write this refmap out to the specified stream in the binary format. The
+     * binary format contains a table of unique strings followed by each
+     * mapping set expressed as indices into the table, so each string is only
+     * decoded once when the refmap is loaded.
+     * 
+     * @param out Stream to write to
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        Map<String, Integer> table = new LinkedHashMap<String, Integer>();
+        ReferenceMapper.addStrings(table, this.mappings);
+        for (Entry<String, Map<String, Map<String, String>>> entry : this.data.entrySet()) {
+            ReferenceMapper.addString(table, entry.getKey());
+            ReferenceMapper.addStrings(table, entry.getValue());
+        }
+        
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(ReferenceMapper.BINARY_MAGIC);
+        dos.writeShort(ReferenceMapper.BINARY_VERSION);
+        dos.writeInt(table.size());
+        for (String string : table.keySet()) {
+            dos.writeUTF(string);
+        }
+        dos.writeInt(this.data.size() + 1);
+        ReferenceMapper.writeMappings(dos, table, -1, this.mappings);
+        for (Entry<String, Map<String, Map<String, String>>> entry : this.data.entrySet()) {
+            ReferenceMapper.writeMappings(dos, table, table.get(entry.getKey()).intValue(), entry.getValue());
+        }
+        dos.flush();
+    }
+    
+    private static void addStrings(Map<String, Integer> table, Map<String, Map<String, String>> mappings) {
+        for (Entry<String, Map<String, String>> classMappings : mappings.entrySet()) {
+            ReferenceMapper.addString(table, classMappings.getKey());
+            for (Entry<String, String> mapping : classMappings.getValue().entrySet()) {
+                ReferenceMapper.addString(table, mapping.getKey());
+                ReferenceMapper.addString(table, mapping.getValue());
+            }
+        }
+    }
+    
+    private static void addString(Map<String, Integer> table, String string) {
+        if (!table.containsKey(string)) {
+            table.put(string, Integer.valueOf(table.size()));
+        }
+    }
+    
+    private static void writeMappings(DataOutputStream dos, Map<String, Integer> table, int context, Map<String, Map<String, String>> mappings)
+            throws IOException {
+        dos.writeInt(context);
+        dos.writeInt(mappings.size());
+        for (Entry<String, Map<String, String>> classMappings : mappings.entrySet()) {
+            dos.writeInt(table.get(classMappings.getKey()).intValue());
+            dos.writeInt(classMappings.getValue().size());
+            for (Entry<String, String> mapping : classMappings.getValue().entrySet()) {
+                dos.writeInt(table.get(mapping.getKey()).intValue());
+                dos.writeInt(table.get(mapping.getValue()).intValue());
+            }
+        }
+    }
+    
     /**
      * Read a new refmap from the specified resource
      * 
@@ -253,13 +401,14 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      * @return new refmap or {@link #DEFAULT_MAPPER} if reading fails
      */
     public static ReferenceMapper read(String resourcePath) {
-        Reader reader = null;
+        InputStream stream = null;
         try {
             IMixinService service = MixinService.getService();
             InputStream resource = service.getResourceAsStream(resourcePath);
             if (resource != null) {
-                reader = new InputStreamReader(resource);
-                ReferenceMapper mapper = ReferenceMapper.readJson(reader);
+                stream = new BufferedInputStream(resource);
+                ReferenceMapper mapper = ReferenceMapper.isBinary(stream) ? ReferenceMapper.readBinary(stream)
+                        : ReferenceMapper.readJson(new InputStreamReader(stream));
                 mapper.setResourceName(resourcePath);
                 return mapper;
             }
@@ -267,15 +416,82 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
             MessageRouter.getMessager().printMessage(Kind.ERROR, String.format("Invalid REFMAP JSON in %s: %s %s",
                     resourcePath, ex.getClass().getName(), ex.getMessage()));
         } catch (Exception ex) {
-            MessageRouter.getMessager().printMessage(Kind.ERROR, String.format("Failed reading REFMAP JSON from %s: %s %s",
+            MessageRouter.getMessager().printMessage(Kind.ERROR, String.format("Failed reading REFMAP from %s: %s %s",
                     resourcePath, ex.getClass().getName(), ex.getMessage()));
         } finally {
-            Closeables.closeQuietly(reader);
+            Closeables.closeQuietly(stream);
         }
         
         return ReferenceMapper.DEFAULT_MAPPER;
     }
     
+    /**
+     * Read a new refmap instance in the binary format from the specified
+     * stream
+     * 
+     * @param stream Stream to read from
+     * @param name Name of the resource being read from
+     * @return new refmap
+     * @throws IOException if the stream cannot be read or is not a binary
+     *      refmap
+     */
+    public static ReferenceMapper readBinary(InputStream stream, String name) throws IOException {
+        ReferenceMapper mapper = ReferenceMapper.readBinary(stream);
+        mapper.setResourceName(name);
+        return mapper;
+    }
+    
+    private static boolean isBinary(InputStream stream) throws IOException {
+        stream.mark(4);
+        try {
+            return new DataInputStream(stream).readInt() == ReferenceMapper.BINARY_MAGIC;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            stream.reset();
+        }
+    }
+    
+    private static ReferenceMapper readBinary(InputStream stream) throws IOException {
+        DataInputStream dis = new DataInputStream(stream);
+        if (dis.readInt() != ReferenceMapper.BINARY_MAGIC) {
+            throw new IOException("Not a binary refmap");
+        }
+        int version = dis.readUnsignedShort();
+        if (version != ReferenceMapper.BINARY_VERSION) {
+            throw new IOException("Unsupported binary refmap version " + version);
+        }
+        
+        int stringCount = dis.readInt();
+        List<String> table = new ArrayList<String>(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+            table.add(ReferenceMapper.strings.intern(dis.readUTF()));
+        }
+        
+        ReferenceMapper mapper = new ReferenceMapper();
+        mapper.mappings = new LinkedHashMap<String, Map<String, String>>();
+        mapper.data = new LinkedHashMap<String, Map<String, Map<String, String>>>();
+        for (int sets = dis.readInt(); sets > 0; sets--) {
+            int context = dis.readInt();
+            Map<String, Map<String, String>> mappings = new LinkedHashMap<String, Map<String, String>>();
+            for (int classes = dis.readInt(); classes > 0; classes--) {
+                String className = table.get(dis.readInt());
+                int entries = dis.readInt();
+                Map<String, String> classMappings = new LinkedHashMap<String, String>(Math.max(entries * 4 / 3 + 1, 16));
+                for (; entries > 0; entries--) {
+                    classMappings.put(table.get(dis.readInt()), table.get(dis.readInt()));
+                }
+                mappings.put(className, classMappings);
+            }
+            if (context < 0) {
+                mapper.mappings = mappings;
+            } else {
+                mapper.data.put(table.get(context), mappings);
+            }
+        }
+        return mapper;
+    }
+    
     /**
      * Read a new refmap instance from the specified reader 
      * 
@@ -294,7 +510,7 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
     }
 
     private static ReferenceMapper readJson(Reader reader) {
-        return new Gson().fromJson(reader, ReferenceMapper.class);
+        return new Gson().fromJson(reader, ReferenceMapper.class).compact();
     }
     
 }
@@ -32,11 +32,12 @@ import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.extensibility.IRemapper;
 import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
 import org.spongepowered.asm.mixin.transformer.ClassInfo;
+import org.spongepowered.asm.obfuscation.RemapperChain;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.ObfuscationUtil;
 import org.spongepowered.asm.util.Quantifier;
+import org.spongepowered.asm.util.perf.Profiler;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 
@@ -50,6 +51,16 @@ public final class RemappingReferenceMapper implements IClassReferenceMapper, IR
      */
     private static final ILogger logger = MixinService.getService().getLogger("mixin");
     
+    /**
+     * Profiler used to count reference cache hits and misses
+     */
+    private static final Profiler profiler = Profiler.getProfiler("remap");
+    
+    /**
+     * Name of the cache in the remapper chain which holds remapped references
+     */
+    private static final String REFERENCE_CACHE = "refmap";
+    
     /**
      * The "inner" refmap, this is the original refmap specified in the config
      */
@@ -58,12 +69,7 @@ public final class RemappingReferenceMapper implements IClassReferenceMapper, IR
     /**
      * The remapper in use.
      */
-    private final IRemapper remapper;
-
-    /**
-     * A map between reference mapper values and their remapped equivalents.
-     */
-    private final Map<String, String> mappedReferenceCache = new HashMap<String, String>();
+    private final RemapperChain remapper;
 
     private RemappingReferenceMapper(MixinEnvironment env, IReferenceMapper refMap) {
         this.refMap = refMap;
@@ -144,10 +150,13 @@ public final class RemappingReferenceMapper implements IClassReferenceMapper, IR
         }
 
         String origInfoString = this.refMap.remapWithContext(context, className, reference);
+        Map<String, String> mappedReferenceCache = this.remapper.getCache(RemappingReferenceMapper.REFERENCE_CACHE);
         String remappedCached = mappedReferenceCache.get(origInfoString);
         if (remappedCached != null) {
+            RemappingReferenceMapper.count("refmap.remap.hit");
             return remappedCached;
         } else {
+            RemappingReferenceMapper.count("refmap.remap.miss");
             String remapped = origInfoString;
 
             // To handle propagation, find super/itf-class (for IRemapper)
@@ -174,6 +183,12 @@ public final class RemappingReferenceMapper implements IClassReferenceMapper, IR
         }
     }
     
+    private static void count(String section) {
+        if (Profiler.isActive()) {
+            RemappingReferenceMapper.profiler.get(section).tick();
+        }
+    }
+    
     /**
      * Wrap the specified refmap in a remapping adapter using settings in the
      * supplied environment
@@ -35,6 +35,9 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
@@ -446,11 +449,14 @@ public final class ClassInfo {
          */
         public String renameTo(String name) {
             this.currentName = name;
+            this.getOwner().onMemberRenamed(this);
+            ClassInfo.recordRename(this, false);
             return name;
         }
         
         public String remapTo(String desc) {
             this.currentDesc = desc;
+            this.getOwner().invalidateLookups();
             return desc;
         }
 
@@ -491,7 +497,17 @@ public final class ClassInfo {
      */
     public class Method extends Member {
 
-        private final List<FrameData> frames;
+        /**
+         * Method this method was copied from, frames are always retrieved from
+         * the original method
+         */
+        private final Method original;
+
+        /**
+         * Frames in this method, null if the method was read without its code
+         * and the frames have not been loaded yet
+         */
+        private List<FrameData> frames;
         
         private boolean isAccessor;
         
@@ -499,7 +515,7 @@ public final class ClassInfo {
 
         public Method(Member member) {
             super(member);
-            this.frames = member instanceof Method ? ((Method)member).frames : null;
+            this.original = member instanceof Method ? (Method)member : null;
         }
 
         public Method(MethodNode method) {
@@ -509,7 +525,8 @@ public final class ClassInfo {
         @SuppressWarnings("unchecked")
         public Method(MethodNode method, boolean injected) {
             super(Type.METHOD, method.name, method.desc, method.access, injected);
-            this.frames = this.gatherFrames(method);
+            this.original = null;
+            this.frames = ClassInfo.isCodeSkipped(method) ? null : this.gatherFrames(method);
             this.setUnique(Annotations.getVisible(method, Unique.class) != null);
             this.isAccessor = Annotations.getSingleVisible(method, Accessor.class, Invoker.class) != null;
             boolean decoratedFinal = Annotations.getVisible(method, Final.class) != null;
@@ -519,17 +536,17 @@ public final class ClassInfo {
 
         public Method(String name, String desc) {
             super(Type.METHOD, name, desc, Opcodes.ACC_PUBLIC, false);
-            this.frames = null;
+            this.original = null;
         }
 
         public Method(String name, String desc, int access) {
             super(Type.METHOD, name, desc, access, false);
-            this.frames = null;
+            this.original = null;
         }
 
         public Method(String name, String desc, int access, boolean injected) {
             super(Type.METHOD, name, desc, access, injected);
-            this.frames = null;
+            this.original = null;
         }
 
         private List<FrameData> gatherFrames(MethodNode method) {
@@ -543,7 +560,17 @@ public final class ClassInfo {
             return frames;
         }
 
+        /**
+         * Get the frames in this method. Frames for classes whose metadata was
+         * read without code are loaded the first time they are requested.
+         */
         public List<FrameData> getFrames() {
+            if (this.original != null) {
+                return this.original.getFrames();
+            }
+            if (this.frames == null) {
+                ClassInfo.this.loadFrames();
+            }
             return this.frames;
         }
         
@@ -579,6 +606,7 @@ public final class ClassInfo {
             if (nameChanged) {
                 this.renameTo(name);
                 this.conformed = true;
+                ClassInfo.recordRename(this, true);
             }
             return name;
         }
@@ -672,22 +700,183 @@ public final class ClassInfo {
         }
     }
 
+    /**
+     * Index of the members of a class by name. Members are indexed under their
+     * original name and under every name they are renamed to, and entries are
+     * never removed, so candidates are always matched against the requested
+     * name and descriptor. Updates are serialised by the owning class, lookups
+     * may run concurrently with updates.
+     */
+    static final class MemberIndex<M extends Member> {
+        
+        private final Map<String, List<M>> members = new ConcurrentHashMap<String, List<M>>();
+        
+        MemberIndex(Set<M> members) {
+            for (M member : members) {
+                this.add(member);
+            }
+        }
+        
+        void add(M member) {
+            this.add(member.getOriginalName(), member);
+            if (member.isRenamed()) {
+                this.add(member.getName(), member);
+            }
+        }
+        
+        private void add(String name, M member) {
+            List<M> candidates = this.members.get(name);
+            if (candidates == null) {
+                candidates = new CopyOnWriteArrayList<M>();
+                this.members.put(name, candidates);
+            }
+            for (M candidate : candidates) {
+                if (candidate == member) {
+                    return;
+                }
+            }
+            candidates.add(member);
+        }
+        
+        /**
+         * Index a member of this index under its current name, members which
+         * are not in this index are ignored
+         */
+        void rename(Member member) {
+            List<M> candidates = this.members.get(member.getOriginalName());
+            if (candidates == null) {
+                return;
+            }
+            for (M candidate : candidates) {
+                if (candidate == member) {
+                    this.add(member.getName(), candidate);
+                    return;
+                }
+            }
+        }
+        
+        M find(String name, String desc, int flags) {
+            List<M> candidates = this.members.get(name);
+            if (candidates != null) {
+                for (M member : candidates) {
+                    if (member.equals(name, desc) && member.matchesFlags(flags)) {
+                        return member;
+                    }
+                }
+            }
+            return null;
+        }
+        
+    }
+    
+    /**
+     * Key for a hierarchy lookup
+     */
+    static final class LookupKey {
+        
+        private final Type type;
+        
+        private final String name;
+        
+        private final String desc;
+        
+        private final SearchType searchType;
+        
+        private final Traversal traversal;
+        
+        private final int flags;
+        
+        private final int hash;
+        
+        LookupKey(Type type, String name, String desc, SearchType searchType, Traversal traversal, int flags) {
+            this.type = type;
+            this.name = name;
+            this.desc = desc;
+            this.searchType = searchType;
+            this.traversal = traversal;
+            this.flags = flags;
+            int hash = name.hashCode() * 31 + (desc != null ? desc.hashCode() : 0);
+            this.hash = ((hash * 31 + type.ordinal()) * 31 + searchType.ordinal() * 8 + traversal.ordinal()) * 31 + flags;
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey other = (LookupKey)obj;
+            return this.hash == other.hash && this.type == other.type && this.searchType == other.searchType && this.traversal == other.traversal
+                    && this.flags == other.flags && this.name.equals(other.name)
+                    && (this.desc == null ? other.desc == null : this.desc.equals(other.desc));
+        }
+        
+    }
+    
+    /**
+     * Hierarchy lookups which did not resolve. The lookups are valid for as
+     * long as no class in the hierarchy changes, which is checked against the
+     * hierarchy stamp once per change to any class.
+     */
+    static final class NegativeLookups {
+        
+        /**
+         * Global structure version the stamp was last validated against
+         */
+        volatile int epoch = -1;
+        
+        /**
+         * Highest class version in the hierarchy when the lookups were
+         * recorded
+         */
+        int stamp;
+        
+        final Set<LookupKey> keys = Collections.<LookupKey>newSetFromMap(new ConcurrentHashMap<LookupKey, Boolean>());
+        
+    }
+
     private static final ILogger logger = MixinService.getService().getLogger("mixin");
     
     private static final Profiler profiler = Profiler.getProfiler("meta");
 
     private static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
+    /**
+     * Incremented whenever a class changes in a way which could affect member
+     * resolution in its hierarchy, for example when mixins are added to a
+     * class or members are added or renamed. The new value becomes the version
+     * of the changed class, so the highest version in a hierarchy changes
+     * whenever any class in that hierarchy changes.
+     */
+    private static final AtomicInteger structureVersion = new AtomicInteger();
+
     /**
      * Loading and parsing classes is expensive, so keep a cache of all the
      * information we generate
      */
-    private static final Map<String, ClassInfo> cache = new HashMap<String, ClassInfo>();
+    private static final ClassInfoCache cache = new ClassInfoCache(ClassInfo.profiler);
+
+    /**
+     * Loader used to populate the cache for lookups by name
+     */
+    private static final ClassInfoCache.Loader loader = new ClassInfoCache.Loader() {
+        @Override
+        public ClassInfo load(String name) {
+            return ClassInfo.load(name);
+        }
+    };
 
     private static final ClassInfo OBJECT = new ClassInfo();
 
     static {
-        ClassInfo.cache.put(ClassInfo.JAVA_LANG_OBJECT, ClassInfo.OBJECT);
+        ClassInfo.cache.retain(ClassInfo.OBJECT);
     }
 
     /**
@@ -787,7 +976,35 @@ public final class ClassInfo {
     /**
      * Mixins which have been applied this class
      */
-    private Set<MixinInfo> appliedMixins;
+    private volatile Set<MixinInfo> appliedMixins;
+    
+    /**
+     * True if this metadata was read without method bodies, in which case the
+     * method frames are loaded on demand
+     */
+    private volatile boolean codeSkipped;
+    
+    /**
+     * Name index for {@link #methods}, built on first lookup and updated whilst
+     * holding the monitor on {@link #methods}
+     */
+    private volatile MemberIndex<Method> methodIndex;
+    
+    /**
+     * Name index for {@link #fields}, built on first lookup and updated whilst
+     * holding the monitor on {@link #fields}
+     */
+    private volatile MemberIndex<Field> fieldIndex;
+    
+    /**
+     * Structure version of this class, see {@link #structureVersion}
+     */
+    private volatile int version;
+    
+    /**
+     * Hierarchy lookups which failed to resolve a member
+     */
+    private volatile NegativeLookups negativeLookups;
     
     /**
      * Declared nest host
@@ -844,19 +1061,20 @@ public final class ClassInfo {
         try {
             this.name = classNode.name;
             this.superName = classNode.superName != null ? classNode.superName : ClassInfo.JAVA_LANG_OBJECT;
-            this.initialisers = new HashSet<Method>();
-            this.methods = new HashSet<Method>();
-            this.fields = new HashSet<Field>();
+            this.initialisers = ClassInfo.<Method>newMemberSet();
+            this.methods = ClassInfo.<Method>newMemberSet();
+            this.fields = ClassInfo.<Field>newMemberSet();
             this.isInterface = ((classNode.access & Opcodes.ACC_INTERFACE) != 0);
-            this.interfaces = new HashSet<String>();
+            this.interfaces = ClassInfo.<String>newMemberSet();
             this.isMixin = classNode instanceof MixinClassNode;
             this.mixin = this.isMixin ? ((MixinClassNode)classNode).getMixin() : null;
-            this.mixins = this.isMixin ? Collections.<MixinInfo>emptySet() : new HashSet<MixinInfo>();
+            this.mixins = this.isMixin ? Collections.<MixinInfo>emptySet() : ClassInfo.<MixinInfo>newMemberSet();
 
             this.interfaces.addAll(classNode.interfaces);
 
             for (MethodNode method : classNode.methods) {
                 this.addMethod(method, this.isMixin);
+                this.codeSkipped |= ClassInfo.isCodeSkipped(method);
             }
 
             boolean isProbablyStatic = true;
@@ -912,12 +1130,12 @@ public final class ClassInfo {
     private ClassInfo(Class<?> cls) {
         this.name = getName(cls);
         this.superName = cls.getSuperclass() != null ? getName(cls.getSuperclass()) : ClassInfo.JAVA_LANG_OBJECT;
-        this.initialisers = new HashSet<Method>();
-        this.methods = new HashSet<Method>();
-        this.fields = new HashSet<Field>();
+        this.initialisers = ClassInfo.<Method>newMemberSet();
+        this.methods = ClassInfo.<Method>newMemberSet();
+        this.fields = ClassInfo.<Field>newMemberSet();
         this.isInterface = cls.isInterface();
         Class<?>[] interfaces = cls.getInterfaces();
-        this.interfaces = new HashSet<String>(interfaces.length);
+        this.interfaces = ClassInfo.<String>newMemberSet();
         this.isMixin = false;
         this.mixin = null;
         this.mixins = Collections.emptySet();
@@ -962,9 +1180,77 @@ public final class ClassInfo {
         return cls.getName().replace('.', '/');
     }
 
+    /**
+     * Get whether the code of the supplied method was skipped when the method
+     * was read, abstract and native methods never have code
+     */
+    private static boolean isCodeSkipped(MethodNode method) {
+        return method.instructions.size() == 0 && (method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+    }
+
+    /**
+     * Populate frames for methods which were read without code, using the
+     * supplied class node. Methods which have no code in the supplied node are
+     * left untouched.
+     *
+     * @param classNode Class node to read frames from
+     */
+    private synchronized void gatherFrames(ClassNode classNode) {
+        boolean complete = true;
+        for (MethodNode methodNode : classNode.methods) {
+            if (ClassInfo.isCodeSkipped(methodNode)) {
+                complete = false;
+                continue;
+            }
+            Set<Method> methods = methodNode.name.startsWith("<") ? this.initialisers : this.methods;
+            for (Method method : methods) {
+                if (method.frames == null && method.original == null && methodNode.name.equals(method.getOriginalName())
+                        && methodNode.desc.equals(method.getOriginalDesc())) {
+                    method.frames = method.gatherFrames(methodNode);
+                }
+            }
+        }
+        if (complete) {
+            this.codeSkipped = false;
+        }
+    }
+    
+    /**
+     * Load the frames for this class if the metadata was read without code
+     */
+    private synchronized void loadFrames() {
+        if (!this.codeSkipped) {
+            return;
+        }
+        
+        // Don't retry if the load fails
+        this.codeSkipped = false;
+        
+        Section timer = ClassInfo.profiler.begin(Profiler.ROOT, "class.meta.frames");
+        try {
+            int flags = MixinEnvironment.getCurrentEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
+            this.gatherFrames(MixinService.getService().getBytecodeProvider().getClassNode(this.name, true, flags));
+        } catch (Exception ex) {
+            ClassInfo.logger.catching(Level.TRACE, ex);
+            ClassInfo.logger.warn("Error loading frames for class: {} ({}: {})", this.name, ex.getClass().getName(), ex.getMessage());
+        } finally {
+            timer.end();
+        }
+    }
+
+    /**
+     * Create a set to hold members of a class. Member sets are mutated as
+     * mixins are applied, which in concurrent mode may happen whilst other
+     * threads are walking the same sets in hierarchy lookups.
+     */
+    private static <T> Set<T> newMemberSet() {
+        return Collections.<T>newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+    }
+
     void addInterface(String iface) {
         this.interfaces.add(iface);
         this.getSignature().addInterface(iface);
+        this.invalidateLookups();
     }
 
     void addMethod(MethodNode method) {
@@ -975,8 +1261,167 @@ public final class ClassInfo {
         if (method.name.startsWith("<")) {
             this.initialisers.add(new Method(method, injected));
         } else {
-            this.methods.add(new Method(method, injected));
+            Method info = new Method(method, injected);
+            if (this.methods.add(info)) {
+                synchronized (this.methods) {
+                    if (this.methodIndex != null) {
+                        this.methodIndex.add(info);
+                    }
+                }
+            }
+        }
+        this.invalidateLookups();
+    }
+    
+    /**
+     * Add interfaces, methods and fields from the transformed class which are
+     * not yet known, used when the transformed class is restored from a cache
+     * instead of having mixins applied to it. Fields which are resolved
+     * through the mixins applied to the class are not added, as is the case
+     * when the mixins are applied.
+     * 
+     * @param classNode transformed class
+     */
+    void addTransformedMembers(ClassNode classNode) {
+        for (String iface : classNode.interfaces) {
+            if (!this.interfaces.contains(iface)) {
+                this.addInterface(iface);
+            }
+        }
+        for (MethodNode method : classNode.methods) {
+            if (this.findMethod(method.name, method.desc, ClassInfo.INCLUDE_ALL | ClassInfo.INCLUDE_INITIALISERS) == null) {
+                this.addMethod(method);
+            }
+        }
+        for (FieldNode field : classNode.fields) {
+            if (this.findField(field.name, field.desc, ClassInfo.INCLUDE_ALL) == null && !this.isMixinField(field)) {
+                this.addField(field);
+            }
+        }
+    }
+    
+    private boolean isMixinField(FieldNode field) {
+        for (MixinInfo mixin : this.mixins) {
+            if (mixin.getClassInfo().findField(field.name, field.desc, ClassInfo.INCLUDE_ALL) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void addField(FieldNode field) {
+        Field info = new Field(field, true);
+        if (this.fields.add(info)) {
+            synchronized (this.fields) {
+                if (this.fieldIndex != null) {
+                    this.fieldIndex.add(info);
+                }
+            }
+        }
+        this.invalidateLookups();
+    }
+    
+    /**
+     * Callback from {@link Member#renameTo} to keep the member indexes in sync
+     */
+    private void onMemberRenamed(Member member) {
+        if (member.type == Type.METHOD) {
+            synchronized (this.methods) {
+                if (this.methodIndex != null) {
+                    this.methodIndex.rename(member);
+                }
+            }
+        } else {
+            synchronized (this.fields) {
+                if (this.fieldIndex != null) {
+                    this.fieldIndex.rename(member);
+                }
+            }
         }
+        this.invalidateLookups();
+    }
+
+    /**
+     * Record a member rename in the transformed class cache recording on the
+     * current thread, if any
+     */
+    static void recordRename(Member member, boolean conformed) {
+        MixinClassCache.Recording recording = MixinClassCache.Recording.current();
+        if (recording != null) {
+            recording.renames.add(new MixinClassCache.Rename(member.getOwner().getName(), member.type == Type.METHOD, member.getOriginalName(),
+                    member.getOriginalDesc(), member.getName(), conformed));
+        }
+    }
+    
+    /**
+     * Get whether the supplied renames, recorded when a class was transformed
+     * in a previous session, can be applied in this session. Renames can be
+     * applied if every member exists and has either not been renamed yet or
+     * has been renamed in the same way already.
+     * 
+     * @param renames recorded renames
+     * @return true if the renames can be restored
+     */
+    static boolean canRestoreRenames(List<MixinClassCache.Rename> renames) {
+        for (MixinClassCache.Rename rename : renames) {
+            Member member = ClassInfo.findRenamedMember(rename);
+            if (member == null) {
+                return false;
+            }
+            if (!member.isRenamed() || member.getName().equals(rename.newName)) {
+                continue;
+            }
+            // The member may already carry a later name from the same sequence
+            boolean recorded = false;
+            for (MixinClassCache.Rename other : renames) {
+                recorded |= other.owner.equals(rename.owner) && other.method == rename.method && other.name.equals(rename.name)
+                        && other.desc.equals(rename.desc) && other.newName.equals(member.getName());
+            }
+            if (!recorded) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Apply renames recorded when a class was transformed in a previous
+     * session, see {@link #canRestoreRenames}
+     * 
+     * @param renames recorded renames
+     */
+    static void restoreRenames(List<MixinClassCache.Rename> renames) {
+        for (MixinClassCache.Rename rename : renames) {
+            Member member = ClassInfo.findRenamedMember(rename);
+            if (member == null) {
+                continue;
+            }
+            if (!member.getName().equals(rename.newName)) {
+                member.renameTo(rename.newName);
+            }
+            if (rename.conformed && member instanceof Method) {
+                ((Method)member).conformed = true;
+            }
+        }
+    }
+    
+    private static Member findRenamedMember(MixinClassCache.Rename rename) {
+        ClassInfo owner = ClassInfo.forName(rename.owner);
+        if (owner == null) {
+            return null;
+        }
+        if (rename.method) {
+            return owner.findMethod(rename.name, rename.desc, ClassInfo.INCLUDE_ALL | ClassInfo.INCLUDE_INITIALISERS);
+        }
+        return owner.findField(rename.name, rename.desc, ClassInfo.INCLUDE_ALL);
+    }
+
+    /**
+     * Record a structural change to this class, discarding the negative
+     * hierarchy lookups of this class and of any class which inherits from it
+     */
+    void invalidateLookups() {
+        this.version = ClassInfo.structureVersion.incrementAndGet();
     }
 
     /**
@@ -986,17 +1431,28 @@ public final class ClassInfo {
         if (this.isMixin) {
             throw new IllegalArgumentException("Cannot add target " + this.name + " for " + mixin.getClassName() + " because the target is a mixin");
         }
-        this.mixins.add(mixin);
+        if (this.mixins.add(mixin) && this.mixins.size() == 1) {
+            ClassInfo.cache.retain(this);
+        }
+        this.invalidateLookups();
     }
     
     /**
      * Add a mixin which has been applied to this class
      */
     void addAppliedMixin(MixinInfo mixin) {
-        if (this.appliedMixins == null) {
-            this.appliedMixins = new HashSet<MixinInfo>(); 
+        Set<MixinInfo> appliedMixins = this.appliedMixins;
+        if (appliedMixins == null) {
+            synchronized (this) {
+                appliedMixins = this.appliedMixins;
+                if (appliedMixins == null) {
+                    this.appliedMixins = appliedMixins = ClassInfo.<MixinInfo>newMemberSet();
+                    ClassInfo.cache.retain(this);
+                }
+            }
         }
-        this.appliedMixins.add(mixin);
+        appliedMixins.add(mixin);
+        this.invalidateLookups();
     }
 
     /**
@@ -1013,6 +1469,15 @@ public final class ClassInfo {
         return this.appliedMixins != null ? Collections.<IMixinInfo>unmodifiableSet(this.appliedMixins) : Collections.<IMixinInfo>emptySet();
     }
     
+    /**
+     * Get whether this metadata must be retained by the cache. Mixins and
+     * classes targetted by mixins carry state which cannot be regenerated from
+     * the class bytes and so can never be evicted.
+     */
+    boolean isRetained() {
+        return this.isMixin || !this.mixins.isEmpty() || this.appliedMixins != null;
+    }
+    
     /**
      * Get whether this class is a mixin
      */
@@ -1548,12 +2013,14 @@ public final class ClassInfo {
             return null;
         }
 
-        ClassInfo correspondingType = this.correspondingTypes.get(mixin);
-        if (correspondingType == null) {
-            correspondingType = this.findSuperTypeForMixin(mixin);
-            this.correspondingTypes.put(mixin, correspondingType);
+        synchronized (this.correspondingTypes) {
+            ClassInfo correspondingType = this.correspondingTypes.get(mixin);
+            if (correspondingType == null) {
+                correspondingType = this.findSuperTypeForMixin(mixin);
+                this.correspondingTypes.put(mixin, correspondingType);
+            }
+            return correspondingType;
         }
-        return correspondingType;
     }
 
     /* (non-Javadoc)
@@ -1846,8 +2313,75 @@ public final class ClassInfo {
      * @param type Type of member to search for (field or method)
      * @return the discovered member or null if the member could not be resolved
      */
-    @SuppressWarnings("unchecked")
     private <M extends Member> M findInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags, Type type) {
+        NegativeLookups negativeLookups = this.getNegativeLookups();
+        this.validateLookups(negativeLookups, ClassInfo.structureVersion.get());
+        
+        LookupKey key = new LookupKey(type, name, desc, searchType, traversal, flags);
+        if (negativeLookups.keys.contains(key)) {
+            return null;
+        }
+        
+        M member = this.findInHierarchyUncached(name, desc, searchType, traversal, flags, type);
+        if (member == null) {
+            negativeLookups.keys.add(key);
+        }
+        return member;
+    }
+    
+    private NegativeLookups getNegativeLookups() {
+        NegativeLookups negativeLookups = this.negativeLookups;
+        if (negativeLookups == null) {
+            // Racing threads may each create a table, losing a few entries is harmless
+            this.negativeLookups = negativeLookups = new NegativeLookups();
+        }
+        return negativeLookups;
+    }
+    
+    /**
+     * Check the negative lookups of this class against the hierarchy stamp if
+     * any class has changed since they were last checked, and discard them if
+     * a class in this hierarchy has changed
+     * 
+     * @param negativeLookups negative lookups of this class
+     * @param epoch current global structure version
+     * @return hierarchy stamp
+     */
+    private int validateLookups(NegativeLookups negativeLookups, int epoch) {
+        if (negativeLookups.epoch == epoch) {
+            return negativeLookups.stamp;
+        }
+        
+        int stamp = this.version;
+        for (MixinInfo mixin : this.mixins) {
+            stamp = Math.max(stamp, mixin.getClassInfo().version);
+        }
+        ClassInfo superClassInfo = this.getSuperClass();
+        if (superClassInfo != null) {
+            for (ClassInfo superTarget : superClassInfo.getTargets()) {
+                stamp = Math.max(stamp, superTarget.validateLookups(superTarget.getNegativeLookups(), epoch));
+            }
+        }
+        for (String implemented : this.interfaces) {
+            ClassInfo iface = ClassInfo.forName(implemented);
+            if (iface != null) {
+                stamp = Math.max(stamp, iface.validateLookups(iface.getNegativeLookups(), epoch));
+            }
+        }
+        
+        synchronized (negativeLookups) {
+            if (negativeLookups.stamp != stamp) {
+                negativeLookups.keys.clear();
+                negativeLookups.stamp = stamp;
+            }
+            negativeLookups.epoch = epoch;
+        }
+        return stamp;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <M extends Member> M findInHierarchyUncached(String name, String desc, SearchType searchType, Traversal traversal, int flags,
+            Type type) {
         if (searchType == SearchType.ALL_CLASSES) {
             M member = this.findMember(name, desc, flags, type);
             if (member != null) {
@@ -1998,6 +2532,32 @@ public final class ClassInfo {
         return this.findMember(name, desc, flags, Type.FIELD);
     }
 
+    private MemberIndex<Method> getMethodIndex() {
+        MemberIndex<Method> methodIndex = this.methodIndex;
+        if (methodIndex == null) {
+            synchronized (this.methods) {
+                methodIndex = this.methodIndex;
+                if (methodIndex == null) {
+                    this.methodIndex = methodIndex = new MemberIndex<Method>(this.methods);
+                }
+            }
+        }
+        return methodIndex;
+    }
+    
+    private MemberIndex<Field> getFieldIndex() {
+        MemberIndex<Field> fieldIndex = this.fieldIndex;
+        if (fieldIndex == null) {
+            synchronized (this.fields) {
+                fieldIndex = this.fieldIndex;
+                if (fieldIndex == null) {
+                    this.fieldIndex = fieldIndex = new MemberIndex<Field>(this.fields);
+                }
+            }
+        }
+        return fieldIndex;
+    }
+
     /**
      * Finds the specified member in this class
      *
@@ -2009,12 +2569,9 @@ public final class ClassInfo {
      */
     @SuppressWarnings("unchecked")
     private <M extends Member> M findMember(String name, String desc, int flags, Type memberType) {
-        Set<M> members = (Set<M>)(memberType == Type.METHOD ? this.methods : this.fields);
-
-        for (M member : members) {
-            if (member.equals(name, desc) && member.matchesFlags(flags)) {
-                return member;
-            }
+        M member = (M)(memberType == Type.METHOD ? this.getMethodIndex().find(name, desc, flags) : this.getFieldIndex().find(name, desc, flags));
+        if (member != null) {
+            return member;
         }
         
         if (memberType == Type.METHOD && (flags & ClassInfo.INCLUDE_INITIALISERS) != 0) {
@@ -2056,11 +2613,21 @@ public final class ClassInfo {
      * @param classNode classNode to get info for
      * @return ClassInfo instance for the supplied classNode
      */
-    static ClassInfo fromClassNode(ClassNode classNode) {
-        ClassInfo info = ClassInfo.cache.get(classNode.name);
+    static ClassInfo fromClassNode(final ClassNode classNode) {
+        ClassInfo info = ClassInfo.cache.get(classNode.name, new ClassInfoCache.Loader() {
+            @Override
+            public ClassInfo load(String name) {
+                return new ClassInfo(classNode);
+            }
+        });
+        
         if (info == null) {
+            // Previous load by name failed, but we have the class now
             info = new ClassInfo(classNode);
-            ClassInfo.cache.put(classNode.name, info);
+            ClassInfo.cache.retain(info);
+        } else if (info.codeSkipped) {
+            // Metadata was read without code, take the frames from this node
+            info.gatherFrames(classNode);
         }
 
         return info;
@@ -2077,27 +2644,40 @@ public final class ClassInfo {
     public static ClassInfo forName(String className) {
         className = className.replace('.', '/');
 
-        ClassInfo info = ClassInfo.cache.get(className);
-        if (!ClassInfo.cache.containsKey(className)) {
-            try {
-                if (className.startsWith("java/")) { // this would ideally check the platform class loader for other jdk classes, but needs extra api to do so
-                    info = new ClassInfo(Class.forName(className.replace('/', '.'), false, ClassInfo.class.getClassLoader()));
-                } else {
-                    int flags = MixinEnvironment.getCurrentEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
-                    ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(className, true, flags);
-                    info = new ClassInfo(classNode);
-                }
-            } catch (Exception ex) {
-                ClassInfo.logger.catching(Level.TRACE, ex);
-                ClassInfo.logger.warn("Error loading class: {} ({}: {})", className, ex.getClass().getName(), ex.getMessage());
-//                ex.printStackTrace();
+        return ClassInfo.cache.get(className, ClassInfo.loader);
+    }
+    
+    /**
+     * Load class metadata for a class which is not in the cache
+     *
+     * @param className Binary name of the class to load
+     * @return ClassInfo for the specified class name or null if the specified
+     *      name cannot be resolved for some reason
+     */
+    static ClassInfo load(String className) {
+        Section timer = Profiler.isActive() ? ClassInfo.profiler.begin(Profiler.ROOT, "class.meta.load") : null;
+        ClassInfo info = null;
+        try {
+            if (className.startsWith("java/")) { // this would ideally check the platform class loader for other jdk classes, but needs extra api to do so
+                info = new ClassInfo(Class.forName(className.replace('/', '.'), false, ClassInfo.class.getClassLoader()));
+            } else {
+                // Only the class structure is needed here, method bodies are
+                // skipped and the frames are loaded later if required
+                ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(className, true, ClassReader.SKIP_CODE);
+                info = new ClassInfo(classNode);
+            }
+        } catch (Exception ex) {
+            ClassInfo.logger.catching(Level.TRACE, ex);
+            ClassInfo.logger.warn("Error loading class: {} ({}: {})", className, ex.getClass().getName(), ex.getMessage());
+//            ex.printStackTrace();
+        } finally {
+            if (timer != null) {
+                timer.end();
             }
-
-            // Put null in the cache if load failed
-            ClassInfo.cache.put(className, info);
-            ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
         }
 
+        // A null result is cached as well, so that failed loads are not retried
+        ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
         return info;
     }
     
@@ -2193,7 +2773,12 @@ public final class ClassInfo {
         if (type1 == null || type2 == null) {
             return ClassInfo.OBJECT;
         }
-        return ClassInfo.getCommonSuperClass(ClassInfo.forName(type1), ClassInfo.forName(type2));
+        ClassInfo commonSuperClass = ClassInfo.getCommonSuperClass(ClassInfo.forName(type1), ClassInfo.forName(type2));
+        MixinClassCache.Recording recording = MixinClassCache.Recording.current();
+        if (recording != null) {
+            recording.commonSuperClasses.put(type1 + ";" + type2, commonSuperClass.getName());
+        }
+        return commonSuperClass;
     }
     
     /**
@@ -0,0 +1,425 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.util.Counter;
+import org.spongepowered.asm.util.perf.Profiler;
+
+/**
+ * Concurrent cache for {@link ClassInfo} metadata. Each class is only loaded
+ * once even when requested by several threads at the same time, threads which
+ * request a class which is already being loaded wait for the result instead of
+ * loading it again. Metadata for classes which are not mixins or mixin targets
+ * can optionally be evicted according to the configured {@link Eviction}
+ * policy.
+ */
+final class ClassInfoCache {
+    
+    /**
+     * Callback used to create metadata for a class which is not in the cache
+     */
+    interface Loader {
+        
+        /**
+         * Create the metadata for the specified class
+         * 
+         * @param name Binary name of the class to load
+         * @return class metadata or <tt>null</tt> if the class could not be
+         *      loaded, <tt>null</tt> results are cached
+         */
+        public abstract ClassInfo load(String name);
+        
+    }
+    
+    /**
+     * Eviction policy for entries which are not retained
+     */
+    static enum Eviction {
+        
+        /**
+         * Entries are never evicted
+         */
+        UNBOUNDED,
+        
+        /**
+         * Entries are softly referenced and reclaimed by the GC as needed
+         */
+        SOFT,
+        
+        /**
+         * Entries are evicted in insertion order once the number of evictable
+         * entries exceeds the configured size
+         */
+        SIZE
+        
+    }
+    
+    /**
+     * A cache entry. Completed entries either hold their value strongly, or
+     * softly if they are evictable and the soft eviction policy is in use.
+     */
+    static class Entry {
+        
+        final String name;
+        
+        final boolean evictable;
+        
+        private final ClassInfo value;
+        
+        private final Reference<ClassInfo> ref;
+        
+        Entry(String name, ClassInfo value, boolean evictable, ReferenceQueue<ClassInfo> queue) {
+            this.name = name;
+            this.evictable = evictable;
+            this.value = queue == null ? value : null;
+            this.ref = queue != null ? new EntryReference(value, queue, this) : null;
+        }
+        
+        boolean isPending() {
+            return false;
+        }
+        
+        boolean isCleared() {
+            return this.ref != null && this.ref.get() == null;
+        }
+        
+        ClassInfo get() {
+            return this.ref != null ? this.ref.get() : this.value;
+        }
+        
+    }
+    
+    /**
+     * Placeholder entry for a class which is currently being loaded. Threads
+     * which cannot wait for the owner load the class themselves, the first
+     * result to complete the entry is the one published to every caller.
+     */
+    static final class Pending extends Entry {
+        
+        /**
+         * Thread performing the load
+         */
+        final Thread owner = Thread.currentThread();
+        
+        private volatile boolean done;
+        
+        private ClassInfo result;
+        
+        Pending(String name) {
+            super(name, null, false, null);
+        }
+        
+        @Override
+        boolean isPending() {
+            return true;
+        }
+        
+        /**
+         * Complete this entry with the supplied result unless it is already
+         * complete
+         * 
+         * @param result loaded metadata
+         * @param force complete the entry even if the result is <tt>null</tt>
+         * @return the result this entry was completed with, or the supplied
+         *      result if the entry was not completed
+         */
+        synchronized ClassInfo complete(ClassInfo result, boolean force) {
+            if (!this.done && (result != null || force)) {
+                this.result = result;
+                this.done = true;
+                this.notifyAll();
+            }
+            return this.done ? this.result : result;
+        }
+        
+        synchronized ClassInfo await() throws InterruptedException {
+            while (!this.done) {
+                this.wait();
+            }
+            return this.result;
+        }
+        
+    }
+    
+    /**
+     * Soft reference which remembers its entry so that it can be purged from
+     * the cache once cleared
+     */
+    static final class EntryReference extends SoftReference<ClassInfo> {
+        
+        final Entry entry;
+        
+        EntryReference(ClassInfo referent, ReferenceQueue<ClassInfo> queue, Entry entry) {
+            super(referent, queue);
+            this.entry = entry;
+        }
+        
+    }
+    
+    /**
+     * Size used by the size policy if the configured size is not valid
+     */
+    private static final int DEFAULT_MAX_SIZE = 16384;
+    
+    /**
+     * Number of loads in progress on the current thread. Threads which are
+     * already loading a class never wait for loads on other threads since the
+     * other thread could in turn be waiting on them.
+     */
+    private static final ThreadLocal<Counter> loadDepth = new ThreadLocal<Counter>() {
+        @Override
+        protected Counter initialValue() {
+            return new Counter();
+        }
+    };
+    
+    private final Profiler profiler;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    
+    /**
+     * Evictable entries in insertion order, only used by the size policy
+     */
+    private final Queue<Entry> evictionQueue = new ConcurrentLinkedQueue<Entry>();
+    
+    /**
+     * Number of evictable entries currently in the cache
+     */
+    private final AtomicInteger evictableCount = new AtomicInteger();
+    
+    private final ReferenceQueue<ClassInfo> referenceQueue = new ReferenceQueue<ClassInfo>();
+    
+    /**
+     * Eviction policy, resolved lazily since the cache is created before the
+     * environment is available
+     */
+    private volatile Eviction eviction;
+    
+    private int maxSize;
+
+    ClassInfoCache(Profiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    private Eviction getEviction() {
+        if (this.eviction == null) {
+            MixinEnvironment env = MixinEnvironment.getCurrentEnvironment();
+            Eviction eviction = env.<Eviction>getOption(Option.CLASSINFO_CACHE_EVICTION, Eviction.UNBOUNDED);
+            try {
+                this.maxSize = Math.max(1, Integer.parseInt(env.getOptionValue(Option.CLASSINFO_CACHE_SIZE)));
+            } catch (NumberFormatException ex) {
+                this.maxSize = ClassInfoCache.DEFAULT_MAX_SIZE;
+            }
+            this.eviction = eviction;
+        }
+        return this.eviction;
+    }
+    
+    /**
+     * Get the cached metadata for the specified class without loading it
+     * 
+     * @param name Binary name of the class
+     * @return cached metadata or null if the class is not cached (or was
+     *      cached as unresolvable)
+     */
+    ClassInfo get(String name) {
+        Entry entry = this.entries.get(name);
+        return entry != null && !entry.isPending() ? entry.get() : null;
+    }
+    
+    /**
+     * Get the metadata for the specified class, loading it with the supplied
+     * loader if it is not already cached
+     * 
+     * @param name Binary name of the class
+     * @param loader Loader to use if the class is not cached
+     * @return class metadata or null if the class could not be loaded
+     */
+    ClassInfo get(String name, Loader loader) {
+        while (true) {
+            Entry entry = this.entries.get(name);
+            if (entry == null) {
+                Pending pending = new Pending(name);
+                if (this.entries.putIfAbsent(name, pending) == null) {
+                    return this.load(pending, loader);
+                }
+                continue;
+            }
+            
+            if (entry.isPending()) {
+                Pending pending = (Pending)entry;
+                if (pending.owner == Thread.currentThread() || ClassInfoCache.loadDepth.get().value > 0) {
+                    return this.publish(pending, this.loadDetached(name, loader), false);
+                }
+                try {
+                    this.count("class.meta.wait");
+                    return pending.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return this.publish(pending, this.loadDetached(name, loader), false);
+                }
+            }
+            
+            ClassInfo info = entry.get();
+            if (info == null && entry.isCleared()) {
+                this.purge(entry);
+                continue;
+            }
+            
+            this.count("class.meta.hit");
+            return info;
+        }
+    }
+    
+    /**
+     * Add metadata which must never be evicted to the cache, replacing any
+     * existing entry. If the class is currently being loaded, the pending
+     * entry is completed with the supplied metadata unless it was already
+     * completed, in which case the published metadata is retained instead.
+     * 
+     * @param info class metadata to retain
+     */
+    void retain(ClassInfo info) {
+        String name = info.getName();
+        while (true) {
+            Entry existing = this.entries.get(name);
+            ClassInfo retained = existing != null && existing.isPending() ? ((Pending)existing).complete(info, true) : info;
+            Entry entry = new Entry(name, retained, false, null);
+            if (existing == null ? this.entries.putIfAbsent(name, entry) == null : this.entries.replace(name, existing, entry)) {
+                if (existing != null && existing.evictable) {
+                    this.evictableCount.decrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+    
+    private ClassInfo load(Pending pending, Loader loader) {
+        ClassInfo info = null;
+        try {
+            info = this.loadDetached(pending.name, loader);
+        } finally {
+            info = this.publish(pending, info, true);
+        }
+        return info;
+    }
+    
+    /**
+     * Complete the pending entry with the supplied result and replace it with
+     * a completed entry. If another thread already completed the entry, its
+     * result is returned instead so that every caller receives the same
+     * instance.
+     * 
+     * @param pending pending entry
+     * @param info loaded metadata
+     * @param force publish the result even if it is <tt>null</tt>, only the
+     *      owner of the pending entry forces publication
+     * @return published metadata
+     */
+    private ClassInfo publish(Pending pending, ClassInfo info, boolean force) {
+        ClassInfo winner = pending.complete(info, force);
+        if (winner != null || force) {
+            Entry entry = this.createEntry(pending.name, winner);
+            if (this.entries.replace(pending.name, pending, entry)) {
+                this.added(entry);
+            }
+        }
+        return winner;
+    }
+    
+    private ClassInfo loadDetached(String name, Loader loader) {
+        this.count("class.meta.miss");
+        Counter depth = ClassInfoCache.loadDepth.get();
+        depth.value++;
+        try {
+            return loader.load(name);
+        } finally {
+            depth.value--;
+        }
+    }
+
+    private Entry createEntry(String name, ClassInfo info) {
+        Eviction eviction = this.getEviction();
+        boolean evictable = eviction != Eviction.UNBOUNDED && info != null && !info.isRetained();
+        return new Entry(name, info, evictable, evictable && eviction == Eviction.SOFT ? this.referenceQueue : null);
+    }
+
+    private void added(Entry entry) {
+        this.expungeCleared();
+        if (!entry.evictable) {
+            return;
+        }
+        
+        this.evictableCount.incrementAndGet();
+        if (this.eviction != Eviction.SIZE) {
+            return;
+        }
+        
+        this.evictionQueue.offer(entry);
+        while (this.evictableCount.get() > this.maxSize) {
+            Entry eldest = this.evictionQueue.poll();
+            if (eldest == null) {
+                break;
+            }
+            ClassInfo info = eldest.get();
+            if (info != null && info.isRetained()) {
+                // Became a mixin target since it was cached, keep it for good
+                this.retain(info);
+                continue;
+            }
+            this.purge(eldest);
+        }
+    }
+    
+    private void expungeCleared() {
+        for (Reference<? extends ClassInfo> ref; (ref = this.referenceQueue.poll()) != null;) {
+            this.purge(((EntryReference)ref).entry);
+        }
+    }
+
+    private void purge(Entry entry) {
+        if (this.entries.remove(entry.name, entry)) {
+            this.evictableCount.decrementAndGet();
+            this.count("class.meta.evict");
+        }
+    }
+    
+    private void count(String section) {
+        if (Profiler.isActive()) {
+            this.profiler.get(section).tick();
+        }
+    }
+
+}
@@ -202,10 +202,17 @@ class MethodMapper {
      * @return unique identifier
      */
     private static String getClassUID(String classRef) {
-        int index = MethodMapper.classes.indexOf(classRef);
-        if (index < 0) {
-            index = MethodMapper.classes.size();
-            MethodMapper.classes.add(classRef);
+        int index;
+        synchronized (MethodMapper.classes) {
+            index = MethodMapper.classes.indexOf(classRef);
+            if (index < 0) {
+                index = MethodMapper.classes.size();
+                MethodMapper.classes.add(classRef);
+            }
+        }
+        MixinClassCache.Recording recording = MixinClassCache.Recording.current();
+        if (recording != null) {
+            recording.classUIDs.put(classRef, index);
         }
         return MethodMapper.finagle(index);
     }
@@ -220,14 +227,76 @@ class MethodMapper {
      */
     private static String getMethodUID(String name, String desc, boolean increment) {
         String descriptor = String.format("%s%s", name, desc);
-        Counter id = MethodMapper.methods.get(descriptor);
-        if (id == null) {
-            id = new Counter();
-            MethodMapper.methods.put(descriptor, id);
-        } else if (increment) {
-            id.value++;
+        int value;
+        synchronized (MethodMapper.methods) {
+            Counter id = MethodMapper.methods.get(descriptor);
+            if (id == null) {
+                id = new Counter();
+                MethodMapper.methods.put(descriptor, id);
+            } else if (increment) {
+                id.value++;
+            }
+            value = id.value;
+        }
+        MixinClassCache.Recording recording = MixinClassCache.Recording.current();
+        if (recording != null) {
+            recording.methodUIDs.put(descriptor, value);
+        }
+        return String.format("%03x", value);
+    }
+
+    /**
+     * Advance the method UID counters so that they are at least the supplied
+     * values, used when restoring a class which was transformed in a
+     * previous session
+     * 
+     * @param methodUIDs method UIDs allocated when the class was transformed
+     */
+    static void restoreMethodUIDs(Map<String, Integer> methodUIDs) {
+        synchronized (MethodMapper.methods) {
+            for (Map.Entry<String, Integer> entry : methodUIDs.entrySet()) {
+                Counter id = MethodMapper.methods.get(entry.getKey());
+                if (id == null) {
+                    id = new Counter();
+                    id.value = entry.getValue();
+                    MethodMapper.methods.put(entry.getKey(), id);
+                } else if (id.value < entry.getValue()) {
+                    id.value = entry.getValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Assign the supplied class UIDs, used when restoring a class which was
+     * transformed in a previous session since the handler names in the class
+     * embed the UIDs of the mixins they came from. Fails without assigning
+     * anything if any of the UIDs is already assigned to a different class in
+     * this session.
+     * 
+     * @param classUIDs class UIDs allocated when the class was transformed
+     * @return true if the UIDs were assigned
+     */
+    static boolean restoreClassUIDs(Map<String, Integer> classUIDs) {
+        synchronized (MethodMapper.classes) {
+            for (Map.Entry<String, Integer> entry : classUIDs.entrySet()) {
+                int index = entry.getValue().intValue();
+                int existing = MethodMapper.classes.indexOf(entry.getKey());
+                if (existing >= 0 ? existing != index
+                        : index < MethodMapper.classes.size() && MethodMapper.classes.get(index) != null) {
+                    return false;
+                }
+            }
+            for (Map.Entry<String, Integer> entry : classUIDs.entrySet()) {
+                int index = entry.getValue().intValue();
+                while (MethodMapper.classes.size() <= index) {
+                    // Reserve the gap, UIDs in the gap may be restored later
+                    MethodMapper.classes.add(null);
+                }
+                MethodMapper.classes.set(index, entry.getKey());
+            }
         }
-        return String.format("%03x", id.value);
+        return true;
     }
 
     /**
@@ -66,6 +66,7 @@ import org.spongepowered.asm.util.Bytecode.DelegateInitialiser;
 import org.spongepowered.asm.util.Constants;
 import org.spongepowered.asm.util.ConstraintParser;
 import org.spongepowered.asm.util.ConstraintParser.Constraint;
+import org.spongepowered.asm.util.perf.CostAudit;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
 import org.spongepowered.asm.util.throwables.ConstraintViolationException;
@@ -159,6 +160,12 @@ class MixinApplicatorStandard {
      */
     protected final Profiler profiler = Profiler.getProfiler("mixin");
     
+    /**
+     * Profiler for time spent applying each mixin, sections are named by mixin
+     * class and are only included in exported profiler data
+     */
+    protected final Profiler mixinProfiler = Profiler.getProfiler("mixins");
+    
     /**
      * Audit trail (if available); 
      */
@@ -291,7 +298,20 @@ class MixinApplicatorStandard {
      * @param mixin Mixin to apply
      */
     protected final void applyMixin(MixinTargetContext mixin, ApplicatorPass pass, int injectorOrder) {
-        IActivity activity = this.activities.begin("Apply");
+        Section timer = this.mixinProfiler.begin(Profiler.ROOT | Profiler.FINE, mixin.getClassName());
+        CostAudit.Sample sample = CostAudit.begin();
+        try {
+            timer.setInfo(mixin.getMixin().getConfig().getName());
+            this.applyMixin(mixin, pass, injectorOrder, this.activities.begin("Apply"));
+        } finally {
+            timer.end();
+            if (sample != null) {
+                CostAudit.end(sample, mixin.getMixin(), "apply." + pass.name().toLowerCase(Locale.ROOT), null);
+            }
+        }
+    }
+    
+    private void applyMixin(MixinTargetContext mixin, ApplicatorPass pass, int injectorOrder, IActivity activity) {
         switch (pass) {
             case MAIN:
                 activity.next("Apply Signature");
@@ -510,6 +530,7 @@ class MixinApplicatorStandard {
         }
         
         this.targetClass.methods.add(method);
+        this.context.getMethodIndex().invalidate();
         mixin.methodMerged(method);
         
         if (method.signature != null) {
@@ -659,6 +680,7 @@ class MixinApplicatorStandard {
         }
         
         target.name = proxyName;
+        this.context.getMethodIndex().invalidate();
     }
 
     /**
@@ -695,6 +717,7 @@ class MixinApplicatorStandard {
         }
         
         this.targetClass.methods.add(method);
+        this.context.getMethodIndex().invalidate();
     }
 
     /**
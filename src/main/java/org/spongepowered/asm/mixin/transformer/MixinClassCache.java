@@ -0,0 +1,852 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.service.ISyntheticClassRegistry;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.asm.ASM;
+import org.spongepowered.asm.util.perf.Profiler;
+
+/**
+ * Persistent cache of transformed classes, see {@link Option#CLASS_CACHE}.
+ * 
+ * <p>Entries are keyed by a digest of the untransformed bytecode, the mixins
+ * which are applied to the class (including their bytecode, their config and
+ * their refmap), the superclasses of the class and the mixins applied to them,
+ * and the environment options. Session state which the transformed bytecode
+ * depends on is recorded with each entry, see {@link Recording}, and entries
+ * whose state conflicts with the current session are transformed again.</p>
+ * 
+ * <p>The cache file is an append-only sequence of records. The records which
+ * are valid when the cache is opened are memory-mapped once any incomplete
+ * tail has been truncated, new entries are appended to the end of the file.
+ * If the file is locked by another process the cache is used read-only.</p>
+ * 
+ * <p>Only classes whose output is fully determined by the key are cached:
+ * classes which reference mixin-synthetic classes, classes which coprocessors
+ * could transform and transformations which encountered errors are never
+ * stored.</p>
+ */
+final class MixinClassCache {
+    
+    /**
+     * A member of a mixin or target class which was renamed whilst a class
+     * was transformed
+     */
+    static final class Rename {
+        
+        final String owner;
+        
+        final boolean method;
+        
+        final String name;
+        
+        final String desc;
+        
+        final String newName;
+        
+        final boolean conformed;
+        
+        Rename(String owner, boolean method, String name, String desc, String newName, boolean conformed) {
+            this.owner = owner;
+            this.method = method;
+            this.name = name;
+            this.desc = desc;
+            this.newName = newName;
+            this.conformed = conformed;
+        }
+        
+    }
+    
+    /**
+     * Session state which is allocated or resolved whilst a class is
+     * transformed and which is not captured by the transformed bytecode. The
+     * state is recorded alongside the bytecode so that it can be checked and
+     * restored when the class is served from the cache.
+     */
+    static final class Recording {
+        
+        /**
+         * Recording in progress on the current thread
+         */
+        private static final ThreadLocal<Recording> current = new ThreadLocal<Recording>();
+        
+        /**
+         * True once a cache has been opened, avoids the thread-local lookup on
+         * hot paths when caching is disabled
+         */
+        private static volatile boolean enabled;
+        
+        /**
+         * Handler method UIDs allocated by {@link MethodMapper}
+         */
+        final Map<String, Integer> methodUIDs = new LinkedHashMap<String, Integer>();
+        
+        /**
+         * Mixin class UIDs allocated by {@link MethodMapper}
+         */
+        final Map<String, Integer> classUIDs = new LinkedHashMap<String, Integer>();
+        
+        /**
+         * Members renamed in {@link ClassInfo}, in the order they were renamed
+         */
+        final List<Rename> renames = new ArrayList<Rename>();
+        
+        /**
+         * Common superclasses resolved when computing frames, keyed by both
+         * types separated by a semicolon
+         */
+        final Map<String, String> commonSuperClasses = new LinkedHashMap<String, String>();
+        
+        /**
+         * Begin recording on the current thread
+         */
+        static Recording start() {
+            Recording recording = new Recording();
+            Recording.current.set(recording);
+            return recording;
+        }
+        
+        /**
+         * Stop recording on the current thread
+         */
+        static void stop() {
+            Recording.current.remove();
+        }
+        
+        /**
+         * Get the recording in progress on the current thread, or null if the
+         * current thread is not recording
+         */
+        static Recording current() {
+            return Recording.enabled ? Recording.current.get() : null;
+        }
+        
+        /**
+         * Check that the common superclasses which were resolved when the
+         * class was transformed still resolve the same way, since the frames
+         * computed for the class depend on them
+         */
+        boolean checkCommonSuperClasses() {
+            for (Map.Entry<String, String> entry : this.commonSuperClasses.entrySet()) {
+                String types = entry.getKey();
+                int pos = types.indexOf(';');
+                if (!ClassInfo.getCommonSuperClass(types.substring(0, pos), types.substring(pos + 1)).getName().equals(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Get a copy of this recording with the unique member names generated
+         * in the specified session moved to the current session
+         */
+        Recording relocate(String from, String to) {
+            if (from.equals(to)) {
+                return this;
+            }
+            Recording relocated = new Recording();
+            relocated.methodUIDs.putAll(this.methodUIDs);
+            relocated.classUIDs.putAll(this.classUIDs);
+            relocated.commonSuperClasses.putAll(this.commonSuperClasses);
+            for (Rename rename : this.renames) {
+                relocated.renames.add(new Rename(rename.owner, rename.method, MixinClassCache.relocateName(rename.name, from, to), rename.desc,
+                        MixinClassCache.relocateName(rename.newName, from, to), rename.conformed));
+            }
+            return relocated;
+        }
+        
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.methodUIDs.size());
+            for (Map.Entry<String, Integer> uid : this.methodUIDs.entrySet()) {
+                out.writeUTF(uid.getKey());
+                out.writeInt(uid.getValue().intValue());
+            }
+            out.writeInt(this.classUIDs.size());
+            for (Map.Entry<String, Integer> uid : this.classUIDs.entrySet()) {
+                out.writeUTF(uid.getKey());
+                out.writeInt(uid.getValue().intValue());
+            }
+            out.writeInt(this.renames.size());
+            for (Rename rename : this.renames) {
+                out.writeUTF(rename.owner);
+                out.writeBoolean(rename.method);
+                out.writeUTF(rename.name);
+                out.writeUTF(rename.desc);
+                out.writeUTF(rename.newName);
+                out.writeBoolean(rename.conformed);
+            }
+            out.writeInt(this.commonSuperClasses.size());
+            for (Map.Entry<String, String> entry : this.commonSuperClasses.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+        
+        static Recording read(DataInputStream in) throws IOException {
+            Recording recording = new Recording();
+            for (int count = in.readInt(); count > 0; count--) {
+                recording.methodUIDs.put(in.readUTF(), in.readInt());
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                recording.classUIDs.put(in.readUTF(), in.readInt());
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                recording.renames.add(new Rename(in.readUTF(), in.readBoolean(), in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean()));
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                recording.commonSuperClasses.put(in.readUTF(), in.readUTF());
+            }
+            return recording;
+        }
+        
+    }
+    
+    /**
+     * A cache entry
+     */
+    static final class Entry {
+        
+        private final byte[] classBytes;
+        
+        private final String sessionId;
+        
+        private final Recording recording;
+        
+        Entry(byte[] classBytes, String sessionId, Recording recording) {
+            this.classBytes = classBytes;
+            this.sessionId = sessionId;
+            this.recording = recording;
+        }
+        
+        /**
+         * Check and restore the session state which was recorded when the
+         * class was transformed, and get the transformed bytecode for the
+         * current session. Returns null if the recorded state conflicts with
+         * the state of the current session, in which case the class must be
+         * transformed again.
+         * 
+         * @param sessionId current session id
+         * @return transformed bytecode or null if the entry cannot be used
+         */
+        byte[] restore(String sessionId) {
+            Recording recording = this.recording.relocate(this.sessionId, sessionId);
+            if (!recording.checkCommonSuperClasses() || !ClassInfo.canRestoreRenames(recording.renames)
+                    || !MethodMapper.restoreClassUIDs(recording.classUIDs)) {
+                return null;
+            }
+            ClassInfo.restoreRenames(recording.renames);
+            MethodMapper.restoreMethodUIDs(recording.methodUIDs);
+            return MixinClassCache.relocateSession(this.classBytes, this.sessionId, sessionId);
+        }
+        
+    }
+    
+    private static final int MAGIC = 0x4D434331;
+    
+    /**
+     * Increment when the record format or the key composition changes
+     */
+    private static final int FORMAT_VERSION = 2;
+    
+    private static final int HEADER_SIZE = 8;
+    
+    private static final int KEY_SIZE = 20;
+    
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    private static final ILogger logger = MixinService.getService().getLogger("mixin");
+
+    private final Profiler profiler = Profiler.getProfiler("cache");
+
+    private final File file;
+    
+    /**
+     * Offsets of the records in the cache file by key, records read when the
+     * cache was opened are in {@link #mapped}, records added since are read
+     * from {@link #channel}
+     */
+    private final Map<String, Integer> index = new ConcurrentHashMap<String, Integer>();
+    
+    /**
+     * Description of the environment mapped to its digest. Options can be
+     * changed at any time, so the description is built for every key but is
+     * only hashed again when it changes
+     */
+    private volatile SimpleImmutableEntry<String, byte[]> environmentDigest;
+    
+    /**
+     * Mixin bytecode digests
+     */
+    private final Map<MixinInfo, byte[]> mixinDigests = new ConcurrentHashMap<MixinInfo, byte[]>();
+    
+    /**
+     * Config and refmap digests
+     */
+    private final Map<MixinConfig, byte[]> configDigests = new ConcurrentHashMap<MixinConfig, byte[]>();
+    
+    /**
+     * Records read when the cache was opened
+     */
+    private MappedByteBuffer mapped;
+    
+    /**
+     * Channel to append new records to, null if the cache is read-only
+     */
+    private FileChannel channel;
+    
+    MixinClassCache(File file) {
+        this.file = file;
+        Recording.enabled = true;
+        try {
+            this.open();
+        } catch (IOException ex) {
+            MixinClassCache.logger.warn("Transformed class cache {} could not be opened, {}: {}", file, ex.getClass().getSimpleName(),
+                    ex.getMessage());
+            this.close();
+        }
+    }
+    
+    private void open() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        
+        FileChannel channel = new RandomAccessFile(this.file, "rw").getChannel();
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            // Locked by another transformer in this process
+        }
+
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Cache file is too large");
+        }
+        
+        // The index is read through the channel rather than the mapping, since
+        // a mapped file cannot be truncated on some platforms
+        int validSize = size >= MixinClassCache.HEADER_SIZE ? this.readIndex(channel, size) : 0;
+        
+        if (lock == null) {
+            MixinClassCache.logger.info("Transformed class cache {} is in use, opening read-only with {} entries", this.file, this.index.size());
+            this.map(channel, validSize);
+            channel.close();
+            return;
+        }
+        
+        if (validSize == 0) {
+            this.index.clear();
+            ByteBuffer header = ByteBuffer.allocate(MixinClassCache.HEADER_SIZE);
+            header.putInt(MixinClassCache.MAGIC).putInt(MixinClassCache.FORMAT_VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            validSize = MixinClassCache.HEADER_SIZE;
+        } else if (validSize < size) {
+            MixinClassCache.logger.debug("Discarding {} bytes of incomplete records from transformed class cache {}", size - validSize, this.file);
+            channel.truncate(validSize);
+        }
+        
+        // Only the valid records are mapped, the file is never truncated below
+        // this size again
+        this.map(channel, validSize);
+        channel.position(validSize);
+        this.channel = channel;
+        MixinClassCache.logger.debug("Opened transformed class cache {} with {} entries", this.file, this.index.size());
+    }
+    
+    /**
+     * Read the record index from the cache file
+     * 
+     * @param channel cache file
+     * @param size size of the cache file
+     * @return size of the valid part of the file, or 0 if the file does not
+     *      have a valid header
+     */
+    private int readIndex(FileChannel channel, long size) throws IOException {
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        if (in.readInt() != MixinClassCache.MAGIC || in.readInt() != MixinClassCache.FORMAT_VERSION) {
+            return 0;
+        }
+        
+        int pos = MixinClassCache.HEADER_SIZE;
+        byte[] key = new byte[MixinClassCache.KEY_SIZE];
+        while (pos + 4 + MixinClassCache.KEY_SIZE <= size) {
+            int length = in.readInt();
+            if (length < MixinClassCache.KEY_SIZE || length > size - pos - 4) {
+                break;
+            }
+            in.readFully(key);
+            int skip = length - MixinClassCache.KEY_SIZE;
+            if (in.skipBytes(skip) != skip) {
+                break;
+            }
+            this.index.put(MixinClassCache.toHex(key), pos);
+            pos += 4 + length;
+        }
+        return pos;
+    }
+    
+    /**
+     * Map the valid records of the cache file
+     * 
+     * @param channel cache file
+     * @param validSize size of the valid part of the file
+     */
+    private void map(FileChannel channel, int validSize) throws IOException {
+        this.mapped = validSize > MixinClassCache.HEADER_SIZE ? channel.map(MapMode.READ_ONLY, 0, validSize) : null;
+    }
+    
+    private void close() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+        this.channel = null;
+        this.mapped = null;
+        this.index.clear();
+    }
+
+    /**
+     * Compute the cache key for a class
+     * 
+     * @param environment Current environment
+     * @param name Class transformed name
+     * @param classBytes Untransformed bytecode
+     * @param mixins Mixins which will be applied to the class
+     * @return cache key
+     */
+    String getKey(MixinEnvironment environment, String name, byte[] classBytes, Collection<MixinInfo> mixins) {
+        MessageDigest digest = MixinClassCache.createDigest();
+        digest.update(this.getEnvironmentDigest(environment));
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update(classBytes);
+        for (MixinInfo mixin : mixins) {
+            this.updateMixin(digest, mixin);
+        }
+        this.updateHierarchy(digest, new ClassReader(classBytes).getSuperName());
+        return MixinClassCache.toHex(digest.digest());
+    }
+    
+    private void updateMixin(MessageDigest digest, MixinInfo mixin) {
+        digest.update(mixin.getClassName().getBytes(StandardCharsets.UTF_8));
+        digest.update(this.getMixinDigest(mixin));
+        digest.update(this.getConfigDigest(mixin.getParent()));
+    }
+    
+    /**
+     * Add the superclasses of a class and the mixins which target them to the
+     * key, mixins applied to a superclass can change how the mixins applied
+     * to the class itself resolve
+     * 
+     * @param digest key digest
+     * @param superName name of the direct superclass
+     */
+    private void updateHierarchy(MessageDigest digest, String superName) {
+        if (superName == null) {
+            return;
+        }
+        ClassInfo superClass = ClassInfo.forName(superName);
+        if (superClass == null) {
+            digest.update(superName.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        for (; superClass != null; superClass = superClass.getSuperClass()) {
+            digest.update(superClass.getName().getBytes(StandardCharsets.UTF_8));
+            Map<String, MixinInfo> superMixins = new TreeMap<String, MixinInfo>();
+            for (MixinInfo mixin : superClass.getMixins()) {
+                superMixins.put(mixin.getClassName(), mixin);
+            }
+            for (MixinInfo mixin : superMixins.values()) {
+                this.updateMixin(digest, mixin);
+            }
+        }
+    }
+    
+    /**
+     * Get a cached entry
+     * 
+     * @param key Cache key
+     * @return cached entry or null if the class is not cached
+     */
+    Entry get(String key) {
+        Integer offset = this.index.get(key);
+        if (offset == null) {
+            this.count("class.cache.miss");
+            return null;
+        }
+        
+        try {
+            byte[] data = this.readRecord(offset.intValue());
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, MixinClassCache.KEY_SIZE, data.length - MixinClassCache.KEY_SIZE));
+            String sessionId = in.readUTF();
+            Recording recording = Recording.read(in);
+            byte[] classBytes = new byte[in.readInt()];
+            in.readFully(classBytes);
+            this.count("class.cache.hit");
+            return new Entry(classBytes, sessionId, recording);
+        } catch (IOException ex) {
+            MixinClassCache.logger.warn("Discarding corrupt transformed class cache entry {}: {}", key, ex.getMessage());
+            this.index.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Read the record at the specified offset
+     * 
+     * @param offset record offset
+     * @return record data following the length
+     */
+    private byte[] readRecord(int offset) throws IOException {
+        MappedByteBuffer mapped = this.mapped;
+        if (mapped != null && offset < mapped.limit()) {
+            ByteBuffer record = mapped.duplicate();
+            record.position(offset);
+            byte[] data = new byte[record.getInt()];
+            record.get(data);
+            return data;
+        }
+        
+        FileChannel channel = this.channel;
+        if (channel == null) {
+            throw new IOException("Cache file is closed");
+        }
+        ByteBuffer length = ByteBuffer.allocate(4);
+        MixinClassCache.readFully(channel, length, offset);
+        ByteBuffer data = ByteBuffer.allocate(length.getInt(0));
+        MixinClassCache.readFully(channel, data, offset + 4);
+        return data.array();
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of cache file");
+            }
+        }
+    }
+
+    /**
+     * Discard an entry which could not be restored, so that the class can be
+     * stored again
+     * 
+     * @param key Cache key
+     */
+    void invalidate(String key) {
+        this.index.remove(key);
+        this.count("class.cache.stale");
+    }
+
+    /**
+     * Store a transformed class
+     * 
+     * @param key Cache key
+     * @param classBytes Transformed bytecode
+     * @param sessionId Session id the class was transformed in
+     * @param recording Session state recorded during the transformation
+     */
+    synchronized void put(String key, byte[] classBytes, String sessionId, Recording recording) {
+        if (this.channel == null || this.index.containsKey(key)) {
+            return;
+        }
+        
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(classBytes.length + 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.write(MixinClassCache.fromHex(key));
+            out.writeUTF(sessionId);
+            recording.write(out);
+            out.writeInt(classBytes.length);
+            out.write(classBytes);
+            out.flush();
+            
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            record.putInt(0, record.limit() - 4);
+            long offset = this.channel.position();
+            if (offset + record.limit() > Integer.MAX_VALUE) {
+                return;
+            }
+            while (record.hasRemaining()) {
+                this.channel.write(record);
+            }
+            this.index.put(key, Integer.valueOf((int)offset));
+            this.count("class.cache.store");
+        } catch (IOException ex) {
+            MixinClassCache.logger.warn("Error writing to transformed class cache {}, caching is disabled. {}: {}", this.file,
+                    ex.getClass().getSimpleName(), ex.getMessage());
+            this.close();
+        }
+    }
+    
+    /**
+     * Get whether the supplied transformed bytecode references any class
+     * which is generated by mixin, such classes are only generated on demand
+     * when registered by a transformation in the current session.
+     * 
+     * @param classBytes Transformed bytecode
+     * @param registry Synthetic class registry
+     * @return true if a synthetic class is referenced
+     */
+    static boolean referencesSyntheticClass(byte[] classBytes, ISyntheticClassRegistry registry) {
+        ClassReader reader = new ClassReader(classBytes);
+        char[] buf = new char[reader.getMaxStringLength()];
+        for (int item = 1; item < reader.getItemCount(); item++) {
+            int offset = reader.getItem(item);
+            if (offset > 0 && classBytes[offset - 1] == 7 /* CONSTANT_Class */) {
+                String className = reader.readUTF8(offset, buf);
+                if (className != null && registry.findSyntheticClass(className) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace the session id which the supplied transformed bytecode was
+     * generated with. The session id is embedded in the names of renamed
+     * unique members and in the merge annotations, the class is remapped so
+     * that only those names and values are changed.
+     * 
+     * @param classBytes Transformed bytecode
+     * @param from Session id the class was transformed in
+     * @param to Current session id
+     * @return bytecode for the current session
+     */
+    static byte[] relocateSession(byte[] classBytes, final String from, final String to) {
+        if (from.equals(to)) {
+            return classBytes;
+        }
+        
+        ClassReader reader = new ClassReader(classBytes);
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassRemapper(writer, new Remapper() {
+            @Override
+            public String mapMethodName(String owner, String name, String descriptor) {
+                return MixinClassCache.relocateName(name, from, to);
+            }
+            
+            @Override
+            public String mapFieldName(String owner, String name, String descriptor) {
+                return MixinClassCache.relocateName(name, from, to);
+            }
+            
+            @Override
+            public Object mapValue(Object value) {
+                return from.equals(value) ? to : super.mapValue(value);
+            }
+        }), 0);
+        return writer.toByteArray();
+    }
+    
+    /**
+     * Replace the session id in a unique member name generated by {@link
+     * MethodMapper}, other names are returned unchanged
+     * 
+     * @param name member name
+     * @param from Session id the name was generated with
+     * @param to Current session id
+     * @return name for the current session
+     */
+    static String relocateName(String name, String from, String to) {
+        String fromId = from.substring(30);
+        String toId = to.substring(30);
+        if (name.startsWith("md" + fromId + "$") || name.startsWith("fd" + fromId + "$")) {
+            return name.substring(0, 2) + toId + name.substring(2 + fromId.length());
+        }
+        String infix = "_$md$" + fromId + "$";
+        int pos = name.indexOf(infix);
+        if (pos > -1) {
+            return name.substring(0, pos + 5) + toId + name.substring(pos + 5 + fromId.length());
+        }
+        return name;
+    }
+    
+    /**
+     * Read a transformed class with its code, so that the metadata of members
+     * added to the class is the same as when the mixins were applied
+     * 
+     * @param classBytes Transformed bytecode
+     * @return class tree
+     */
+    static ClassNode readClassNode(byte[] classBytes) {
+        ClassNode classNode = new ClassNode(ASM.API_VERSION);
+        boolean expand = !MixinEnvironment.getCurrentEnvironment().getOption(Option.LAZY_EXPAND_FRAMES);
+        new ClassReader(classBytes).accept(classNode, expand ? ClassReader.EXPAND_FRAMES : 0);
+        return classNode;
+    }
+
+    private byte[] getEnvironmentDigest(MixinEnvironment environment) {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(MixinClassCache.FORMAT_VERSION).append(';').append(MixinBootstrap.VERSION).append(';').append(ASM.getVersionString());
+        sb.append(';').append(MixinEnvironment.getCompatibilityLevel()).append(';').append(environment.getObfuscationContext());
+        for (Option option : Option.values()) {
+            if (option != Option.CLASS_CACHE && option != Option.CLASS_CACHE_FILE) {
+                sb.append(';').append(option.name()).append('=').append(environment.getOption(option))
+                    .append('/').append(environment.getOptionValue(option));
+            }
+        }
+        
+        String description = sb.toString();
+        SimpleImmutableEntry<String, byte[]> digest = this.environmentDigest;
+        if (digest == null || !description.equals(digest.getKey())) {
+            digest = new SimpleImmutableEntry<String, byte[]>(description,
+                    MixinClassCache.createDigest().digest(description.getBytes(StandardCharsets.UTF_8)));
+            this.environmentDigest = digest;
+        }
+        return digest.getValue();
+    }
+    
+    private byte[] getMixinDigest(MixinInfo mixin) {
+        byte[] digest = this.mixinDigests.get(mixin);
+        if (digest == null) {
+            ClassWriter cw = new ClassWriter(0);
+            mixin.getClassNode(0).accept(cw);
+            digest = MixinClassCache.createDigest().digest(cw.toByteArray());
+            this.mixinDigests.put(mixin, digest);
+        }
+        return digest;
+    }
+    
+    private byte[] getConfigDigest(MixinConfig config) {
+        byte[] digest = this.configDigests.get(config);
+        if (digest == null) {
+            MessageDigest md = MixinClassCache.createDigest();
+            md.update(config.getName().getBytes(StandardCharsets.UTF_8));
+            MixinClassCache.updateResource(md, config.getName());
+            String refMap = config.getRefMapperConfig();
+            if (refMap != null) {
+                md.update(refMap.getBytes(StandardCharsets.UTF_8));
+                MixinClassCache.updateResource(md, refMap);
+            }
+            String plugin = config.getPluginClassName();
+            if (plugin != null) {
+                md.update(plugin.getBytes(StandardCharsets.UTF_8));
+            }
+            digest = md.digest();
+            this.configDigests.put(config, digest);
+        }
+        return digest;
+    }
+    
+    private static void updateResource(MessageDigest digest, String resourceName) {
+        InputStream in = MixinService.getService().getResourceAsStream(resourceName);
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1;) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            // Digest what we have, the cache is bypassed next time if it changes
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+    
+    private void count(String section) {
+        if (Profiler.isActive()) {
+            this.profiler.get(section).tick();
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(MixinClassCache.DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+    
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+}
@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -199,20 +200,28 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     private final ILogger logger = MixinService.getService().getLogger("mixin");
     
     /**
-     * Map of mixin target classes to mixin infos
+     * Map of mixin target classes to mixin infos. Queried concurrently by the
+     * transformer when running in concurrent mode, the lists themselves are
+     * only mutated during the (exclusive) prepare phase
      */
-    private final transient Map<String, List<MixinInfo>> mixinMapping = new HashMap<String, List<MixinInfo>>();
+    private final transient Map<String, List<MixinInfo>> mixinMapping = new ConcurrentHashMap<String, List<MixinInfo>>();
     
     /**
      * Targets for this configuration which haven't been mixed yet 
      */
-    private final transient Set<String> unhandledTargets = new HashSet<String>();
+    private final transient Set<String> unhandledTargets = Collections.<String>newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     
     /**
      * Mixins which have been parsed but not yet prepared 
      */
     private final transient List<MixinInfo> pendingMixins = new ArrayList<MixinInfo>();
     
+    /**
+     * Mixin class nodes loaded ahead of the prepare phase, consumed when the
+     * corresponding mixins are prepared
+     */
+    private final transient Map<String, ClassNode> preloadedMixins = new ConcurrentHashMap<String, ClassNode>();
+    
     /**
      * All mixins loaded by this config 
      */
@@ -870,6 +879,65 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
                 this.logger.warn("Mixin environment was unable to detect the current side, sided mixins will not be applied");
                 break;
         }
+        
+        this.preloadedMixins.clear();
+    }
+    
+    /**
+     * Get the names of the mixin classes which will be loaded when this config
+     * is prepared, excluding companion plugin mixins which are not known until
+     * the config is initialised
+     */
+    List<String> getUnpreparedMixinClasses() {
+        List<String> mixinClasses = new ArrayList<String>();
+        if (this.prepared || Strings.isNullOrEmpty(this.mixinPackage)) {
+            return mixinClasses;
+        }
+        
+        this.addUnpreparedMixinClasses(mixinClasses, this.mixinClasses);
+        switch (this.env.getSide()) {
+            case CLIENT:
+                this.addUnpreparedMixinClasses(mixinClasses, this.mixinClassesClient);
+                break;
+            case SERVER:
+                this.addUnpreparedMixinClasses(mixinClasses, this.mixinClassesServer);
+                break;
+            default:
+                break;
+        }
+        return mixinClasses;
+    }
+
+    private void addUnpreparedMixinClasses(List<String> mixinClasses, List<String> declared) {
+        if (declared == null) {
+            return;
+        }
+        for (String mixinClass : declared) {
+            if (mixinClass != null && !MixinConfig.globalMixinList.contains(this.mixinPackage + mixinClass)) {
+                mixinClasses.add(this.mixinPackage + mixinClass);
+            }
+        }
+    }
+    
+    /**
+     * Supply a mixin class node which was loaded ahead of the prepare phase
+     * 
+     * @param mixinClassName Fully qualified mixin class name
+     * @param classNode Loaded class node
+     */
+    void addPreloadedMixin(String mixinClassName, ClassNode classNode) {
+        this.preloadedMixins.put(mixinClassName, classNode);
+    }
+    
+    /**
+     * Retrieve and discard a mixin class node which was loaded ahead of the
+     * prepare phase
+     * 
+     * @param mixinClassName Fully qualified mixin class name
+     * @return preloaded class node or null if the class was not preloaded
+     */
+    ClassNode takePreloadedMixin(String mixinClassName) {
+        return this.preloadedMixins.remove(mixinClassName);
     }
     
     void postInitialise(Extensions extensions) {
@@ -1186,6 +1254,21 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         return this.refMapper;
     }
     
+    /**
+     * Get the name of the refmap resource for this config, null if the config
+     * has not been initialised yet
+     */
+    String getRefMapperConfig() {
+        return this.refMapperConfig;
+    }
+    
+    /**
+     * Get the declared class name of the config plugin
+     */
+    String getPluginClassName() {
+        return this.pluginClassName;
+    }
+    
     String remapClassName(String className, String reference) {
 //        String remapped = this.plugin != null ? this.plugin.remap(className, reference) : null;
 //        if (remapped != null) {
@@ -1336,7 +1419,10 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         List<MixinInfo> mixins = this.mixinMapping.get(targetClass);
         if (mixins == null) {
             mixins = new ArrayList<MixinInfo>();
-            this.mixinMapping.put(targetClass, mixins);
+            List<MixinInfo> existing = this.mixinMapping.putIfAbsent(targetClass, mixins);
+            if (existing != null) {
+                mixins = existing;
+            }
         }
         return mixins;
     }
@@ -161,14 +161,26 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         public final List<MixinMethodNode> mixinMethods;
         
+        /**
+         * Template this node is being copied from, if any. Used to carry the
+         * original names of methods renamed during preparation over to the
+         * copy
+         */
+        private final MixinClassNode template;
+        
         MixinClassNode(MixinInfo mixin) {
-            this(ASM.API_VERSION);
+            this(ASM.API_VERSION, null);
+        }
+        
+        MixinClassNode(MixinClassNode template) {
+            this(ASM.API_VERSION, template);
         }
         
         @SuppressWarnings("unchecked")
-        protected MixinClassNode(int api) {
+        protected MixinClassNode(int api, MixinClassNode template) {
             super(api);
             this.mixinMethods = (List<MixinMethodNode>)(Object)this.methods;
+            this.template = template;
         }
         
         public MixinInfo getMixin() {
@@ -181,7 +193,9 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         @Override
         public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
-            MethodNode method = new MixinMethodNode(access, name, desc, signature, exceptions);
+            String originalName = this.template != null ? this.template.mixinMethods.get(this.methods.size()).getOriginalName() : name;
+            MethodNode method = new MixinMethodNode(access, originalName, desc, signature, exceptions);
+            method.name = name;
             this.methods.add(method);
             return method;
         }
@@ -240,6 +254,13 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          * application
          */
         protected MixinClassNode validationClassNode;
+        
+        /**
+         * Prepared ClassNode which target contexts are copied from, so that
+         * the mixin is only prepared once regardless of how many classes it
+         * targets. Created on first use.
+         */
+        private volatile MixinClassNode template;
 
         State(ClassNode classNode) {
             this(classNode, null);
@@ -309,6 +330,32 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
             this.classNode.accept(mixinClassNode);
             return mixinClassNode;
         }
+        
+        /**
+         * Gets a new tree copied from the prepared template, preparing the
+         * template first if this is the first request. Each caller receives
+         * its own copy since target contexts modify the tree in place.
+         * 
+         * @param type Mixin Type
+         * @return Prepared tree
+         */
+        MixinClassNode createPreparedClassNode(SubType type) {
+            MixinClassNode template = this.template;
+            if (template == null) {
+                synchronized (this) {
+                    template = this.template;
+                    if (template == null) {
+                        template = this.createClassNode(ClassReader.EXPAND_FRAMES);
+                        type.createPreProcessor(template).prepare(MixinInfo.this.getExtensions());
+                        this.template = template;
+                    }
+                }
+            }
+            
+            MixinClassNode mixinClassNode = new MixinClassNode(template);
+            template.accept(mixinClassNode);
+            return mixinClassNode;
+        }
 
         /**
          * Performs pre-flight checks on the mixin
@@ -1286,13 +1333,24 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @return new context
      */
     MixinTargetContext createContextFor(TargetClassContext target) {
-        MixinClassNode classNode = this.getClassNode(ClassReader.EXPAND_FRAMES);
         Section preTimer = this.profiler.begin("pre");
-        MixinTargetContext context = this.type.createPreProcessor(classNode).prepare(this.extensions).createContextFor(target);
+        MixinClassNode classNode = this.getState().createPreparedClassNode(this.type);
+        MixinTargetContext context = this.type.createPreProcessor(classNode).prepared().createContextFor(target);
         preTimer.end();
         return context;
     }
 
+    /**
+     * Get the reader flags used when loading mixin classes for the specified
+     * config
+     * 
+     * @param config Mixin config
+     * @return ClassReader flags
+     */
+    static int getReaderFlags(MixinConfig config) {
+        return config.getEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
+    }
+
     /**
      * Load the mixin class bytes
      * 
@@ -1311,8 +1369,10 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
                     this.logger.error("Classloader restrictions [{}] encountered loading {}, name: {}", restrictions, this, mixinClassName);
                 }
             }
-            int readerFlags = this.parent.getEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
-            classNode = this.service.getBytecodeProvider().getClassNode(mixinClassName, true, readerFlags);
+            classNode = this.parent.takePreloadedMixin(mixinClassName);
+            if (classNode == null) {
+                classNode = this.service.getBytecodeProvider().getClassNode(mixinClassName, true, MixinInfo.getReaderFlags(this.parent));
+            }
         } catch (ClassNotFoundException ex) {
             throw new ClassNotFoundException(String.format("The specified mixin '%s' was not found", mixinClassName));
         } catch (IOException ex) {
@@ -200,6 +200,17 @@ class MixinPreProcessorStandard {
         return this;
     }
 
+    /**
+     * Mark the class node as already prepared, used when the node was copied
+     * from a template which has already been through the first pass
+     * 
+     * @return Prepared classnode
+     */
+    final MixinPreProcessorStandard prepared() {
+        this.prepared = true;
+        return this;
+    }
+
     protected void prepareInnerClasses(Extensions extensions) {
         InnerClassGenerator icg = extensions.<InnerClassGenerator>getGenerator(InnerClassGenerator.class);
         for (String targetClassName : this.mixin.getDeclaredTargetClasses()) {
@@ -24,8 +24,20 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
@@ -43,6 +55,8 @@ import org.spongepowered.asm.mixin.extensibility.IMixinErrorHandler.ErrorAction;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorDynamic;
+import org.spongepowered.asm.mixin.injection.selectors.MemberMatcher;
+import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
 import org.spongepowered.asm.mixin.throwables.ClassAlreadyLoadedException;
 import org.spongepowered.asm.mixin.throwables.MixinApplyError;
 import org.spongepowered.asm.mixin.throwables.MixinException;
@@ -58,14 +72,18 @@ import org.spongepowered.asm.mixin.transformer.throwables.IllegalClassLoadError;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinTransformerError;
 import org.spongepowered.asm.mixin.transformer.throwables.ReEntrantTransformerError;
+import org.spongepowered.asm.service.IClassBytecodeProvider;
 import org.spongepowered.asm.service.IMixinAuditTrail;
 import org.spongepowered.asm.service.IMixinService;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.Constants;
 import org.spongepowered.asm.util.PrettyPrinter;
 import org.spongepowered.asm.util.ReEntranceLock;
+import org.spongepowered.asm.util.perf.CostAudit;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
+import org.spongepowered.asm.util.perf.ProfilerExporter;
 
 /**
  * Heart of the Mixin pipeline 
@@ -139,6 +157,11 @@ class MixinProcessor {
         
     }
 
+    /**
+     * Number of entries to print in the cost summary when auditing
+     */
+    private static final int AUDIT_COST_LIMIT = 25;
+
     /**
      * Log all the things
      */
@@ -159,11 +182,25 @@ class MixinProcessor {
      */
     private final List<MixinConfig> pendingConfigs = new ArrayList<MixinConfig>();
     
+    /**
+     * Index of targets and mixin packages across all prepared configs, rebuilt
+     * whenever new configs are prepared
+     */
+    private volatile MixinTargetIndex index = new MixinTargetIndex(Collections.<MixinConfig>emptyList());
+    
     /**
      * Re-entrance detector
      */
     private final ReEntranceLock lock;
     
+    /**
+     * Guards the config selection and prepare phase. Application and queries
+     * hold the read lock so that multiple target classes can be processed at
+     * once when the transformer is running in concurrent mode, selection of
+     * new configs holds the write lock.
+     */
+    private final ReadWriteLock selectLock = new ReentrantReadWriteLock();
+    
     /**
      * Session ID, used as a check when parsing {@link MixinMerged} annotations
      * to prevent them being applied at compile time by people trying to
@@ -199,7 +236,7 @@ class MixinProcessor {
     /**
      * Current environment 
      */
-    private MixinEnvironment currentEnvironment;
+    private volatile MixinEnvironment currentEnvironment;
 
     /**
      * Logging level for verbose messages 
@@ -209,12 +246,18 @@ class MixinProcessor {
     /**
      * Handling an error state, do not process further mixins
      */
-    private boolean errorState = false;
+    private volatile boolean errorState = false;
     
     /**
      * Number of classes transformed in the current phase
      */
-    private int transformedCount = 0;
+    private volatile int transformedCount = 0;
+    
+    /**
+     * Number of mixin errors handled so far, used to avoid caching the output
+     * of transformations which encountered errors
+     */
+    private final AtomicInteger errorCount = new AtomicInteger();
 
     /**
      * ctor 
@@ -264,12 +307,28 @@ class MixinProcessor {
             }
         }
         
+        // Exported classes are written in the background, make sure they are all written
+        ExtensionClassExporter exporter = this.extensions.<ExtensionClassExporter>getExtension(ExtensionClassExporter.class);
+        if (exporter != null) {
+            exporter.flush();
+        }
+        
         if (environment.getOption(Option.DEBUG_PROFILER)) {
             Profiler.printAuditSummary();
+            CostAudit.getInstance().printSummary(MixinProcessor.AUDIT_COST_LIMIT);
+            if (environment.getOption(Option.DEBUG_PROFILER_EXPORT)) {
+                File exportDir = new File(Constants.DEBUG_OUTPUT_DIR, "profiler");
+                try {
+                    ProfilerExporter.export(exportDir);
+                    auditLogger.info("Exported profiler data to {}", exportDir.getAbsolutePath());
+                } catch (IOException ex) {
+                    auditLogger.warn("Could not export profiler data to {}", exportDir.getAbsolutePath(), ex);
+                }
+            }
         }
     }
 
-    synchronized boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode) {
+    boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode) {
         if (name == null || this.errorState) {
             return false;
         }
@@ -301,17 +360,8 @@ class MixinProcessor {
                 return transformed;
             }
 
-            MixinConfig packageOwnedByConfig = null;
-            
-            for (MixinConfig config : this.configs) {
-                if (config.packageMatch(name)) {
-                    int packageLen = packageOwnedByConfig != null ? packageOwnedByConfig.getMixinPackage().length() : 0;
-                    if (config.getMixinPackage().length() > packageLen) {
-                        packageOwnedByConfig = config;
-                    }
-                    continue;
-                }
-            }                
+            MixinTargetIndex index = this.index;
+            MixinConfig packageOwnedByConfig = index.getPackageOwner(name);
 
             if (packageOwnedByConfig != null) {
                 // AMS - Temp passthrough for injection points and dynamic selectors. Moving to service in 0.9
@@ -323,18 +373,7 @@ class MixinProcessor {
                 throw new IllegalClassLoadError(this.getInvalidClassError(name, targetClassNode, packageOwnedByConfig));
             }
 
-            SortedSet<MixinInfo> mixins = null;
-            for (MixinConfig config : this.configs) {
-                if (config.hasMixinsFor(name)) {
-                    if (mixins == null) {
-                        mixins = new TreeSet<MixinInfo>();
-                    }
-                    
-                    // Get and sort mixins for the class
-                    mixins.addAll(config.getMixinsFor(name));
-                }
-            }
-            
+            SortedSet<MixinInfo> mixins = index.getMixinsFor(name);
             if (mixins != null) {
                 // Re-entrance is "safe" as long as we don't need to apply any mixins, if there are mixins then we need to panic now
                 if (locked) {
@@ -361,7 +400,9 @@ class MixinProcessor {
                         this.handleMixinApplyError(context.getClassName(), suppressed, environment);
                     }
 
-                    this.transformedCount++;
+                    synchronized (this) {
+                        this.transformedCount++;
+                    }
                     transformed = true;
                 } catch (InvalidMixinException th) {
                     this.dumpClassOnFailure(name, targetClassNode, environment);
@@ -380,13 +421,13 @@ class MixinProcessor {
             this.dumpClassOnFailure(name, targetClassNode, environment);
             throw new MixinTransformerError("An unexpected critical error was encountered", th);
         } finally {
-            this.lock.pop();
+            this.unlock();
             mixinTimer.end();
         }
         return transformed;
     }
 
-    synchronized boolean couldTransformClass(MixinEnvironment environment, String name) {
+    boolean couldTransformClass(MixinEnvironment environment, String name) {
         if (environment != MixinEnvironment.getCurrentEnvironment()) {
             throw new MixinException("Current environment must match the supplied environment");
         }
@@ -402,32 +443,104 @@ class MixinProcessor {
                 return true;
             }
 
-            for (MixinConfig config : this.configs) {
-                if (config.packageMatch(name)) {
-                    // If the class is in a mixin package, it may be transformed
-                    return true;
-                }
+            // If the class is in a mixin package or any config has mixins for
+            // the class, it may be transformed
+            MixinTargetIndex index = this.index;
+            return index.hasMixinsFor(name) || index.getPackageOwner(name) != null;
+        } finally {
+            this.unlock();
+        }
+    }
+    
+    /**
+     * Get the mixins which would be applied to the specified class, provided
+     * that the transformed class can be served from the transformed class
+     * cache. Classes which coprocessors could transform are not eligible since
+     * their output may depend on other classes.
+     * 
+     * @param environment Current environment
+     * @param name Class transformed name
+     * @return mixins which would be applied or null if the class has no
+     *      mixins or is not eligible for caching
+     */
+    SortedSet<MixinInfo> getCacheableMixins(MixinEnvironment environment, String name) {
+        if (name == null || this.errorState || this.hotSwapper != null) {
+            return null;
+        }
+        
+        boolean locked = this.lockAndSelect(environment, name);
+        
+        try {
+            if (locked || this.coprocessors.processingCouldTransform(name)) {
+                return null;
             }
 
-            for (MixinConfig config : this.configs) {
-                if (config.hasMixinsFor(name)) {
-                    // If any config has mixins for the class, it may be transformed
-                    return true;
-                }
+            MixinTargetIndex index = this.index;
+            SortedSet<MixinInfo> mixins = index.getMixinsFor(name);
+            if (mixins == null || index.getPackageOwner(name) != null) {
+                return null;
             }
-
-            return false;
+            return mixins;
         } finally {
-            this.lock.pop();
+            this.unlock();
         }
     }
     
+    /**
+     * Callback from the transformer when a transformed class was served from
+     * the transformed class cache. Performs the bookkeeping which would
+     * otherwise have happened when applying the mixins.
+     * 
+     * @param name Class transformed name
+     * @param classNode Transformed class
+     * @param mixins Mixins which were applied to the cached class
+     */
+    void onCachedClass(String name, ClassNode classNode, SortedSet<MixinInfo> mixins) {
+        ClassInfo.fromClassNode(classNode).addTransformedMembers(classNode);
+        
+        for (MixinInfo mixin : mixins) {
+            mixin.getParent().postApply(name, classNode);
+            mixin.getClassInfo().addAppliedMixin(mixin);
+            if (this.auditTrail != null) {
+                this.auditTrail.onApply(name, mixin.toString());
+            }
+        }
+        
+        synchronized (this) {
+            this.transformedCount++;
+        }
+    }
+    
+    /**
+     * Get the id of this mixin session
+     */
+    String getSessionId() {
+        return this.sessionId;
+    }
+    
+    /**
+     * Get the number of mixin errors handled so far
+     */
+    int getErrorCount() {
+        return this.errorCount.get();
+    }
+    
+    /**
+     * Enter the re-entrance lock, run config selection if required and then
+     * acquire the shared lock for the remainder of the operation. Callers must
+     * call {@link #unlock} once finished.
+     * 
+     * @param environment Current environment
+     * @param name Class being processed
+     * @return true if the re-entrance lock depth was exceeded
+     */
     private boolean lockAndSelect(MixinEnvironment environment, String name) {
         boolean locked = this.lock.push().check();
 
         if (locked) {
             for (MixinConfig config : this.pendingConfigs) {
                 if (config.hasPendingMixinsFor(name)) {
+                    this.lock.pop();
                     ReEntrantTransformerError error = new ReEntrantTransformerError("Re-entrance error.");
                     MixinProcessor.logger.warn("Re-entrance detected during prepare phase, this will cause serious problems.", error);
                     throw error;
@@ -442,8 +555,14 @@ class MixinProcessor {
             }
         }
         
+        this.selectLock.readLock().lock();
         return locked;
     }
+    
+    private void unlock() {
+        this.selectLock.readLock().unlock();
+        this.lock.pop();
+    }
 
     private String getInvalidClassError(String name, ClassNode targetClassNode, MixinConfig ownedByConfig) {
         if (ownedByConfig.getClasses().contains(name)) {
@@ -482,16 +601,31 @@ class MixinProcessor {
     }
 
     private void checkSelect(MixinEnvironment environment) {
-        if (this.currentEnvironment != environment) {
-            this.select(environment);
+        if (!this.isSelectRequired(environment)) {
             return;
         }
         
-        int unvisitedCount = Mixins.getUnvisitedCount();
-        if (unvisitedCount > 0 && this.transformedCount == 0) {
-            this.select(environment);
+        // Only reached from the outermost (non re-entrant) call on this thread
+        // so the read lock cannot be held by the current thread at this point
+        Lock writeLock = this.selectLock.writeLock();
+        writeLock.lock();
+        try {
+            if (this.isSelectRequired(environment)) {
+                this.select(environment);
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
+    
+    private boolean isSelectRequired(MixinEnvironment environment) {
+        if (this.currentEnvironment != environment) {
+            return true;
+        }
+        
+        int unvisitedCount = Mixins.getUnvisitedCount();
+        return unvisitedCount > 0 && this.transformedCount == 0;
+    }
 
     private void select(MixinEnvironment environment) {
         this.verboseLoggingLevel = (environment.getOption(Option.DEBUG_VERBOSE)) ? Level.INFO : Level.DEBUG;
@@ -501,6 +635,12 @@ class MixinProcessor {
         String action = this.currentEnvironment == environment ? "Checking for additional" : "Preparing";
         MixinProcessor.logger.log(this.verboseLoggingLevel, "{} mixins for {}", action, environment);
         
+        if (this.currentEnvironment != environment) {
+            // Selectors parsed for the previous environment are not used again
+            MemberInfo.clearCache();
+            MemberMatcher.clearCache();
+        }
+        
         Profiler.setActive(true);
         this.profiler.mark(environment.getPhase().toString() + ":prepare");
         Section prepareTimer = this.profiler.begin("prepare");
@@ -582,6 +722,10 @@ class MixinProcessor {
             }
         }
         
+        if (environment.getOption(Option.PARALLEL_PREPARE)) {
+            this.preloadMixins();
+        }
+        
         for (MixinConfig config : this.pendingConfigs) {
             try {
                 MixinProcessor.logger.log(this.verboseLoggingLevel, "Preparing {} ({})", config, config.getDeclaredMixinCount());
@@ -625,10 +769,78 @@ class MixinProcessor {
         this.configs.addAll(this.pendingConfigs);
         Collections.sort(this.configs);
         this.pendingConfigs.clear();
+        this.index = new MixinTargetIndex(this.configs);
         
         return totalMixins;
     }
 
+    /**
+     * Load and parse the mixin classes of all pending configs in parallel,
+     * ahead of the configs being prepared. Preparation still happens in config
+     * order, consuming the preloaded class nodes. Classes which fail to load
+     * here are simply loaded again during preparation so that any errors are
+     * raised and handled in the usual order.
+     */
+    private void preloadMixins() {
+        Map<String, MixinConfig> mixinClasses = new LinkedHashMap<String, MixinConfig>();
+        for (MixinConfig config : this.pendingConfigs) {
+            for (String mixinClass : config.getUnpreparedMixinClasses()) {
+                if (!mixinClasses.containsKey(mixinClass)) {
+                    mixinClasses.put(mixinClass, config);
+                }
+            }
+        }
+        
+        if (mixinClasses.size() < 2) {
+            return;
+        }
+        
+        Section preloadTimer = this.profiler.begin("preload");
+        final IClassBytecodeProvider bytecodeProvider = this.service.getBytecodeProvider();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(Math.min(Runtime.getRuntime().availableProcessors(), mixinClasses.size()),
+                new ForkJoinWorkerThreadFactory() {
+                    @Override
+                    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) { };
+                        thread.setName("Mixin Prepare " + thread.getPoolIndex());
+                        thread.setContextClassLoader(contextClassLoader);
+                        return thread;
+                    }
+                }, null, false);
+        
+        try {
+            Map<String, Future<ClassNode>> futures = new LinkedHashMap<String, Future<ClassNode>>();
+            for (Map.Entry<String, MixinConfig> entry : mixinClasses.entrySet()) {
+                final String mixinClass = entry.getKey();
+                final int readerFlags = MixinInfo.getReaderFlags(entry.getValue());
+                futures.put(mixinClass, pool.submit(new Callable<ClassNode>() {
+                    @Override
+                    public ClassNode call() throws Exception {
+                        return bytecodeProvider.getClassNode(mixinClass, true, readerFlags);
+                    }
+                }));
+            }
+            
+            for (Map.Entry<String, Future<ClassNode>> entry : futures.entrySet()) {
+                try {
+                    ClassNode classNode = entry.getValue().get();
+                    if (classNode != null) {
+                        mixinClasses.get(entry.getKey()).addPreloadedMixin(entry.getKey(), classNode);
+                    }
+                } catch (ExecutionException ex) {
+                    // Loaded again, and the error reported, when the config is prepared
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            preloadTimer.end();
+        }
+    }
+
     private void handleMixinPrepareError(MixinConfig config, InvalidMixinException ex, MixinEnvironment environment) throws MixinPrepareError {
         this.handleMixinError(config.getName(), ex, environment, ErrorPhase.PREPARE);
     }
@@ -639,6 +851,7 @@ class MixinProcessor {
 
     private void handleMixinError(String context, InvalidMixinException ex, MixinEnvironment environment, ErrorPhase errorPhase) throws Error {
         this.errorState = true;
+        this.errorCount.incrementAndGet();
         
         IMixinInfo mixin = ex.getMixin();
         
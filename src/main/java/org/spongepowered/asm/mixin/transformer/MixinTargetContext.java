@@ -44,6 +44,7 @@ import org.spongepowered.asm.mixin.extensibility.IActivityContext.IActivity;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
 import org.spongepowered.asm.mixin.gen.AccessorInfo;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.selectors.TargetMethodIndex;
 import org.spongepowered.asm.mixin.injection.struct.Constructor;
 import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
 import org.spongepowered.asm.mixin.injection.struct.InjectorGroupInfo;
@@ -369,6 +370,16 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
         return this.getTarget().getClassNode();
     }
     
+    /**
+     * Get the index of target class methods, shared by all mixins applied to
+     * the target class
+     * 
+     * @return the target method index
+     */
+    public TargetMethodIndex getTargetMethodIndex() {
+        return this.getTarget().getMethodIndex();
+    }
+    
     /**
      * Get the target classinfo
      * 
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.google.common.base.Strings;
+
+/**
+ * Index of prepared mixin configs, built each time configs are prepared so
+ * that the processor can answer whether a class is a mixin target, and which
+ * config owns the package a class is in, without querying every config.
+ */
+final class MixinTargetIndex {
+    
+    /**
+     * Node in the package trie, one node per package name segment
+     */
+    static final class PackageNode {
+        
+        private final Map<String, PackageNode> children = new HashMap<String, PackageNode>();
+        
+        /**
+         * Config which declares this package as its mixin package, if any
+         */
+        MixinConfig owner;
+        
+        PackageNode child(String segment) {
+            PackageNode child = this.children.get(segment);
+            if (child == null) {
+                child = new PackageNode();
+                this.children.put(segment, child);
+            }
+            return child;
+        }
+        
+    }
+    
+    /**
+     * Mixins for each target class, merged across all configs and sorted
+     */
+    private final Map<String, SortedSet<MixinInfo>> targets = new HashMap<String, SortedSet<MixinInfo>>();
+    
+    /**
+     * Root of the mixin package trie
+     */
+    private final PackageNode packages = new PackageNode();
+    
+    /**
+     * @param configs Prepared configs, in priority order
+     */
+    MixinTargetIndex(List<MixinConfig> configs) {
+        Map<String, SortedSet<MixinInfo>> targets = new HashMap<String, SortedSet<MixinInfo>>();
+        for (MixinConfig config : configs) {
+            for (String target : config.getTargets()) {
+                SortedSet<MixinInfo> mixins = targets.get(target);
+                if (mixins == null) {
+                    mixins = new TreeSet<MixinInfo>();
+                    targets.put(target, mixins);
+                }
+                mixins.addAll(config.getMixinsFor(target));
+            }
+            
+            String mixinPackage = config.getMixinPackage();
+            if (!Strings.isNullOrEmpty(mixinPackage)) {
+                PackageNode node = this.packages;
+                for (String segment : mixinPackage.split("\\.")) {
+                    node = node.child(segment);
+                }
+                if (node.owner == null) {
+                    node.owner = config;
+                }
+            }
+        }
+        
+        for (Map.Entry<String, SortedSet<MixinInfo>> entry : targets.entrySet()) {
+            this.targets.put(entry.getKey(), Collections.<MixinInfo>unmodifiableSortedSet(entry.getValue()));
+        }
+    }
+    
+    /**
+     * Get the config with the most specific mixin package which contains the
+     * specified class
+     * 
+     * @param className Class name
+     * @return owning config or null if the class is not in a mixin package
+     */
+    MixinConfig getPackageOwner(String className) {
+        MixinConfig owner = null;
+        PackageNode node = this.packages;
+        for (int pos = 0, dot = className.indexOf('.'); dot > -1 && node != null; pos = dot + 1, dot = className.indexOf('.', pos)) {
+            node = node.children.get(className.substring(pos, dot));
+            if (node != null && node.owner != null) {
+                owner = node.owner;
+            }
+        }
+        return owner;
+    }
+    
+    /**
+     * Get whether any config has mixins for the specified class
+     * 
+     * @param className Class name
+     * @return true if the class is a mixin target
+     */
+    boolean hasMixinsFor(String className) {
+        return this.targets.containsKey(className);
+    }
+    
+    /**
+     * Get the mixins targetting the specified class across all configs
+     * 
+     * @param className Class name
+     * @return sorted, unmodifiable set of mixins or null if the class is not
+     *      a mixin target
+     */
+    SortedSet<MixinInfo> getMixinsFor(String className) {
+        return this.targets.get(className);
+    }
+    
+}
@@ -24,8 +24,12 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
 
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.launch.MixinInitialisationError;
@@ -92,6 +96,26 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * Class generator 
      */
     private final MixinClassGenerator generator;
+    
+    /**
+     * True if independent target classes may be transformed in parallel, see
+     * {@link Option#CONCURRENT_TRANSFORM}
+     */
+    private final boolean concurrent;
+    
+    /**
+     * Per-class transformation locks used in concurrent mode, analogous to the
+     * class loading locks used by parallel-capable class loaders. Only classes
+     * which could actually be transformed are assigned a lock, and the lock is
+     * discarded again once no thread holds it.
+     */
+    private final Map<String, TransformLock> transformLocks = new HashMap<String, TransformLock>();
+    
+    /**
+     * Persistent cache of transformed classes, null unless enabled with
+     * {@link Option#CLASS_CACHE}
+     */
+    private final MixinClassCache classCache;
 
     MixinTransformer() {
         MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
@@ -112,6 +136,9 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
 
         this.processor = new MixinProcessor(environment, this.extensions, this.hotSwapper, this.nestHostCoprocessor);
         this.generator = new MixinClassGenerator(environment, this.extensions);
+        this.concurrent = environment.getOption(Option.CONCURRENT_TRANSFORM);
+        this.classCache = environment.getOption(Option.CLASS_CACHE) && this.hotSwapper == null
+                ? new MixinClassCache(new File(environment.getOptionValue(Option.CLASS_CACHE_FILE))) : null;
         
         DefaultExtensions.create(environment, this.extensions, this.syntheticClassRegistry, this.nestHostCoprocessor);
     }
@@ -229,16 +256,72 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return Transformed bytecode
      */
     @Override
-    public synchronized byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
+    public byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
         if (!couldTransformClass(environment, name)) {
             return classBytes;
         }
+        Object lock = this.acquireTransformLock(name);
+        try {
+            synchronized (lock) {
+                if (this.classCache != null) {
+                    return this.transformClassCached(environment, name, classBytes);
+                }
+                return this.transformClassUncached(environment, name, classBytes);
+            }
+        } finally {
+            this.releaseTransformLock(name, lock);
+        }
+    }
+    
+    private byte[] transformClassUncached(MixinEnvironment environment, String name, byte[] classBytes) {
         ClassNode classNode = this.readClass(name, classBytes);
         if (this.processor.applyMixins(environment, name, classNode)) {
             return this.writeClass(classNode);
         }
         return classBytes;
     }
+    
+    /**
+     * Serve the transformed class from the transformed class cache if
+     * possible, otherwise transform the class and store the result
+     * 
+     * @param environment Current environment
+     * @param name Class transformed name
+     * @param classBytes Class bytecode
+     * @return Transformed bytecode
+     */
+    private byte[] transformClassCached(MixinEnvironment environment, String name, byte[] classBytes) {
+        SortedSet<MixinInfo> mixins = this.processor.getCacheableMixins(environment, name);
+        if (mixins == null) {
+            return this.transformClassUncached(environment, name, classBytes);
+        }
+        
+        String key = this.classCache.getKey(environment, name, classBytes, mixins);
+        MixinClassCache.Entry cached = this.classCache.get(key);
+        if (cached != null) {
+            byte[] restored = cached.restore(this.processor.getSessionId());
+            if (restored != null) {
+                this.processor.onCachedClass(name, MixinClassCache.readClassNode(restored), mixins);
+                return restored;
+            }
+            this.classCache.invalidate(key);
+        }
+        
+        int errorCount = this.processor.getErrorCount();
+        byte[] transformed;
+        MixinClassCache.Recording recording = MixinClassCache.Recording.start();
+        try {
+            transformed = this.transformClassUncached(environment, name, classBytes);
+        } finally {
+            MixinClassCache.Recording.stop();
+        }
+        
+        if (transformed != classBytes && this.processor.getErrorCount() == errorCount
+                && !MixinClassCache.referencesSyntheticClass(transformed, this.syntheticClassRegistry)) {
+            this.classCache.put(key, transformed, this.processor.getSessionId(), recording);
+        }
+        return transformed;
+    }
 
     /**
      * Apply mixins and postprocessors to the supplied class
@@ -249,8 +332,15 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return true if the class was transformed
      */
     @Override
-    public synchronized boolean transformClass(MixinEnvironment environment, String name, ClassNode classNode) {
-        return this.processor.applyMixins(environment, name, classNode);
+    public boolean transformClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        Object lock = this.acquireTransformLock(name);
+        try {
+            synchronized (lock) {
+                return this.processor.applyMixins(environment, name, classNode);
+            }
+        } finally {
+            this.releaseTransformLock(name, lock);
+        }
     }
 
     /**
@@ -261,8 +351,13 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return true if the class could be transformed
      */
     @Override
-    public synchronized boolean couldTransformClass(MixinEnvironment environment, String name) {
-        return this.processor.couldTransformClass(environment, name);
+    public boolean couldTransformClass(MixinEnvironment environment, String name) {
+        if (this.concurrent) {
+            return this.processor.couldTransformClass(environment, name);
+        }
+        synchronized (this) {
+            return this.processor.couldTransformClass(environment, name);
+        }
     }
 
     /**
@@ -273,12 +368,19 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return Generated bytecode or <tt>null</tt> if no class was generated
      */
     @Override
-    public synchronized byte[] generateClass(MixinEnvironment environment, String name) {
-        ClassNode classNode = MixinTransformer.createEmptyClass(name);
-        if (this.generator.generateClass(environment, name, classNode)) {
-            return this.writeClass(classNode);
+    public byte[] generateClass(MixinEnvironment environment, String name) {
+        Object lock = this.acquireTransformLock(name);
+        try {
+            synchronized (lock) {
+                ClassNode classNode = MixinTransformer.createEmptyClass(name);
+                if (this.generator.generateClass(environment, name, classNode)) {
+                    return this.writeClass(classNode);
+                }
+                return null;
+            }
+        } finally {
+            this.releaseTransformLock(name, lock);
         }
-        return null;
     }
     
     /**
@@ -288,8 +390,59 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return True if the class was generated successfully
      */
     @Override
-    public synchronized boolean generateClass(MixinEnvironment environment, String name, ClassNode classNode) {
-        return this.generator.generateClass(environment, name, classNode);
+    public boolean generateClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        Object lock = this.acquireTransformLock(name);
+        try {
+            synchronized (lock) {
+                return this.generator.generateClass(environment, name, classNode);
+            }
+        } finally {
+            this.releaseTransformLock(name, lock);
+        }
+    }
+    
+    /**
+     * Get the monitor to hold whilst transforming the specified class. Unless
+     * concurrent mode is enabled this is always the transformer itself, which
+     * serialises all transformations as in previous versions. Every call must
+     * be paired with a call to {@link #releaseTransformLock} once the monitor
+     * has been exited.
+     * 
+     * @param name Class transformed name
+     * @return monitor object
+     */
+    private Object acquireTransformLock(String name) {
+        if (!this.concurrent || name == null) {
+            return this;
+        }
+        synchronized (this.transformLocks) {
+            TransformLock lock = this.transformLocks.get(name);
+            if (lock == null) {
+                lock = new TransformLock();
+                this.transformLocks.put(name, lock);
+            }
+            lock.holders++;
+            return lock;
+        }
+    }
+    
+    /**
+     * Release a monitor obtained from {@link #acquireTransformLock}, the lock
+     * for the class is discarded when no other thread is waiting on it so that
+     * the lock table does not grow with every class ever transformed.
+     * 
+     * @param name Class transformed name
+     * @param lock monitor returned by {@link #acquireTransformLock}
+     */
+    private void releaseTransformLock(String name, Object lock) {
+        if (!(lock instanceof TransformLock)) {
+            return;
+        }
+        synchronized (this.transformLocks) {
+            if (--((TransformLock)lock).holders == 0) {
+                this.transformLocks.remove(name);
+            }
+        }
     }
     
     /**
@@ -303,4 +456,14 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
         return classNode;
     }
 
+    /**
+     * Monitor for a single class in concurrent mode, counts the threads which
+     * currently hold or are waiting for the monitor
+     */
+    static final class TransformLock {
+        
+        int holders;
+        
+    }
+
 }
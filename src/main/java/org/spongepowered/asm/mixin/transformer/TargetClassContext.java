@@ -41,6 +41,7 @@ import org.objectweb.asm.tree.MethodNode;
 import org.spongepowered.asm.mixin.Debug;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.mixin.injection.selectors.TargetMethodIndex;
 import org.spongepowered.asm.mixin.injection.struct.Constructor;
 import org.spongepowered.asm.mixin.injection.struct.Target;
 import org.spongepowered.asm.mixin.struct.SourceMap;
@@ -80,6 +81,13 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
      * Profiler 
      */
     private final Profiler profiler;
+    
+    /**
+     * Profiler for time spent applying mixins to each target class, sections
+     * are named by target class and are only included in exported profiler
+     * data
+     */
+    private final Profiler targetProfiler;
 
     /**
      * Transformer session ID
@@ -121,6 +129,11 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
      * transformations we apply
      */
     private final Map<String, Target> targetMethods = new HashMap<String, Target>();
+    
+    /**
+     * Index of target class methods, shared by all injectors
+     */
+    private final TargetMethodIndex methodIndex;
 
     /**
      * Information about methods which have been discovered by mixin
@@ -163,12 +176,14 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
         this.env = env;
         this.extensions = extensions;
         this.profiler = Profiler.getProfiler("mixin");
+        this.targetProfiler = Profiler.getProfiler("targets");
         this.sessionId = sessionId;
         this.className = name;
         this.classNode = classNode;
         this.classInfo = ClassInfo.fromClassNode(classNode);
         this.signature = this.classInfo.getSignature();
         this.mixins = mixins;
+        this.methodIndex = new TargetMethodIndex(classNode);
         this.sourceMap = new SourceMap(classNode.sourceFile);
         this.sourceMap.addFile(this.classNode);
     }
@@ -234,6 +249,13 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
         return this.classNode.methods;
     }
 
+    /**
+     * Get the index of class methods used when selecting injector targets
+     */
+    TargetMethodIndex getMethodIndex() {
+        return this.methodIndex;
+    }
+
     /**
      * Get the class constructors
      */
@@ -412,13 +434,18 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
             throw new IllegalStateException("Mixins already applied to target class " + this.className);
         }
         this.applied = true;
-        Section timer = this.profiler.begin("preapply");
-        this.preApply();
-        timer = timer.next("apply");
-        this.apply();
-        timer = timer.next("postapply");
-        this.postApply();
-        timer.end();
+        Section targetTimer = this.targetProfiler.begin(Profiler.ROOT | Profiler.FINE, this.className);
+        try {
+            Section timer = this.profiler.begin("preapply");
+            this.preApply();
+            timer = timer.next("apply");
+            this.apply();
+            timer = timer.next("postapply");
+            this.postApply();
+            timer.end();
+        } finally {
+            targetTimer.end();
+        }
     }
     
     /**
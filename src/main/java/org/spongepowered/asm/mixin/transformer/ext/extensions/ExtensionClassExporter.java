@@ -25,9 +25,20 @@
 package org.spongepowered.asm.mixin.transformer.ext.extensions;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.spongepowered.asm.logging.ILogger;
 import org.objectweb.asm.ClassWriter;
@@ -40,20 +51,253 @@ import org.spongepowered.asm.mixin.transformer.ext.ITargetClassContext;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.transformers.MixinClassWriter;
 import org.spongepowered.asm.util.Constants;
+import org.spongepowered.asm.util.asm.ASM;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
 
 import com.google.common.io.Files;
 
 /**
- * Debug exporter
+ * Debug exporter. Exported classes are copied on the transforming thread and
+ * handed to a background writer, which serialises them with frames computed and
+ * writes them in batches, either to the class export directory or to a single
+ * archive. The transforming thread only pays for the copy, which is needed
+ * since the original class continues to be modified and written once it has
+ * been exported.
  */
 public class ExtensionClassExporter implements IExtension {
     
+    /**
+     * Class waiting to be written by the background writer
+     */
+    static final class PendingExport {
+        
+        final String fileName;
+        
+        /**
+         * Copy of the exported class, released once it has been serialised
+         */
+        private ClassNode classNode;
+        
+        private byte[] bytes;
+        
+        PendingExport(String fileName, ClassNode classNode) {
+            this.fileName = fileName;
+            this.classNode = classNode;
+        }
+        
+        /**
+         * Get the class bytes, serialising the class the first time this is
+         * called. Returns null if the class could not be serialised.
+         */
+        byte[] getBytes() {
+            if (this.classNode != null) {
+                this.bytes = ExtensionClassExporter.getClassBytes(this.classNode, true);
+                this.classNode = null;
+            }
+            return this.bytes;
+        }
+        
+    }
+    
+    /**
+     * Background writer for exported classes
+     */
+    final class ExportWriter implements Runnable {
+        
+        private final BlockingQueue<PendingExport> queue = new LinkedBlockingQueue<PendingExport>();
+        
+        /**
+         * Directories already created, so that each directory is only created
+         * once
+         */
+        private final Set<File> dirs = new HashSet<File>();
+        
+        /**
+         * Entries already written to the archive
+         */
+        private final Set<String> entries = new HashSet<String>();
+        
+        private final Thread thread;
+        
+        private ZipOutputStream archive;
+        
+        /**
+         * Set if writing to the archive failed, remaining classes are written
+         * to the class export directory instead
+         */
+        private boolean archiveFailed;
+        
+        /**
+         * Number of classes submitted but not yet written
+         */
+        private int pending;
+        
+        ExportWriter() {
+            this.thread = new Thread(this, "Mixin Export");
+            this.thread.setDaemon(true);
+            this.thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+            this.thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread("Mixin Export Shutdown") {
+                @Override
+                public void run() {
+                    ExportWriter.this.close();
+                }
+            });
+        }
+        
+        void submit(String fileName, ClassNode classNode) {
+            synchronized (this) {
+                this.pending++;
+            }
+            this.queue.add(new PendingExport(fileName, classNode));
+        }
+        
+        /**
+         * Wait for all submitted classes to be written
+         */
+        synchronized void flush() {
+            try {
+                while (this.pending > 0 && this.thread.isAlive()) {
+                    this.wait(100L);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        /**
+         * Write all submitted classes and close the archive
+         */
+        void close() {
+            this.flush();
+            this.thread.interrupt();
+            this.closeArchive();
+        }
+        
+        private synchronized void closeArchive() {
+            if (this.archive != null) {
+                try {
+                    this.archive.close();
+                } catch (IOException ex) {
+                    ExtensionClassExporter.logger.debug("Error closing class export archive: {}", ex.getMessage());
+                }
+                this.archive = null;
+            }
+        }
+        
+        @Override
+        public void run() {
+            List<PendingExport> batch = new ArrayList<PendingExport>();
+            try {
+                while (true) {
+                    batch.add(this.queue.take());
+                    this.queue.drainTo(batch, ExtensionClassExporter.BATCH_SIZE - 1);
+                    for (PendingExport export : batch) {
+                        this.write(export);
+                    }
+                    if (!this.flushArchive()) {
+                        // Entries in this batch may not have reached the archive
+                        for (PendingExport export : batch) {
+                            this.write(export);
+                        }
+                    }
+                    synchronized (this) {
+                        this.pending -= batch.size();
+                        this.notifyAll();
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException ex) {
+                // Closed
+            }
+        }
+        
+        private void write(PendingExport export) {
+            byte[] bytes = export.getBytes();
+            if (bytes == null) {
+                return;
+            }
+            
+            if (this.isArchiveActive()) {
+                try {
+                    this.writeArchive(export.fileName + ".class", bytes);
+                    return;
+                } catch (IOException ex) {
+                    this.onArchiveError(ex);
+                }
+            }
+            
+            try {
+                File outputFile = new File(ExtensionClassExporter.this.classExportDir, export.fileName + ".class");
+                File dir = outputFile.getParentFile();
+                if (this.dirs.add(dir)) {
+                    dir.mkdirs();
+                }
+                Files.write(bytes, outputFile);
+                if (ExtensionClassExporter.this.decompiler != null) {
+                    ExtensionClassExporter.this.decompiler.decompile(outputFile);
+                }
+            } catch (IOException ex) {
+                ExtensionClassExporter.logger.debug("Error exporting class {}: {}", export.fileName, ex.getMessage());
+            }
+        }
+        
+        private synchronized boolean isArchiveActive() {
+            return ExtensionClassExporter.this.archiveFile != null && !this.archiveFailed;
+        }
+        
+        /**
+         * Flush the archive, returns false if the archive failed while
+         * flushing
+         */
+        private synchronized boolean flushArchive() {
+            if (this.archive != null) {
+                try {
+                    this.archive.flush();
+                } catch (IOException ex) {
+                    this.onArchiveError(ex);
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private synchronized void onArchiveError(IOException ex) {
+            ExtensionClassExporter.logger.warn("Error writing class export archive, exporting remaining classes to {} instead: {}",
+                    ExtensionClassExporter.this.classExportDir, ex.getMessage());
+            this.archiveFailed = true;
+            this.closeArchive();
+        }
+        
+        private synchronized void writeArchive(String name, byte[] bytes) throws IOException {
+            if (this.archive == null) {
+                File archiveFile = ExtensionClassExporter.this.archiveFile;
+                archiveFile.getParentFile().mkdirs();
+                this.archive = new ZipOutputStream(new FileOutputStream(archiveFile));
+            }
+            if (!this.entries.add(name)) {
+                ExtensionClassExporter.logger.debug("Class {} was already exported to the archive, skipping", name);
+                return;
+            }
+            this.archive.putNextEntry(new ZipEntry(name));
+            this.archive.write(bytes);
+            this.archive.closeEntry();
+        }
+        
+    }
+    
     private static final String DECOMPILER_CLASS = "org.spongepowered.asm.mixin.transformer.debug.RuntimeDecompiler";
     
     private static final String EXPORT_CLASS_DIR = "class";
     private static final String EXPORT_JAVA_DIR = "java";
+    private static final String EXPORT_ARCHIVE = "class.jar";
+    
+    /**
+     * Maximum number of classes written by the background writer before the
+     * archive is flushed and waiting threads are notified
+     */
+    private static final int BATCH_SIZE = 64;
 
     /**
      * Logger
@@ -65,16 +309,37 @@ public class ExtensionClassExporter implements IExtension {
      */
     private final File classExportDir = new File(Constants.DEBUG_OUTPUT_DIR, ExtensionClassExporter.EXPORT_CLASS_DIR);
     
+    /**
+     * Archive to export classes to when debug.export.archive is enabled, null
+     * if exporting to the class export directory
+     */
+    private final File archiveFile;
+    
     /**
      * Runtime decompiler for exported classes 
      */
     private final IDecompiler decompiler;
     
+    /**
+     * Compiled export filters, keyed by filter string
+     */
+    private final ConcurrentMap<String, Pattern> filters = new ConcurrentHashMap<String, Pattern>();
+    
+    /**
+     * Background writer, started when the first class is exported
+     */
+    private ExportWriter writer;
+    
     public ExtensionClassExporter(MixinEnvironment env) {
-        this.decompiler = this.initDecompiler(env, new File(Constants.DEBUG_OUTPUT_DIR, ExtensionClassExporter.EXPORT_JAVA_DIR));
+        boolean archive = env.getOption(Option.DEBUG_EXPORT_ARCHIVE);
+        this.archiveFile = archive ? new File(Constants.DEBUG_OUTPUT_DIR, ExtensionClassExporter.EXPORT_ARCHIVE) : null;
+        this.decompiler = archive ? null : this.initDecompiler(env, new File(Constants.DEBUG_OUTPUT_DIR, ExtensionClassExporter.EXPORT_JAVA_DIR));
 
         try {
             org.spongepowered.asm.util.Files.deleteRecursively(this.classExportDir);
+            if (this.archiveFile != null) {
+                org.spongepowered.asm.util.Files.deleteRecursively(this.archiveFile);
+            }
         } catch (IOException ex) {
             ExtensionClassExporter.logger.debug("Error cleaning class output directory: {}", ex.getMessage());
         }
@@ -113,7 +378,34 @@ public class ExtensionClassExporter implements IExtension {
     }
 
     private boolean applyFilter(String filter, String subject) {
-        return Pattern.compile(this.prepareFilter(filter), Pattern.CASE_INSENSITIVE).matcher(subject).matches();
+        Pattern pattern = this.filters.get(filter);
+        if (pattern == null) {
+            pattern = Pattern.compile(this.prepareFilter(filter), Pattern.CASE_INSENSITIVE);
+            this.filters.put(filter, pattern);
+        }
+        return pattern.matcher(subject).matches();
+    }
+    
+    private synchronized ExportWriter getWriter() {
+        if (this.writer == null) {
+            this.writer = new ExportWriter();
+        }
+        return this.writer;
+    }
+    
+    /**
+     * Wait for all exported classes to be written. Classes are written in the
+     * background, this can be used to ensure the export is complete before
+     * inspecting it.
+     */
+    public void flush() {
+        ExportWriter writer;
+        synchronized (this) {
+            writer = this.writer;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
     }
     
     @Override
@@ -137,17 +429,18 @@ public class ExtensionClassExporter implements IExtension {
             if (force || filter == null || this.applyFilter(filter, name)) {
                 Section exportTimer = Profiler.getProfiler("export").begin("debug.export");
                 
-                File outputFile = this.dumpClass(name.replace('.', '/'), classNode);
-                if (this.decompiler != null) {
-                    this.decompiler.decompile(outputFile);
-                }
+                // Frames are computed by the writer, only take a copy here
+                ClassNode snapshot = new ClassNode(ASM.API_VERSION);
+                classNode.accept(snapshot);
+                this.getWriter().submit(name.replace('.', '/'), snapshot);
                 exportTimer.end();
             }
         }
     }
 
     /**
-     * Write class bytecode to disk for debug purposes
+     * Write class bytecode to disk for debug purposes. Unlike {@link #export},
+     * the class is written immediately on the calling thread.
      * 
      * @param fileName filename to write (.class will be automatically appended)
      * @param classNode class to dump
@@ -24,18 +24,77 @@
  */
 package org.spongepowered.asm.obfuscation;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.spongepowered.asm.mixin.extensibility.IRemapper;
+import org.spongepowered.asm.util.perf.Profiler;
+
+import com.google.common.base.Objects;
 
 /**
  * Mixin environment remapper chain. Contains all remappers for the current
  * environment to facilitate remapping via all registered remappers.
+ * 
+ * <p>Results of {@link #mapMethodName}, {@link #mapFieldName}, {@link #map}
+ * and {@link #mapDesc} are cached, and the cache is shared by every consumer of
+ * the chain. Consumers which derive their own results from the chain can store
+ * them in a named cache obtained from {@link #getCache}. All caches are cleared
+ * when a remapper is added to the chain, or when {@link #invalidate} is called
+ * by the owner of a remapper whose mappings have changed. Remappers must
+ * otherwise return the same result for the same query, see {@link IRemapper}.
+ * Cache hits and misses are counted in the <tt>remap</tt> profiler.</p>
  */
 public class RemapperChain implements IRemapper {
     
-    private final List<IRemapper> remappers = new ArrayList<IRemapper>();
+    /**
+     * Cache key for a member
+     */
+    static final class MemberKey {
+        
+        private final String owner, name, desc;
+        
+        private final int hash;
+        
+        MemberKey(String owner, String name, String desc) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.hash = ((owner != null ? owner.hashCode() : 0) * 31 + name.hashCode()) * 31 + (desc != null ? desc.hashCode() : 0);
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MemberKey)) {
+                return false;
+            }
+            MemberKey other = (MemberKey)obj;
+            return this.hash == other.hash && this.name.equals(other.name) && Objects.equal(this.owner, other.owner)
+                    && Objects.equal(this.desc, other.desc);
+        }
+        
+    }
+    
+    private static final Profiler profiler = Profiler.getProfiler("remap");
+    
+    private final List<IRemapper> remappers = new CopyOnWriteArrayList<IRemapper>();
+    
+    private final ConcurrentMap<MemberKey, String> methods = new ConcurrentHashMap<MemberKey, String>();
+    
+    private final ConcurrentMap<MemberKey, String> fields = new ConcurrentHashMap<MemberKey, String>();
+    
+    private final ConcurrentMap<String, String> types = new ConcurrentHashMap<String, String>();
+    
+    private final ConcurrentMap<String, String> descs = new ConcurrentHashMap<String, String>();
+    
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> caches = new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
     
     @Override
     public String toString() {
@@ -50,11 +109,67 @@ public class RemapperChain implements IRemapper {
      */
     public RemapperChain add(IRemapper remapper) {
         this.remappers.add(remapper);
+        this.invalidate();
         return this;
     }
+    
+    /**
+     * Get a named cache for results derived from this chain. The returned map
+     * is shared by all callers requesting the same name, and is emptied
+     * whenever the chain is {@link #invalidate invalidated}.
+     * 
+     * @param name cache name
+     * @return shared cache
+     */
+    public ConcurrentMap<String, String> getCache(String name) {
+        ConcurrentMap<String, String> cache = this.caches.get(name);
+        if (cache == null) {
+            ConcurrentMap<String, String> created = new ConcurrentHashMap<String, String>();
+            cache = this.caches.putIfAbsent(name, created);
+            if (cache == null) {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+    
+    /**
+     * Discard all cached results, including the contents of named caches. This
+     * is called when a remapper is added to the chain, and must be called by
+     * the owner of a remapper already in the chain whenever its mappings are
+     * loaded or reloaded, otherwise results computed from the previous
+     * mappings, including unmapped names, continue to be served.
+     */
+    public void invalidate() {
+        this.methods.clear();
+        this.fields.clear();
+        this.types.clear();
+        this.descs.clear();
+        for (ConcurrentMap<String, String> cache : this.caches.values()) {
+            cache.clear();
+        }
+    }
 
     @Override
     public String mapMethodName(String owner, String name, String desc) {
+        if (name == null || this.remappers.isEmpty()) {
+            return name;
+        }
+        MemberKey key = new MemberKey(owner, name, desc);
+        String cached = this.methods.get(key);
+        if (cached != null) {
+            RemapperChain.count("remap.method.hit");
+            return cached;
+        }
+        RemapperChain.count("remap.method.miss");
+        String mapped = this.mapMethodNameUncached(owner, name, desc);
+        if (mapped != null) {
+            this.methods.put(key, mapped);
+        }
+        return mapped;
+    }
+    
+    private String mapMethodNameUncached(String owner, String name, String desc) {
         for (IRemapper remapper : this.remappers) {
             String newName = remapper.mapMethodName(owner, name, desc);
             if (newName != null && !newName.equals(name)) {
@@ -66,6 +181,24 @@ public class RemapperChain implements IRemapper {
 
     @Override
     public String mapFieldName(String owner, String name, String desc) {
+        if (name == null || this.remappers.isEmpty()) {
+            return name;
+        }
+        MemberKey key = new MemberKey(owner, name, desc);
+        String cached = this.fields.get(key);
+        if (cached != null) {
+            RemapperChain.count("remap.field.hit");
+            return cached;
+        }
+        RemapperChain.count("remap.field.miss");
+        String mapped = this.mapFieldNameUncached(owner, name, desc);
+        if (mapped != null) {
+            this.fields.put(key, mapped);
+        }
+        return mapped;
+    }
+    
+    private String mapFieldNameUncached(String owner, String name, String desc) {
         for (IRemapper remapper : this.remappers) {
             String newName = remapper.mapFieldName(owner, name, desc);
             if (newName != null && !newName.equals(name)) {
@@ -77,6 +210,23 @@ public class RemapperChain implements IRemapper {
 
     @Override
     public String map(String typeName) {
+        if (typeName == null || this.remappers.isEmpty()) {
+            return typeName;
+        }
+        String cached = this.types.get(typeName);
+        if (cached != null) {
+            RemapperChain.count("remap.type.hit");
+            return cached;
+        }
+        RemapperChain.count("remap.type.miss");
+        String mapped = this.mapUncached(typeName);
+        if (mapped != null) {
+            this.types.put(typeName, mapped);
+        }
+        return mapped;
+    }
+    
+    private String mapUncached(String typeName) {
         for (IRemapper remapper : this.remappers) {
             String newName = remapper.map(typeName);
             if (newName != null && !newName.equals(typeName)) {
@@ -99,6 +249,23 @@ public class RemapperChain implements IRemapper {
     
     @Override
     public String mapDesc(String desc) {
+        if (desc == null || this.remappers.isEmpty()) {
+            return desc;
+        }
+        String cached = this.descs.get(desc);
+        if (cached != null) {
+            RemapperChain.count("remap.desc.hit");
+            return cached;
+        }
+        RemapperChain.count("remap.desc.miss");
+        String mapped = this.mapDescUncached(desc);
+        if (mapped != null) {
+            this.descs.put(desc, mapped);
+        }
+        return mapped;
+    }
+    
+    private String mapDescUncached(String desc) {
         for (IRemapper remapper : this.remappers) {
             String newDesc = remapper.mapDesc(desc);
             if (newDesc != null && !newDesc.equals(desc)) {
@@ -118,4 +285,11 @@ public class RemapperChain implements IRemapper {
         }
         return desc;
     }
+    
+    private static void count(String section) {
+        if (Profiler.isActive()) {
+            RemapperChain.profiler.get(section).tick();
+        }
+    }
+    
 }
@@ -0,0 +1,389 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.transformers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.ParameterNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Snapshot of the methods of a class as it was read, used when writing the
+ * class to determine which methods were modified in the meantime so that
+ * frames only need to be recomputed for those methods.
+ * 
+ * <p>A method is considered unmodified only if the same {@link MethodNode}
+ * is still present with the same declaration, annotations and tables and
+ * contains the same instructions, in the same order, with none of their
+ * operands changed in place. Anything else, including methods which were
+ * added, is treated as modified. Unmodified methods can be copied verbatim
+ * from the original class.</p>
+ */
+final class ClassSnapshot {
+    
+    /**
+     * Snapshot of a single method. Every property of the method which is
+     * written to the class file is captured as a flat sequence of values,
+     * tree nodes are captured by identity and all other values by equality.
+     */
+    static final class MethodSnapshot {
+        
+        private final int size;
+        
+        private final Object[] state;
+        
+        MethodSnapshot(MethodNode method) {
+            this.size = method.instructions.size();
+            this.state = MethodSnapshot.capture(method).toArray();
+        }
+        
+        boolean matches(MethodNode method) {
+            if (method.instructions.size() != this.size) {
+                return false;
+            }
+            
+            List<Object> state = MethodSnapshot.capture(method);
+            if (state.size() != this.state.length) {
+                return false;
+            }
+            for (int i = 0; i < this.state.length; i++) {
+                Object value = state.get(i);
+                if (value != this.state[i] && (value == null || !value.equals(this.state[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static List<Object> capture(MethodNode method) {
+            List<Object> state = new ArrayList<Object>(method.instructions.size() * 4 + 32);
+            state.add(method.name);
+            state.add(method.desc);
+            state.add(method.signature);
+            state.add(method.access);
+            state.add(method.maxStack);
+            state.add(method.maxLocals);
+            MethodSnapshot.addAll(state, method.exceptions);
+            MethodSnapshot.addAnnotations(state, method.visibleAnnotations);
+            MethodSnapshot.addAnnotations(state, method.invisibleAnnotations);
+            MethodSnapshot.addAnnotations(state, method.visibleTypeAnnotations);
+            MethodSnapshot.addAnnotations(state, method.invisibleTypeAnnotations);
+            MethodSnapshot.addParameterAnnotations(state, method.visibleParameterAnnotations);
+            MethodSnapshot.addParameterAnnotations(state, method.invisibleParameterAnnotations);
+            state.add(method.visibleAnnotableParameterCount);
+            state.add(method.invisibleAnnotableParameterCount);
+            MethodSnapshot.addAnnotations(state, method.visibleLocalVariableAnnotations);
+            MethodSnapshot.addAnnotations(state, method.invisibleLocalVariableAnnotations);
+            MethodSnapshot.addAll(state, method.attrs);
+            MethodSnapshot.addValue(state, method.annotationDefault);
+            
+            if (method.parameters != null) {
+                state.add(method.parameters.size());
+                for (ParameterNode parameter : method.parameters) {
+                    state.add(parameter.name);
+                    state.add(parameter.access);
+                }
+            } else {
+                state.add(null);
+            }
+            
+            for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                MethodSnapshot.addInsn(state, insn);
+            }
+            
+            state.add(method.tryCatchBlocks.size());
+            for (TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+                state.add(tryCatchBlock);
+                state.add(tryCatchBlock.start);
+                state.add(tryCatchBlock.end);
+                state.add(tryCatchBlock.handler);
+                state.add(tryCatchBlock.type);
+                MethodSnapshot.addAnnotations(state, tryCatchBlock.visibleTypeAnnotations);
+                MethodSnapshot.addAnnotations(state, tryCatchBlock.invisibleTypeAnnotations);
+            }
+            
+            if (method.localVariables != null) {
+                state.add(method.localVariables.size());
+                for (LocalVariableNode local : method.localVariables) {
+                    state.add(local.name);
+                    state.add(local.desc);
+                    state.add(local.signature);
+                    state.add(local.start);
+                    state.add(local.end);
+                    state.add(local.index);
+                }
+            } else {
+                state.add(null);
+            }
+            return state;
+        }
+        
+        private static void addInsn(List<Object> state, AbstractInsnNode insn) {
+            state.add(insn);
+            state.add(insn.getOpcode());
+            MethodSnapshot.addAnnotations(state, insn.visibleTypeAnnotations);
+            MethodSnapshot.addAnnotations(state, insn.invisibleTypeAnnotations);
+            
+            switch (insn.getType()) {
+                case AbstractInsnNode.INT_INSN:
+                    state.add(((IntInsnNode)insn).operand);
+                    break;
+                case AbstractInsnNode.VAR_INSN:
+                    state.add(((VarInsnNode)insn).var);
+                    break;
+                case AbstractInsnNode.TYPE_INSN:
+                    state.add(((TypeInsnNode)insn).desc);
+                    break;
+                case AbstractInsnNode.FIELD_INSN:
+                    FieldInsnNode fieldInsn = (FieldInsnNode)insn;
+                    state.add(fieldInsn.owner);
+                    state.add(fieldInsn.name);
+                    state.add(fieldInsn.desc);
+                    break;
+                case AbstractInsnNode.METHOD_INSN:
+                    MethodInsnNode methodInsn = (MethodInsnNode)insn;
+                    state.add(methodInsn.owner);
+                    state.add(methodInsn.name);
+                    state.add(methodInsn.desc);
+                    state.add(methodInsn.itf);
+                    break;
+                case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                    InvokeDynamicInsnNode indyInsn = (InvokeDynamicInsnNode)insn;
+                    state.add(indyInsn.name);
+                    state.add(indyInsn.desc);
+                    state.add(indyInsn.bsm);
+                    state.add(indyInsn.bsmArgs.length);
+                    Collections.addAll(state, indyInsn.bsmArgs);
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    state.add(((JumpInsnNode)insn).label);
+                    break;
+                case AbstractInsnNode.LDC_INSN:
+                    state.add(((LdcInsnNode)insn).cst);
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    state.add(((IincInsnNode)insn).var);
+                    state.add(((IincInsnNode)insn).incr);
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN:
+                    TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode)insn;
+                    state.add(tableSwitch.min);
+                    state.add(tableSwitch.max);
+                    state.add(tableSwitch.dflt);
+                    MethodSnapshot.addAll(state, tableSwitch.labels);
+                    break;
+                case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                    LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode)insn;
+                    state.add(lookupSwitch.dflt);
+                    MethodSnapshot.addAll(state, lookupSwitch.keys);
+                    MethodSnapshot.addAll(state, lookupSwitch.labels);
+                    break;
+                case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                    state.add(((MultiANewArrayInsnNode)insn).desc);
+                    state.add(((MultiANewArrayInsnNode)insn).dims);
+                    break;
+                case AbstractInsnNode.FRAME:
+                    FrameNode frame = (FrameNode)insn;
+                    state.add(frame.type);
+                    MethodSnapshot.addAll(state, frame.local);
+                    MethodSnapshot.addAll(state, frame.stack);
+                    break;
+                case AbstractInsnNode.LINE:
+                    state.add(((LineNumberNode)insn).line);
+                    state.add(((LineNumberNode)insn).start);
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        /**
+         * Annotations are captured with their values, since values can be
+         * changed in place
+         */
+        private static void addAnnotations(List<Object> state, List<? extends AnnotationNode> annotations) {
+            if (annotations == null) {
+                state.add(null);
+                return;
+            }
+            state.add(annotations.size());
+            for (AnnotationNode annotation : annotations) {
+                MethodSnapshot.addAnnotation(state, annotation);
+            }
+        }
+        
+        private static void addAnnotation(List<Object> state, AnnotationNode annotation) {
+            state.add(annotation);
+            state.add(annotation.desc);
+            if (annotation.values == null) {
+                state.add(null);
+                return;
+            }
+            state.add(annotation.values.size());
+            for (Object value : annotation.values) {
+                MethodSnapshot.addValue(state, value);
+            }
+        }
+        
+        /**
+         * Annotation values are captured recursively, array values are lists
+         * and nested annotations are nodes which can both be changed in place
+         */
+        private static void addValue(List<Object> state, Object value) {
+            if (value instanceof List) {
+                List<?> values = (List<?>)value;
+                state.add(values.size());
+                for (Object element : values) {
+                    MethodSnapshot.addValue(state, element);
+                }
+            } else if (value instanceof AnnotationNode) {
+                MethodSnapshot.addAnnotation(state, (AnnotationNode)value);
+            } else if (value instanceof String[]) {
+                String[] enumValue = (String[])value;
+                state.add(enumValue.length);
+                Collections.addAll(state, enumValue);
+            } else {
+                state.add(value);
+            }
+        }
+        
+        private static void addParameterAnnotations(List<Object> state, List<AnnotationNode>[] annotations) {
+            if (annotations == null) {
+                state.add(null);
+                return;
+            }
+            state.add(annotations.length);
+            for (List<AnnotationNode> parameterAnnotations : annotations) {
+                MethodSnapshot.addAnnotations(state, parameterAnnotations);
+            }
+        }
+        
+        private static void addAll(List<Object> state, List<?> values) {
+            if (values == null) {
+                state.add(null);
+                return;
+            }
+            state.add(values.size());
+            state.addAll(values);
+        }
+        
+    }
+    
+    private final ClassReader reader;
+    
+    private final int version;
+    
+    /**
+     * Methods in the order they appear in the original class
+     */
+    private final List<MethodNode> originals;
+    
+    private final Map<MethodNode, MethodSnapshot> methods = new IdentityHashMap<MethodNode, MethodSnapshot>();
+
+    ClassSnapshot(ClassReader reader, ClassNode classNode) {
+        this.reader = reader;
+        this.version = classNode.version;
+        this.originals = new ArrayList<MethodNode>(classNode.methods);
+        for (MethodNode method : classNode.methods) {
+            this.methods.put(method, new MethodSnapshot(method));
+        }
+    }
+    
+    /**
+     * Get the reader for the original class
+     */
+    ClassReader getReader() {
+        return this.reader;
+    }
+    
+    /**
+     * Get the method which was read at the specified position in the
+     * original class
+     * 
+     * @param index method index
+     * @return original method node
+     */
+    MethodNode getOriginalMethod(int index) {
+        return this.originals.get(index);
+    }
+    
+    /**
+     * Get whether the existing frames of unmodified methods are still valid
+     * in the supplied class. This requires that the class version did not
+     * change, since a version bump could make frames mandatory for methods
+     * which previously had none.
+     * 
+     * @param classNode Class about to be written
+     * @return true if frames of unmodified methods can be retained
+     */
+    boolean canRetainFrames(ClassNode classNode) {
+        return classNode.version == this.version && (this.version & 0xFFFF) >= Opcodes.V1_6;
+    }
+    
+    /**
+     * Get the methods in the supplied class which are unchanged since the
+     * snapshot was taken
+     * 
+     * @param classNode Class about to be written
+     * @return unmodified methods
+     */
+    Set<MethodNode> getUnmodifiedMethods(ClassNode classNode) {
+        Set<MethodNode> unmodified = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+        for (MethodNode method : classNode.methods) {
+            MethodSnapshot snapshot = this.methods.get(method);
+            if (snapshot != null && snapshot.matches(method)) {
+                unmodified.add(method);
+            }
+        }
+        return unmodified;
+    }
+    
+}
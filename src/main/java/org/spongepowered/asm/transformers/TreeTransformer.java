@@ -24,18 +24,42 @@
  */
 package org.spongepowered.asm.transformers;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
 import org.spongepowered.asm.service.ILegacyClassTransformer;
+import org.spongepowered.asm.util.asm.ASM;
 
 /**
  * Base class for transformers which work with ASM tree model
  */
 public abstract class TreeTransformer implements ILegacyClassTransformer {
 
-    private ClassReader classReader;
-    private ClassNode classNode;
+    /**
+     * Snapshots of classes read when incremental frame computation is enabled,
+     * see {@link Option#INCREMENTAL_FRAMES}. Keyed by class node so that
+     * classes can be read and written concurrently.
+     */
+    private final Map<ClassNode, ClassSnapshot> snapshots = Collections.<ClassNode, ClassSnapshot>synchronizedMap(
+            new WeakHashMap<ClassNode, ClassSnapshot>());
+    
+    /**
+     * Readers of classes read without a snapshot, used to seed the writer with
+     * the original constant pool
+     */
+    private final Map<ClassNode, ClassReader> readers = Collections.<ClassNode, ClassReader>synchronizedMap(
+            new WeakHashMap<ClassNode, ClassReader>());
 
     /**
      * @param basicClass Original bytecode
@@ -52,13 +76,16 @@ public abstract class TreeTransformer implements ILegacyClassTransformer {
      * @return tree
      */
     protected final ClassNode readClass(String className, byte[] basicClass, boolean cacheReader) {
+        MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
         ClassReader classReader = new MixinClassReader(basicClass, className);
-        if (cacheReader) {
-            this.classReader = classReader;
-        }
-
         ClassNode classNode = new ClassNode();
-        classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
+        classReader.accept(classNode, environment.getOption(Option.LAZY_EXPAND_FRAMES) ? 0 : ClassReader.EXPAND_FRAMES);
+        
+        if (cacheReader && environment.getOption(Option.INCREMENTAL_FRAMES)) {
+            this.snapshots.put(classNode, new ClassSnapshot(classReader, classNode));
+        } else if (cacheReader) {
+            this.readers.put(classNode, classReader);
+        }
         return classNode;
     }
 
@@ -67,19 +94,78 @@ public abstract class TreeTransformer implements ILegacyClassTransformer {
      * @return generated bytecode
      */
     protected final byte[] writeClass(ClassNode classNode) {
-        // Use optimised writer for speed
-        if (this.classReader != null && this.classNode == classNode) {
-            this.classNode = null;
-            ClassWriter writer = new MixinClassWriter(this.classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-            this.classReader = null;
-            classNode.accept(writer);
-            return writer.toByteArray();
+        ClassSnapshot snapshot = this.snapshots.remove(classNode);
+        if (snapshot != null && snapshot.canRetainFrames(classNode)) {
+            return TreeTransformer.writeClassIncremental(classNode, snapshot);
         }
-
-        this.classNode = null;
-
-        ClassWriter writer = new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        
+        // Use optimised writer for speed
+        ClassReader classReader = snapshot != null ? snapshot.getReader() : this.readers.remove(classNode);
+        ClassWriter writer = classReader != null
+                ? new MixinClassWriter(classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES)
+                : new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         classNode.accept(writer);
         return writer.toByteArray();
     }
+    
+    /**
+     * Write a class, copying methods which were not modified since the class
+     * was read directly from the original bytecode. The writer is seeded with
+     * the constant pool of the original class, which allows ASM to copy the
+     * unmodified methods byte-for-byte, including their frames. Only the
+     * modified and added methods are re-encoded from the tree and have their
+     * frames computed.
+     * 
+     * @param classNode ClassNode to write out
+     * @param snapshot snapshot taken when the class was read
+     * @return generated bytecode
+     */
+    private static byte[] writeClassIncremental(final ClassNode classNode, final ClassSnapshot snapshot) {
+        final ClassWriter writer = new MixinClassWriter(snapshot.getReader(), ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        final Set<MethodNode> copyable = snapshot.getUnmodifiedMethods(classNode);
+        final Set<MethodNode> written = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+        
+        // Everything except the methods is written from the tree
+        classNode.accept(new ClassVisitor(ASM.API_VERSION, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return null;
+            }
+            
+            @Override
+            public void visitEnd() {
+            }
+        });
+        
+        // Walk the methods of the original class in their original order,
+        // unmodified methods are handed straight to the writer which causes
+        // the reader to copy them, modified methods are written in their place
+        snapshot.getReader().accept(new ClassVisitor(ASM.API_VERSION) {
+            private int index;
+            
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                MethodNode original = snapshot.getOriginalMethod(this.index++);
+                if (copyable.contains(original)) {
+                    written.add(original);
+                    return writer.visitMethod(access, name, descriptor, signature, exceptions);
+                }
+                if (classNode.methods.contains(original)) {
+                    written.add(original);
+                    original.accept(writer);
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_FRAMES);
+        
+        for (MethodNode method : classNode.methods) {
+            if (!written.contains(method)) {
+                method.accept(writer);
+            }
+        }
+        
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+    
 }
@@ -26,10 +26,12 @@ package org.spongepowered.asm.util;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -51,6 +53,7 @@ import org.spongepowered.asm.mixin.transformer.ClassInfo.FrameData;
 import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
 import org.spongepowered.asm.util.asm.ASM;
 import org.spongepowered.asm.util.asm.MixinVerifier;
+import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.throwables.LVTGeneratorError;
 
 /**
@@ -118,6 +121,13 @@ public final class Locals {
             return frameThreshold == -1 || this.frames <= frameThreshold;
         }
         
+        ZombieLocalVariableNode copy() {
+            ZombieLocalVariableNode copy = new ZombieLocalVariableNode(this.ancestor, this.type);
+            copy.lifetime = this.lifetime;
+            copy.frames = this.frames;
+            return copy;
+        }
+        
         static ZombieLocalVariableNode of(LocalVariableNode ancestor, char type) {
             if (ancestor instanceof ZombieLocalVariableNode) {
                 return (ZombieLocalVariableNode)ancestor;
@@ -260,11 +270,27 @@ public final class Locals {
      */
     private static final String[] FRAME_TYPES = { "TOP", "INTEGER", "FLOAT", "DOUBLE", "LONG", "NULL", "UNINITIALIZED_THIS" };
     
+    /**
+     * Profiler used to count cache hits and misses for generated local
+     * variable tables and locals states
+     */
+    private static final Profiler profiler = Profiler.getProfiler("locals");
+    
     /**
      * Cached local variable lists, to avoid having to recalculate them
-     * (expensive) if multiple injectors are working with the same method
+     * (expensive) if multiple injectors are working with the same method.
+     * Keyed weakly by method so that entries (and the labels they hold) are
+     * discarded along with the method, and so that a reloaded method never
+     * sees a table generated for a previous copy with the same signature.
      */
-    private static final Map<String, List<LocalVariableNode>> calculatedLocalVariables = new HashMap<String, List<LocalVariableNode>>();
+    private static final Map<MethodNode, GeneratedLocals> calculatedLocalVariables = new WeakHashMap<MethodNode, GeneratedLocals>();
+    
+    /**
+     * Cached locals states for methods which have been queried by
+     * <tt>getLocalsAt</tt>, allows locals for successive nodes in the same
+     * method to be computed without replaying the method from the start
+     */
+    private static final Map<MethodNode, LocalsCache> localsCache = new WeakHashMap<MethodNode, LocalsCache>();
     
     private Locals() {
         // utility class
@@ -384,6 +410,7 @@ public final class Locals {
      *      specified location
      */
     public static LocalVariableNode[] getLocalsAt(ClassNode classNode, MethodNode method, AbstractInsnNode node, Settings settings) {
+        Locals.expandFrames(classNode, method);
         for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
             AbstractInsnNode nextNode = Locals.nextNode(method.instructions, node);
             if (nextNode instanceof FrameNode) { // Do not ffwd over frames
@@ -392,6 +419,39 @@ public final class Locals {
             node = nextNode;
         }
         
+        InsnList insns = method.instructions;
+        int index = insns.indexOf(node);
+        if (index < 0 || index >= insns.size() || insns.get(index) != node) {
+            // Node is not in the method, the whole method is evaluated
+            LocalsState state = new LocalsState(classNode, method, settings);
+            for (Iterator<AbstractInsnNode> iter = insns.iterator(); iter.hasNext();) {
+                state.visit(classNode, method, iter.next());
+            }
+            return state.getLocals();
+        }
+        
+        LocalsCache cache;
+        synchronized (Locals.localsCache) {
+            cache = Locals.localsCache.get(method);
+        }
+        if (cache != null && cache.isValid(method, settings)) {
+            Locals.count("locals.state.hit");
+        } else {
+            Locals.count("locals.state.miss");
+            cache = new LocalsCache(new LocalsState(classNode, method, settings), method, settings);
+            synchronized (Locals.localsCache) {
+                Locals.localsCache.put(method, cache);
+            }
+        }
+        return cache.getLocalsAt(classNode, method, index);
+    }
+    
+    private static LocalVariableNode[] getLocalsAt092(ClassNode classNode, MethodNode method, AbstractInsnNode node) {
+        Locals.expandFrames(classNode, method);
+        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
+            node = Locals.nextNode(method.instructions, node);
+        }
+
         ClassInfo classInfo = ClassInfo.forName(classNode.name);
         if (classInfo == null) {
             throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
@@ -409,88 +469,57 @@ public final class Locals {
         if ((method.access & Opcodes.ACC_STATIC) == 0) {
             frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
         }
-        
+
         // Initialise method arguments
         for (Type argType : Type.getArgumentTypes(method.desc)) {
             frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
             local += argType.getSize();
         }
-        
-        final int initialFrameSize = local;
+
+        int initialFrameSize = local;
         int frameSize = local;
         int frameIndex = -1;
         int lastFrameSize = local;
-        int knownFrameSize = local;
         VarInsnNode storeInsn = null;
 
         for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
             AbstractInsnNode insn = iter.next();
-            
-            // Tick the zombies
-            for (int l = 0; l < frame.length; l++) {
-                if (frame[l] instanceof ZombieLocalVariableNode) {
-                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                    zombie.lifetime++;
-                    if (insn instanceof FrameNode) {
-                        zombie.frames++;
-                    }
-                }
-            }
-
             if (storeInsn != null) {
-                LocalVariableNode storedLocal = Locals.getLocalVariableAt(classNode, method, insn, storeInsn.var);
-                frame[storeInsn.var] = storedLocal;
-                knownFrameSize = Math.max(knownFrameSize, storeInsn.var + 1);
-                if (storedLocal != null && storeInsn.var < method.maxLocals - 1 && storedLocal.desc != null
-                        && Type.getType(storedLocal.desc).getSize() == 2) {
-                    frame[storeInsn.var + 1] = null; // TOP
-                    knownFrameSize = Math.max(knownFrameSize, storeInsn.var + 2);
-                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_STORE)) {
-                        Locals.resurrect(frame, knownFrameSize, settings);
-                    }
-                }
+                frame[storeInsn.var] = Locals.getLocalVariableAt(classNode, method, insn, storeInsn.var);
                 storeInsn = null;
             }
-            
+
             handleFrame: if (insn instanceof FrameNode) {
                 frameIndex++;
                 FrameNode frameNode = (FrameNode)insn;
                 if (frameNode.type == Opcodes.F_SAME || frameNode.type == Opcodes.F_SAME1) {
                     break handleFrame;
                 }
-                
-                int frameNodeSize = Locals.computeFrameSize(frameNode, initialFrameSize);
+
                 FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
 
                 if (frameData != null) {
                     if (frameData.type == Opcodes.F_FULL) {
-                        knownFrameSize = lastFrameSize = frameSize = Math.max(initialFrameSize, Math.min(frameNodeSize, frameData.size));
+                        frameSize = Math.min(frameSize, frameData.locals);
+                        lastFrameSize = frameSize;
                     } else {
-                        frameSize = Locals.getAdjustedFrameSize(frameSize, frameData, initialFrameSize);
+                        frameSize = Locals.getAdjustedFrameSize(frameSize, frameData.type, frameData.rawSize, 0); // Fabric: initialSize 0, also applies to frameData through rawSize instead of size
                     }
                 } else {
-                    frameSize = Locals.getAdjustedFrameSize(frameSize, frameNode, initialFrameSize);
-                }
-                
-                // Sanity check
-                if (frameSize < initialFrameSize) {
-                    throw new IllegalStateException(String.format("Locals entered an invalid state evaluating %s::%s%s at instruction %d (%s). "
-                            + "Initial frame size is %d, calculated a frame size of %d with %s", classNode.name, method.name, method.desc,
-                            method.instructions.indexOf(insn), Bytecode.describeNode(insn, false), initialFrameSize, frameSize, frameData));
+                    frameSize = Locals.getAdjustedFrameSize(frameSize, frameNode, 0); // Fabric: initialSize 0
                 }
-                
-                if ((frameData == null && (frameNode.type == Opcodes.F_CHOP || frameNode.type == Opcodes.F_NEW))
-                        || (frameData != null && frameData.type == Opcodes.F_CHOP)) {
+
+                if (frameNode.type == Opcodes.F_CHOP) {
                     for (int framePos = frameSize; framePos < frame.length; framePos++) {
-                        frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.CHOP);
+                        frame[framePos] = null; 
                     }
-                    knownFrameSize = lastFrameSize = frameSize;
+                    lastFrameSize = frameSize;
                     break handleFrame;
                 }
 
                 int framePos = frameNode.type == Opcodes.F_APPEND ? lastFrameSize : 0;
                 lastFrameSize = frameSize;
-                
+
                 // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
                 for (int localPos = 0; framePos < frame.length; framePos++, localPos++) {
                     // Get the local at the current position in the FrameNode's locals list
@@ -503,14 +532,7 @@ public final class Locals {
                         boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
                         boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
                         if (localType == Opcodes.TOP) {
-                            // Explicit TOP entries are pretty much always bogus, but depending on our resurrection
-                            // strategy we may want to resurrect eligible zombies here. Real TOP entries are handled below
-                            if (frame[framePos] instanceof ZombieLocalVariableNode && settings.hasFlags(Settings.RESURRECT_FOR_BOGUS_TOP)) {
-                                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[framePos];
-                                if (zombie.type == ZombieLocalVariableNode.TRIM) {
-                                    frame[framePos] = zombie.ancestor;
-                                }
-                            }
+                            // Do nothing, explicit TOP entries are pretty much always bogus, and real ones are handled below
                         } else if (isMarkerType) {
                             frame[framePos] = null;
                         } else if (is32bitValue || is64bitValue) {
@@ -526,11 +548,7 @@ public final class Locals {
                         }
                     } else if (localType == null) {
                         if (framePos >= initialFrameSize && framePos >= frameSize && frameSize > 0) {
-                            if (framePos < knownFrameSize) {
-                                frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-                            } else {
-                                frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.TRIM);
-                            }
+                            frame[framePos] = null;
                         }
                     } else if (localType instanceof LabelNode) {
                         // Uninitialised
@@ -540,149 +558,234 @@ public final class Locals {
                     }
                 }
             } else if (insn instanceof VarInsnNode) {
-                VarInsnNode varInsn = (VarInsnNode)insn;
+                VarInsnNode varNode = (VarInsnNode) insn;
                 boolean isLoad = insn.getOpcode() >= Opcodes.ILOAD && insn.getOpcode() <= Opcodes.SALOAD;
                 if (isLoad) {
-                    LocalVariableNode toLoad = Locals.getLocalVariableAt(classNode, method, insn, varInsn.var);
-                    frame[varInsn.var] = toLoad;
-                    int varSize = toLoad != null && toLoad.desc != null ? Type.getType(frame[varInsn.var].desc).getSize() : 1;
-                    knownFrameSize = Math.max(knownFrameSize, varInsn.var + varSize);
-                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_LOAD)) {
-                        Locals.resurrect(frame, knownFrameSize, settings);
-                    }
+                    frame[varNode.var] = Locals.getLocalVariableAt(classNode, method, insn, varNode.var);
                 } else {
                     // Update the LVT for the opcode AFTER this one, since we always want to know
                     // the frame state BEFORE the *current* instruction to match the contract of
                     // injection points
-                    storeInsn = varInsn;
+                    storeInsn = varNode;
                 }
             }
-            
+
             if (insn == node) {
                 break;
             }
         }
 
-        // Null out any "unknown" or mixin-provided locals
+        // Null out any "unknown" locals
         for (int l = 0; l < frame.length; l++) {
-            if (frame[l] instanceof ZombieLocalVariableNode) {
-                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                // preserve zombies where the frame node which culled them was immediately prior to
-                // the matched instruction, or *was itself* the matched instruction, the returned
-                // frame will contain the original node (the zombie ancestor)
-                frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
-            }
-            
-            if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
+            if (frame[l] != null && frame[l].desc == null) {
                 frame[l] = null;
             }
         }
 
         return frame;
     }
-    
-    private static LocalVariableNode[] getLocalsAt092(ClassNode classNode, MethodNode method, AbstractInsnNode node) {
-        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
-            node = Locals.nextNode(method.instructions, node);
-        }
-
-        ClassInfo classInfo = ClassInfo.forName(classNode.name);
-        if (classInfo == null) {
-            throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
-        }
-        Method methodInfo = classInfo.findMethod(method, method.access | ClassInfo.INCLUDE_INITIALISERS);
-        if (methodInfo == null) {
-            throw new LVTGeneratorError("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
-        }
-        List<FrameData> frames = methodInfo.getFrames();
-
-        LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
-        int local = 0, index = 0;
 
-        // Initialise implicit "this" reference in non-static methods
-        if ((method.access & Opcodes.ACC_STATIC) == 0) {
-            frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
+    /**
+     * State of the locals state machine used by <tt>getLocalsAt</tt>. The
+     * state after visiting any instruction does not depend on which node the
+     * locals are ultimately being computed for, which allows states to be
+     * copied and cached as checkpoints so that later queries can resume from
+     * the nearest checkpoint instead of the start of the method. States do not
+     * retain the class or method they were created for.
+     */
+    static final class LocalsState {
+        
+        private final Settings settings;
+        
+        private final List<FrameData> frames;
+        
+        private final LocalVariableNode[] frame;
+        
+        private final int initialFrameSize;
+        
+        private int frameSize;
+        
+        private int frameIndex;
+        
+        private int lastFrameSize;
+        
+        private int knownFrameSize;
+        
+        private VarInsnNode storeInsn;
+        
+        LocalsState(ClassNode classNode, MethodNode method, Settings settings) {
+            this.settings = settings;
+            
+            ClassInfo classInfo = ClassInfo.forName(classNode.name);
+            if (classInfo == null) {
+                throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
+            }
+            Method methodInfo = classInfo.findMethod(method, method.access | ClassInfo.INCLUDE_INITIALISERS);
+            if (methodInfo == null) {
+                throw new LVTGeneratorError("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
+            }
+            this.frames = methodInfo.getFrames();
+    
+            this.frame = new LocalVariableNode[method.maxLocals];
+            int local = 0, index = 0;
+    
+            // Initialise implicit "this" reference in non-static methods
+            if ((method.access & Opcodes.ACC_STATIC) == 0) {
+                this.frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
+            }
+            
+            // Initialise method arguments
+            for (Type argType : Type.getArgumentTypes(method.desc)) {
+                this.frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
+                local += argType.getSize();
+            }
+            
+            this.initialFrameSize = local;
+            this.frameSize = local;
+            this.frameIndex = -1;
+            this.lastFrameSize = local;
+            this.knownFrameSize = local;
         }
-
-        // Initialise method arguments
-        for (Type argType : Type.getArgumentTypes(method.desc)) {
-            frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
-            local += argType.getSize();
+        
+        LocalsState(LocalsState other) {
+            this.settings = other.settings;
+            this.frames = other.frames;
+            this.frame = new LocalVariableNode[other.frame.length];
+            this.initialFrameSize = other.initialFrameSize;
+            this.frameSize = other.frameSize;
+            this.frameIndex = other.frameIndex;
+            this.lastFrameSize = other.lastFrameSize;
+            this.knownFrameSize = other.knownFrameSize;
+            this.storeInsn = other.storeInsn;
+            
+            // Zombies are mutable so they are copied, preserving any aliasing
+            Map<ZombieLocalVariableNode, ZombieLocalVariableNode> zombies = new IdentityHashMap<ZombieLocalVariableNode, ZombieLocalVariableNode>();
+            for (int l = 0; l < this.frame.length; l++) {
+                LocalVariableNode local = other.frame[l];
+                if (local instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = zombies.get(local);
+                    if (zombie == null) {
+                        zombie = ((ZombieLocalVariableNode)local).copy();
+                        zombies.put((ZombieLocalVariableNode)local, zombie);
+                    }
+                    local = zombie;
+                }
+                this.frame[l] = local;
+            }
         }
-
-        int initialFrameSize = local;
-        int frameSize = local;
-        int frameIndex = -1;
-        int lastFrameSize = local;
-        VarInsnNode storeInsn = null;
-
-        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
-            AbstractInsnNode insn = iter.next();
-            if (storeInsn != null) {
-                frame[storeInsn.var] = Locals.getLocalVariableAt(classNode, method, insn, storeInsn.var);
-                storeInsn = null;
+        
+        /**
+         * Advance the state machine over the specified instruction
+         */
+        void visit(ClassNode classNode, MethodNode method, AbstractInsnNode insn) {
+            Settings settings = this.settings;
+            
+            // Tick the zombies
+            for (int l = 0; l < this.frame.length; l++) {
+                if (this.frame[l] instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)this.frame[l];
+                    zombie.lifetime++;
+                    if (insn instanceof FrameNode) {
+                        zombie.frames++;
+                    }
+                }
             }
 
+            if (this.storeInsn != null) {
+                LocalVariableNode storedLocal = Locals.getLocalVariableAt(classNode, method, insn, this.storeInsn.var);
+                this.frame[this.storeInsn.var] = storedLocal;
+                this.knownFrameSize = Math.max(this.knownFrameSize, this.storeInsn.var + 1);
+                if (storedLocal != null && this.storeInsn.var < method.maxLocals - 1 && storedLocal.desc != null
+                        && Type.getType(storedLocal.desc).getSize() == 2) {
+                    this.frame[this.storeInsn.var + 1] = null; // TOP
+                    this.knownFrameSize = Math.max(this.knownFrameSize, this.storeInsn.var + 2);
+                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_STORE)) {
+                        Locals.resurrect(this.frame, this.knownFrameSize, settings);
+                    }
+                }
+                this.storeInsn = null;
+            }
+            
             handleFrame: if (insn instanceof FrameNode) {
-                frameIndex++;
+                this.frameIndex++;
                 FrameNode frameNode = (FrameNode)insn;
                 if (frameNode.type == Opcodes.F_SAME || frameNode.type == Opcodes.F_SAME1) {
                     break handleFrame;
                 }
-
-                FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
+                
+                int frameNodeSize = Locals.computeFrameSize(frameNode, this.initialFrameSize);
+                FrameData frameData = this.frameIndex < this.frames.size() ? this.frames.get(this.frameIndex) : null;
 
                 if (frameData != null) {
                     if (frameData.type == Opcodes.F_FULL) {
-                        frameSize = Math.min(frameSize, frameData.locals);
-                        lastFrameSize = frameSize;
+                        this.frameSize = Math.max(this.initialFrameSize, Math.min(frameNodeSize, frameData.size));
+                        this.knownFrameSize = this.lastFrameSize = this.frameSize;
                     } else {
-                        frameSize = Locals.getAdjustedFrameSize(frameSize, frameData.type, frameData.rawSize, 0); // Fabric: initialSize 0, also applies to frameData through rawSize instead of size
+                        this.frameSize = Locals.getAdjustedFrameSize(this.frameSize, frameData, this.initialFrameSize);
                     }
                 } else {
-                    frameSize = Locals.getAdjustedFrameSize(frameSize, frameNode, 0); // Fabric: initialSize 0
+                    this.frameSize = Locals.getAdjustedFrameSize(this.frameSize, frameNode, this.initialFrameSize);
                 }
-
-                if (frameNode.type == Opcodes.F_CHOP) {
-                    for (int framePos = frameSize; framePos < frame.length; framePos++) {
-                        frame[framePos] = null; 
+                
+                // Sanity check
+                if (this.frameSize < this.initialFrameSize) {
+                    throw new IllegalStateException(String.format("Locals entered an invalid state evaluating %s::%s%s at instruction %d (%s). "
+                            + "Initial frame size is %d, calculated a frame size of %d with %s", classNode.name, method.name, method.desc,
+                            method.instructions.indexOf(insn), Bytecode.describeNode(insn, false), this.initialFrameSize, this.frameSize, frameData));
+                }
+                
+                if ((frameData == null && (frameNode.type == Opcodes.F_CHOP || frameNode.type == Opcodes.F_NEW))
+                        || (frameData != null && frameData.type == Opcodes.F_CHOP)) {
+                    for (int framePos = this.frameSize; framePos < this.frame.length; framePos++) {
+                        this.frame[framePos] = ZombieLocalVariableNode.of(this.frame[framePos], ZombieLocalVariableNode.CHOP);
                     }
-                    lastFrameSize = frameSize;
+                    this.knownFrameSize = this.lastFrameSize = this.frameSize;
                     break handleFrame;
                 }
 
-                int framePos = frameNode.type == Opcodes.F_APPEND ? lastFrameSize : 0;
-                lastFrameSize = frameSize;
-
+                int framePos = frameNode.type == Opcodes.F_APPEND ? this.lastFrameSize : 0;
+                this.lastFrameSize = this.frameSize;
+                
                 // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
-                for (int localPos = 0; framePos < frame.length; framePos++, localPos++) {
+                for (int localPos = 0; framePos < this.frame.length; framePos++, localPos++) {
                     // Get the local at the current position in the FrameNode's locals list
                     final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
 
                     if (localType instanceof String) { // String refers to a reference type
-                        frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
+                        this.frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
                     } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
                         boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
                         boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
                         boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
                         if (localType == Opcodes.TOP) {
-                            // Do nothing, explicit TOP entries are pretty much always bogus, and real ones are handled below
+                            // Explicit TOP entries are pretty much always bogus, but depending on our resurrection
+                            // strategy we may want to resurrect eligible zombies here. Real TOP entries are handled below
+                            if (this.frame[framePos] instanceof ZombieLocalVariableNode && settings.hasFlags(Settings.RESURRECT_FOR_BOGUS_TOP)) {
+                                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)this.frame[framePos];
+                                if (zombie.type == ZombieLocalVariableNode.TRIM) {
+                                    this.frame[framePos] = zombie.ancestor;
+                                }
+                            }
                         } else if (isMarkerType) {
-                            frame[framePos] = null;
+                            this.frame[framePos] = null;
                         } else if (is32bitValue || is64bitValue) {
-                            frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
+                            this.frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
 
                             if (is64bitValue) {
                                 framePos++;
-                                frame[framePos] = null; // TOP
+                                this.frame[framePos] = null; // TOP
                             }
                         } else {
                             throw new LVTGeneratorError("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
                                     + " in " + classNode.name + "." + method.name + method.desc);
                         }
                     } else if (localType == null) {
-                        if (framePos >= initialFrameSize && framePos >= frameSize && frameSize > 0) {
-                            frame[framePos] = null;
+                        if (framePos >= this.initialFrameSize && framePos >= this.frameSize && this.frameSize > 0) {
+                            if (framePos < this.knownFrameSize) {
+                                this.frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
+                            } else {
+                                this.frame[framePos] = ZombieLocalVariableNode.of(this.frame[framePos], ZombieLocalVariableNode.TRIM);
+                            }
                         }
                     } else if (localType instanceof LabelNode) {
                         // Uninitialised
@@ -692,33 +795,139 @@ public final class Locals {
                     }
                 }
             } else if (insn instanceof VarInsnNode) {
-                VarInsnNode varNode = (VarInsnNode) insn;
+                VarInsnNode varInsn = (VarInsnNode)insn;
                 boolean isLoad = insn.getOpcode() >= Opcodes.ILOAD && insn.getOpcode() <= Opcodes.SALOAD;
                 if (isLoad) {
-                    frame[varNode.var] = Locals.getLocalVariableAt(classNode, method, insn, varNode.var);
+                    LocalVariableNode toLoad = Locals.getLocalVariableAt(classNode, method, insn, varInsn.var);
+                    this.frame[varInsn.var] = toLoad;
+                    int varSize = toLoad != null && toLoad.desc != null ? Type.getType(this.frame[varInsn.var].desc).getSize() : 1;
+                    this.knownFrameSize = Math.max(this.knownFrameSize, varInsn.var + varSize);
+                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_LOAD)) {
+                        Locals.resurrect(this.frame, this.knownFrameSize, settings);
+                    }
                 } else {
                     // Update the LVT for the opcode AFTER this one, since we always want to know
                     // the frame state BEFORE the *current* instruction to match the contract of
                     // injection points
-                    storeInsn = varNode;
+                    this.storeInsn = varInsn;
                 }
             }
+        }
+        
+        /**
+         * Get the locals for the state, culling any unknown or mixin-provided
+         * locals. The state itself is not modified.
+         */
+        LocalVariableNode[] getLocals() {
+            LocalVariableNode[] frame = this.frame.clone();
 
-            if (insn == node) {
-                break;
+            // Null out any "unknown" or mixin-provided locals
+            for (int l = 0; l < frame.length; l++) {
+                if (frame[l] instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
+                    // preserve zombies where the frame node which culled them was immediately prior to
+                    // the matched instruction, or *was itself* the matched instruction, the returned
+                    // frame will contain the original node (the zombie ancestor)
+                    frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
+                }
+                
+                if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
+                    frame[l] = null;
+                }
             }
-        }
 
-        // Null out any "unknown" locals
-        for (int l = 0; l < frame.length; l++) {
-            if (frame[l] != null && frame[l].desc == null) {
-                frame[l] = null;
+
+            return frame;
+        }
+        
+    }
+    
+    /**
+     * A generated local variable table and the instruction list it was
+     * generated for. The labels in the table are inserted into the list when
+     * the table is generated, so the table is only valid for that list.
+     */
+    static final class GeneratedLocals {
+        
+        private final InsnList insns;
+        
+        final List<LocalVariableNode> localVariables;
+        
+        GeneratedLocals(MethodNode method, List<LocalVariableNode> localVariables) {
+            this.insns = method.instructions;
+            this.localVariables = Collections.<LocalVariableNode>unmodifiableList(localVariables);
+        }
+        
+        boolean isValid(MethodNode method) {
+            return method.instructions == this.insns;
+        }
+        
+    }
+    
+    /**
+     * Cached locals states for a single method. Owners which modify the method
+     * are expected to discard the cache using {@link Locals#invalidate}, the
+     * cache itself only performs a cheap check for the instructions, local
+     * variable table or max locals having changed size.
+     */
+    static final class LocalsCache {
+        
+        /**
+         * Number of instructions between cached states
+         */
+        static final int CHECKPOINT_INTERVAL = 32;
+        
+        private final Settings settings;
+        
+        private final InsnList insnList;
+        
+        private final AbstractInsnNode[] insns;
+        
+        private final List<LocalVariableNode> localVariables;
+        
+        private final int localVariableCount;
+        
+        private final int maxLocals;
+        
+        /**
+         * States after visiting the instruction at each key, the initial state
+         * is stored at -1
+         */
+        private final TreeMap<Integer, LocalsState> checkpoints = new TreeMap<Integer, LocalsState>();
+        
+        LocalsCache(LocalsState initialState, MethodNode method, Settings settings) {
+            this.settings = settings;
+            this.insnList = method.instructions;
+            this.insns = method.instructions.toArray();
+            this.localVariables = method.localVariables;
+            this.localVariableCount = method.localVariables != null ? method.localVariables.size() : 0;
+            this.maxLocals = method.maxLocals;
+            this.checkpoints.put(-1, initialState);
+        }
+        
+        boolean isValid(MethodNode method, Settings settings) {
+            return settings == this.settings
+                    && method.maxLocals == this.maxLocals
+                    && method.instructions == this.insnList
+                    && method.instructions.size() == this.insns.length
+                    && method.localVariables == this.localVariables
+                    && (method.localVariables != null ? method.localVariables.size() : 0) == this.localVariableCount;
+        }
+        
+        synchronized LocalVariableNode[] getLocalsAt(ClassNode classNode, MethodNode method, int index) {
+            Map.Entry<Integer, LocalsState> checkpoint = this.checkpoints.floorEntry(index);
+            LocalsState state = new LocalsState(checkpoint.getValue());
+            for (int pos = checkpoint.getKey() + 1; pos <= index; pos++) {
+                state.visit(classNode, method, this.insns[pos]);
+                if ((pos + 1) % LocalsCache.CHECKPOINT_INTERVAL == 0 && !this.checkpoints.containsKey(pos)) {
+                    this.checkpoints.put(pos, new LocalsState(state));
+                }
             }
+            return state.getLocals();
         }
-
-        return frame;
+        
     }
-
+    
     /**
      * Walks the supplied <tt>frame</tt> up to the specified <tt>knownFrameSize
      * </tt> and resurrects any zombies that meet the required criteria
@@ -738,6 +947,93 @@ public final class Locals {
         }
     }
 
+    /**
+     * Expand the stack map frames in the supplied method in place, as if the
+     * method had been read with {@link org.objectweb.asm.ClassReader#EXPAND_FRAMES}.
+     * Methods which have no frames or whose frames are already expanded are
+     * left untouched, so this method can be called freely before inspecting
+     * frames.
+     * 
+     * @param classNode ClassNode containing the method
+     * @param method MethodNode to expand frames in
+     */
+    public static void expandFrames(ClassNode classNode, MethodNode method) {
+        FrameNode firstFrame = null;
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext() && firstFrame == null;) {
+            AbstractInsnNode insn = iter.next();
+            if (insn instanceof FrameNode) {
+                firstFrame = (FrameNode)insn;
+            }
+        }
+        if (firstFrame == null || firstFrame.type == Opcodes.F_NEW) {
+            return;
+        }
+        
+        // Implicit frame at the start of the method
+        List<Object> locals = new ArrayList<Object>();
+        if ((method.access & Opcodes.ACC_STATIC) == 0) {
+            locals.add(Constants.CTOR.equals(method.name) ? Opcodes.UNINITIALIZED_THIS : classNode.name);
+        }
+        for (Type argType : Type.getArgumentTypes(method.desc)) {
+            locals.add(Locals.getFrameType(argType));
+        }
+        
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (!(insn instanceof FrameNode)) {
+                continue;
+            }
+            
+            FrameNode frameNode = (FrameNode)insn;
+            List<Object> stack = new ArrayList<Object>();
+            switch (frameNode.type) {
+                case Opcodes.F_FULL:
+                case Opcodes.F_NEW:
+                    locals = new ArrayList<Object>(frameNode.local);
+                    stack.addAll(frameNode.stack);
+                    break;
+                case Opcodes.F_APPEND:
+                    locals.addAll(frameNode.local);
+                    break;
+                case Opcodes.F_CHOP:
+                    for (int i = 0; i < frameNode.local.size() && !locals.isEmpty(); i++) {
+                        locals.remove(locals.size() - 1);
+                    }
+                    break;
+                case Opcodes.F_SAME1:
+                    stack.addAll(frameNode.stack);
+                    break;
+                default:
+                    break;
+            }
+            
+            frameNode.type = Opcodes.F_NEW;
+            frameNode.local = new ArrayList<Object>(locals);
+            frameNode.stack = stack;
+        }
+    }
+    
+    private static Object getFrameType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                return Opcodes.INTEGER;
+            case Type.FLOAT:
+                return Opcodes.FLOAT;
+            case Type.LONG:
+                return Opcodes.LONG;
+            case Type.DOUBLE:
+                return Opcodes.DOUBLE;
+            case Type.ARRAY:
+                return type.getDescriptor();
+            default:
+                return type.getInternalName();
+        }
+    }
+
    /**
      * Attempts to locate the appropriate entry in the local variable table for
      * the specified local variable index at the location specified by node.
@@ -821,15 +1117,54 @@ public final class Locals {
      * @return generated local variable table 
      */
     public static List<LocalVariableNode> getGeneratedLocalVariableTable(ClassNode classNode, MethodNode method) {
-        String methodId = String.format("%s.%s%s", classNode.name, method.name, method.desc);
-        List<LocalVariableNode> localVars = Locals.calculatedLocalVariables.get(methodId);
-        if (localVars != null) {
-            return localVars;
+        synchronized (Locals.calculatedLocalVariables) {
+            GeneratedLocals generated = Locals.calculatedLocalVariables.get(method);
+            if (generated != null && generated.isValid(method)) {
+                Locals.count("locals.lvt.hit");
+                return generated.localVariables;
+            }
+    
+            // Generation inserts labels into the method, so it is done while
+            // holding the lock to prevent two threads from doing so at once
+            Locals.count("locals.lvt.miss");
+            generated = new GeneratedLocals(method, Locals.generateLocalVariableTable(classNode, method));
+            Locals.calculatedLocalVariables.put(method, generated);
+            return generated.localVariables;
+        }
+    }
+    
+    /**
+     * Clear all cached local variable tables and locals states. Entries are
+     * discarded automatically once their method is no longer reachable, this
+     * is only needed to release memory eagerly, for example at the end of a
+     * session.
+     */
+    public static void clearCaches() {
+        synchronized (Locals.calculatedLocalVariables) {
+            Locals.calculatedLocalVariables.clear();
+        }
+        synchronized (Locals.localsCache) {
+            Locals.localsCache.clear();
+        }
+    }
+    
+    /**
+     * Discard the cached locals states for the specified method. Must be
+     * called whenever the instructions or local variable table of a method
+     * which may have been queried with <tt>getLocalsAt</tt> are modified.
+     * 
+     * @param method Method which was modified
+     */
+    public static void invalidate(MethodNode method) {
+        synchronized (Locals.localsCache) {
+            Locals.localsCache.remove(method);
+        }
+    }
+    
+    private static void count(String section) {
+        if (Profiler.isActive()) {
+            Locals.profiler.get(section).tick();
         }
-
-        localVars = Locals.generateLocalVariableTable(classNode, method);
-        Locals.calculatedLocalVariables.put(methodId, localVars);
-        return Collections.<LocalVariableNode>unmodifiableList(localVars);
     }
 
     /**
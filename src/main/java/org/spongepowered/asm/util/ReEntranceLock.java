@@ -26,7 +26,9 @@ package org.spongepowered.asm.util;
 
 /**
  * Re-entrance semaphore used to share re-entrance data with the metadata
- * service
+ * service. Re-entrance depth is tracked per thread, since re-entrance can only
+ * occur on the thread which is already inside the transformer, and other
+ * threads may be transforming unrelated classes at the same time.
  */
 public class ReEntranceLock {
     
@@ -36,14 +38,19 @@ public class ReEntranceLock {
     private final int maxDepth;
     
     /**
-     * Re-entrance depth
+     * Re-entrance depth for each thread
      */
-    private int depth = 0;
+    private final ThreadLocal<Counter> depth = new ThreadLocal<Counter>() {
+        @Override
+        protected Counter initialValue() {
+            return new Counter();
+        }
+    };
     
     /**
      * Semaphore set when check exceeds a depth of 1
      */
-    private boolean semaphore = false;
+    private volatile boolean semaphore = false;
     
     public ReEntranceLock(int maxDepth) {
         this.maxDepth = maxDepth;
@@ -57,10 +64,10 @@ public class ReEntranceLock {
     }
     
     /**
-     * Get current depth
+     * Get current depth for the calling thread
      */
     public int getDepth() {
-        return this.depth;
+        return this.depth.get().value;
     }
     
     /**
@@ -70,7 +77,7 @@ public class ReEntranceLock {
      * @return fluent interface
      */
     public ReEntranceLock push() {
-        this.depth++;
+        this.depth.get().value++;
         this.checkAndSet();
         return this;
     }
@@ -81,11 +88,12 @@ public class ReEntranceLock {
      * @return fluent interface
      */
     public ReEntranceLock pop() {
-        if (this.depth == 0) {
+        Counter depth = this.depth.get();
+        if (depth.value == 0) {
             throw new IllegalStateException("ReEntranceLock pop() with zero depth");
         }
         
-        this.depth--;
+        depth.value--;
         return this;
     }
     
@@ -95,7 +103,7 @@ public class ReEntranceLock {
      * @return true if depth has exceeded max
      */
     public boolean check() {
-        return this.depth > this.maxDepth;
+        return this.depth.get().value > this.maxDepth;
     }
     
     /**
@@ -104,7 +112,10 @@ public class ReEntranceLock {
      * @return true if semaphore is set
      */
     public boolean checkAndSet() {
-        return this.semaphore |= this.check();
+        if (this.check()) {
+            this.semaphore = true;
+        }
+        return this.semaphore;
     }
     
     /**
@@ -0,0 +1,189 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util.asm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+/**
+ * Single data-flow analysis of a method which records, for each instruction,
+ * the frame before it executes and the instruction which consumes each value
+ * pushed onto the stack. Intended to be computed once and shared by all
+ * consumers which need to query the stack producers and consumers of the same
+ * method, instead of running a separate analysis for each query.
+ */
+public final class StackAnalysis {
+    
+    /**
+     * Frame which observes values being popped from the stack to link them to
+     * the instruction which consumes them
+     */
+    class ConsumerFrame extends Frame<SourceValue> {
+        
+        private AbstractInsnNode current;
+
+        ConsumerFrame(int numLocals, int maxStack) {
+            super(numLocals, maxStack);
+        }
+        
+        @Override
+        public void execute(AbstractInsnNode insn, Interpreter<SourceValue> interpreter) throws AnalyzerException {
+            this.current = insn;
+            super.execute(insn, interpreter);
+        }
+        
+        @Override
+        public SourceValue pop() throws IndexOutOfBoundsException {
+            SourceValue value = super.pop();
+            if (this.current != null) {
+                for (AbstractInsnNode producer : value.insns) {
+                    if (!StackAnalysis.this.consumers.containsKey(producer)) {
+                        StackAnalysis.this.consumers.put(producer, this.current);
+                    }
+                }
+            }
+            return value;
+        }
+        
+    }
+    
+    /**
+     * Analyser which uses {@link ConsumerFrame}s
+     */
+    class ConsumerAnalyzer extends Analyzer<SourceValue> {
+
+        ConsumerAnalyzer() {
+            super(new SourceInterpreter());
+        }
+        
+        @Override
+        protected Frame<SourceValue> newFrame(int numLocals, int numStack) {
+            return new ConsumerFrame(numLocals, numStack);
+        }
+        
+    }
+    
+    private final InsnList insns;
+    
+    private final int size;
+    
+    /**
+     * First instruction found to consume the value pushed by each producer
+     */
+    private final Map<AbstractInsnNode, AbstractInsnNode> consumers = new HashMap<AbstractInsnNode, AbstractInsnNode>();
+
+    private final Frame<SourceValue>[] frames;
+    
+    private final AnalyzerException error;
+    
+    /**
+     * Analyse the specified method
+     * 
+     * @param owner Internal name of the class which owns the method
+     * @param method Method to analyse
+     */
+    public StackAnalysis(String owner, MethodNode method) {
+        this.insns = method.instructions;
+        this.size = method.instructions.size();
+        
+        ConsumerAnalyzer analyzer = new ConsumerAnalyzer();
+        AnalyzerException error = null;
+        try {
+            analyzer.analyze(owner, method);
+        } catch (AnalyzerException ex) {
+            error = ex;
+        }
+        Frame<SourceValue>[] frames = analyzer.getFrames();
+        this.frames = frames != null ? frames : StackAnalysis.noFrames();
+        this.error = error;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Frame<SourceValue>[] noFrames() {
+        return (Frame<SourceValue>[])new Frame<?>[0];
+    }
+    
+    /**
+     * Get whether this analysis still describes the specified method. This is
+     * a cheap check which only detects instructions being added or removed, it
+     * is expected that owners of the analysis discard it when they modify the
+     * method.
+     * 
+     * @param method Method to check
+     * @return true if the analysis is still valid
+     */
+    public boolean isValid(MethodNode method) {
+        return method.instructions == this.insns && this.insns.size() == this.size;
+    }
+    
+    /**
+     * Get the exception raised by the analyser, if analysis did not complete.
+     * Results recorded before the failure are still available.
+     * 
+     * @return analyser exception or null if analysis completed normally
+     */
+    public AnalyzerException getError() {
+        return this.error;
+    }
+    
+    /**
+     * Find the instruction which pops the value pushed by the specified
+     * instruction
+     * 
+     * @param producer Instruction which pushes a value
+     * @return consuming instruction or null if the value is never consumed or
+     *      the producer was not analysed
+     */
+    public AbstractInsnNode getConsumer(AbstractInsnNode producer) {
+        return this.consumers.get(producer);
+    }
+    
+    /**
+     * Get the frame before the specified instruction executes, the stack
+     * values in the frame record the instructions which produced them
+     * 
+     * @param insn Instruction to get the frame for
+     * @return frame or null if the instruction is unreachable or was not
+     *      analysed
+     */
+    public Frame<SourceValue> getFrame(AbstractInsnNode insn) {
+        int index = this.insns.indexOf(insn);
+        if (index < 0 || index >= this.frames.length || this.insns.get(index) != insn) {
+            return null;
+        }
+        return this.frames[index];
+    }
+    
+}
@@ -0,0 +1,316 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util.perf;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.spongepowered.asm.mixin.extensibility.IMixinConfig;
+import org.spongepowered.asm.mixin.extensibility.IMixinCostAudit;
+import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
+import org.spongepowered.asm.util.PrettyPrinter;
+
+/**
+ * Records the cost of activities performed on behalf of individual mixins. Costs
+ * are only recorded while the {@link Profiler} is active, when it is not the
+ * calls to {@link #begin} and {@link #end} do nothing.
+ * 
+ * <p>Usage:</p>
+ * 
+ * <blockquote><pre>Sample sample = CostAudit.begin();
+ * try {
+ *     // do work
+ * } finally {
+ *     CostAudit.end(sample, mixin, "inject.apply", element);
+ * }</pre></blockquote>
+ */
+public final class CostAudit implements IMixinCostAudit {
+    
+    /**
+     * Start of a measured activity
+     */
+    public static final class Sample {
+        
+        final long time;
+        
+        final long allocatedBytes;
+        
+        Sample(long time, long allocatedBytes) {
+            this.time = time;
+            this.allocatedBytes = allocatedBytes;
+        }
+        
+    }
+    
+    /**
+     * Cost key
+     */
+    static final class Key {
+        
+        final String config, mixin, activity, element;
+        
+        Key(String config, String mixin, String activity, String element) {
+            this.config = config;
+            this.mixin = mixin;
+            this.activity = activity;
+            this.element = element;
+        }
+        
+        @Override
+        public int hashCode() {
+            return ((this.config.hashCode() * 31 + this.mixin.hashCode()) * 31 + this.activity.hashCode()) * 31 + this.element.hashCode();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return this.config.equals(other.config) && this.mixin.equals(other.mixin) && this.activity.equals(other.activity)
+                    && this.element.equals(other.element);
+        }
+        
+    }
+    
+    /**
+     * Accumulated cost
+     */
+    static final class Cost implements ICost {
+        
+        private final Key key;
+        
+        private final LongAdder time = new LongAdder(), allocatedBytes = new LongAdder(), count = new LongAdder();
+        
+        Cost(Key key) {
+            this.key = key;
+        }
+        
+        void add(long time, long allocatedBytes) {
+            this.time.add(time);
+            this.allocatedBytes.add(allocatedBytes);
+            this.count.increment();
+        }
+
+        @Override
+        public String getConfig() {
+            return this.key.config;
+        }
+
+        @Override
+        public String getMixin() {
+            return this.key.mixin;
+        }
+
+        @Override
+        public String getActivity() {
+            return this.key.activity;
+        }
+
+        @Override
+        public String getElement() {
+            return this.key.element;
+        }
+
+        @Override
+        public long getTime() {
+            return this.time.sum();
+        }
+
+        @Override
+        public long getAllocatedBytes() {
+            return CostAudit.threads != null ? this.allocatedBytes.sum() : -1L;
+        }
+
+        @Override
+        public long getCount() {
+            return this.count.sum();
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s:%s %s %s", this.key.config, this.key.mixin, this.key.activity, this.key.element);
+        }
+        
+    }
+    
+    private static final CostAudit instance = new CostAudit();
+    
+    /**
+     * Thread bean used to read allocation counters, null if allocation
+     * counters are not supported by the JVM
+     */
+    static final com.sun.management.ThreadMXBean threads = CostAudit.getThreadBean();
+    
+    private final ConcurrentMap<Key, Cost> costs = new ConcurrentHashMap<Key, Cost>();
+    
+    private CostAudit() {
+    }
+    
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads;
+                }
+            }
+        } catch (Throwable th) {
+            // Management API not available
+        }
+        return null;
+    }
+    
+    /**
+     * Get the cost audit
+     */
+    public static CostAudit getInstance() {
+        return CostAudit.instance;
+    }
+    
+    /**
+     * Begin measuring an activity
+     * 
+     * @return sample to pass to {@link #end}, or null if costs are not being
+     *      recorded
+     */
+    public static Sample begin() {
+        if (!Profiler.isActive()) {
+            return null;
+        }
+        return new Sample(System.nanoTime(), CostAudit.getAllocatedBytes());
+    }
+    
+    /**
+     * Finish measuring an activity and attribute its cost to the specified
+     * mixin
+     * 
+     * @param sample Sample returned by {@link #begin}, may be null
+     * @param mixin Mixin to attribute the cost to
+     * @param activity Activity which was performed
+     * @param element Element of the mixin the activity was performed for,
+     *      or null if the activity applies to the whole mixin
+     */
+    public static void end(Sample sample, IMixinInfo mixin, String activity, String element) {
+        if (sample == null || mixin == null) {
+            return;
+        }
+        long time = System.nanoTime() - sample.time;
+        long allocatedBytes = CostAudit.getAllocatedBytes() - sample.allocatedBytes;
+        IMixinConfig config = mixin.getConfig();
+        Key key = new Key(config != null ? config.getName() : "", mixin.getClassName(), activity, element != null ? element : "");
+        Cost cost = CostAudit.instance.costs.get(key);
+        if (cost == null) {
+            Cost created = new Cost(key);
+            cost = CostAudit.instance.costs.putIfAbsent(key, created);
+            if (cost == null) {
+                cost = created;
+            }
+        }
+        cost.add(time, allocatedBytes);
+    }
+    
+    private static long getAllocatedBytes() {
+        return CostAudit.threads != null ? CostAudit.threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+    }
+    
+    /**
+     * Print the most expensive recorded costs to the console, ordered by time
+     * 
+     * @param limit Maximum number of costs to print
+     */
+    public void printSummary(int limit) {
+        List<ICost> costs = new ArrayList<ICost>(this.costs.values());
+        if (costs.isEmpty()) {
+            return;
+        }
+        
+        Collections.sort(costs, new Comparator<ICost>() {
+            @Override
+            public int compare(ICost a, ICost b) {
+                return Long.compare(b.getTime(), a.getTime());
+            }
+        });
+        
+        PrettyPrinter printer = new PrettyPrinter();
+        printer.add("Most expensive mixin activities").hr();
+        printer.table("Mixin", "Activity", "Element", "Time (ms)", "Allocated (KB)", "Count").th().hr();
+        for (ICost cost : costs.subList(0, Math.min(limit, costs.size()))) {
+            long allocated = cost.getAllocatedBytes();
+            printer.tr(cost.getMixin(), cost.getActivity(), cost.getElement(), String.format(Locale.ROOT, "%.3f", cost.getTime() * 1.0E-6D),
+                    allocated < 0L ? "-" : allocated / 1024L, cost.getCount());
+        }
+        printer.add().print();
+    }
+    
+    /**
+     * Discard all recorded costs
+     */
+    public void reset() {
+        this.costs.clear();
+    }
+
+    @Override
+    public boolean isActive() {
+        return Profiler.isActive();
+    }
+
+    @Override
+    public Collection<ICost> getCosts() {
+        return Collections.<ICost>unmodifiableList(new ArrayList<ICost>(this.costs.values()));
+    }
+
+    @Override
+    public Collection<ICost> getCosts(IMixinInfo mixin) {
+        List<ICost> costs = new ArrayList<ICost>();
+        for (Cost cost : this.costs.values()) {
+            if (cost.getMixin().equals(mixin.getClassName())) {
+                costs.add(cost);
+            }
+        }
+        return Collections.<ICost>unmodifiableList(costs);
+    }
+
+    @Override
+    public Collection<ICost> getCosts(IMixinConfig config) {
+        List<ICost> costs = new ArrayList<ICost>();
+        for (Cost cost : this.costs.values()) {
+            if (cost.getConfig().equals(config.getName())) {
+                costs.add(cost);
+            }
+        }
+        return Collections.<ICost>unmodifiableList(costs);
+    }
+    
+}
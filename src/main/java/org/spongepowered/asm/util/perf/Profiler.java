@@ -28,6 +28,11 @@ import java.lang.reflect.Method;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.PrettyPrinter;
@@ -35,10 +40,12 @@ import org.spongepowered.asm.util.PrettyPrinter.Alignment;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableList.Builder;
 
 /**
- * Performance profiler for Mixin.
+ * Performance profiler for Mixin. Each thread has its own section stack, so
+ * sections begun on different threads (for example during concurrent class
+ * loading) do not interfere with each other, and timings from all threads are
+ * aggregated into the shared sections without locking.
  */
 public final class Profiler {
     
@@ -94,6 +101,13 @@ public final class Profiler {
          */
         private String info;
         
+        /**
+         * Sections begun while this section is at the head of the stack, keyed
+         * by name, so that nested sections can be resolved without building
+         * their path each time
+         */
+        final ConcurrentMap<String, Child> children = new ConcurrentHashMap<String, Child>();
+        
         Section(String name) {
             this.name = name;
             this.info = name;
@@ -190,11 +204,12 @@ public final class Profiler {
         }
         
         /**
-         * Stop timing of this section
+         * Record a completed time period for this section
          * 
+         * @param nanos elapsed time in nanoseconds
          * @return fluent
          */
-        protected Section stop() {
+        protected Section record(long nanos) {
             return this;
         }
         
@@ -217,6 +232,17 @@ public final class Profiler {
             this.end();
             return this;
         }
+        
+        /**
+         * Increment the period count of this section without recording any
+         * time and without pushing the section onto the profiler stack. Used
+         * for sections which act as simple event counters.
+         * 
+         * @return fluent
+         */
+        public Section tick() {
+            return this;
+        }
 
         /**
          * Mark off a profiling slice in this section. Each timing slice is used
@@ -335,7 +361,7 @@ public final class Profiler {
          */
         @Override
         public Section end() {
-            if (!this.invalidated) {
+            if (!this.invalidated && Profiler.active) {
                 Profiler.this.end(this);
             }
             return this;
@@ -370,22 +396,18 @@ public final class Profiler {
         /**
          * Historical time slicess (times recorded by calls to {@link #mark}) 
          */
-        private long[] times = new long[0];
+        private volatile long[] times = new long[0];
         
         /**
-         * Start time. Zero when not recording a time slice
+         * Current accumulated time and period count, updated concurrently by
+         * all threads which record this section
          */
-        private long start = 0L;
+        private final LongAdder time = new LongAdder(), count = new LongAdder();
         
         /**
-         * Current accumulated time and time in all previous slices
+         * Accumulated time and period count in all previous slices
          */
-        private long time, markedTime;
-        
-        /**
-         * Current period count and period count in all previous slices 
-         */
-        private int count, markedCount;
+        private volatile long markedTime, markedCount;
         
         LiveSection(String name, int cursor) {
             super(name);
@@ -398,99 +420,97 @@ public final class Profiler {
         }
 
         @Override
-        Section start() {
-            this.start = System.currentTimeMillis();
+        protected Section record(long nanos) {
+            this.time.add(nanos);
+            this.count.increment();
             return this;
         }
-
+        
         @Override
-        protected Section stop() {
-            if (this.start > 0L) {
-                this.time += System.currentTimeMillis() - this.start;
-            }
-            this.start = 0L;
-            this.count++;
-            return this;
+        public Section end() {
+            long start = !this.invalidated ? Profiler.this.end(this) : Profiler.NOT_STARTED;
+            return this.record(start != Profiler.NOT_STARTED ? System.nanoTime() - start : 0L);
         }
         
         @Override
-        public Section end() {
-            this.stop();
-            if (!this.invalidated) {
-                Profiler.this.end(this);
-            }
+        public Section tick() {
+            this.count.increment();
             return this;
         }
         
         @Override
         void mark() {
-            if (this.cursor >= this.times.length) {
-                this.times = Arrays.copyOf(this.times, this.cursor + 4);
+            long[] times = this.times;
+            if (this.cursor >= times.length) {
+                times = Arrays.copyOf(times, this.cursor + 4);
             }
-            this.times[this.cursor] = this.time;
-            this.markedTime += this.time;
-            this.markedCount += this.count;
-            this.time = 0;
-            this.count = 0;
+            long time = this.time.sumThenReset();
+            times[this.cursor] = Profiler.toMillis(time);
+            this.times = times;
+            this.markedTime += time;
+            this.markedCount += this.count.sumThenReset();
             this.cursor++;
         }
         
         @Override
         public long getTime() {
-            return this.time;
+            return Profiler.toMillis(this.time.sum());
         }
         
         @Override
         public long getTotalTime() {
-            return this.time + this.markedTime;
+            return Profiler.toMillis(this.time.sum() + this.markedTime);
         }
         
         @Override
         public double getSeconds() {
-            return this.time * 0.001D;
+            return this.time.sum() * 1.0E-9D;
         }
         
         @Override
         public double getTotalSeconds() {
-            return (this.time + this.markedTime) * 0.001D;
+            return (this.time.sum() + this.markedTime) * 1.0E-9D;
         }
         
         @Override
         public long[] getTimes() {
-            long[] times = new long[this.cursor + 1];
-            System.arraycopy(this.times, 0, times, 0, Math.min(this.times.length, this.cursor));
-            times[this.cursor] = this.time;
+            int cursor = this.cursor;
+            long[] times = new long[cursor + 1];
+            System.arraycopy(this.times, 0, times, 0, Math.min(this.times.length, cursor));
+            times[cursor] = this.getTime();
             return times;
         }
         
         @Override
         public int getCount() {
-            return this.count;
+            return this.count.intValue();
         }
         
         @Override
         public int getTotalCount() {
-            return this.count + this.markedCount;
+            return (int)(this.count.sum() + this.markedCount);
         }
         
         @Override
         public double getAverageTime() {
-            return this.count > 0 ? (double)(this.time) / this.count : 0.0D;
+            long count = this.count.sum();
+            return count > 0 ? this.time.sum() * 1.0E-6D / count : 0.0D;
         }
         
         @Override
         public double getTotalAverageTime() {
-            return this.count > 0 ? (double)(this.time + this.markedTime) / (this.count + this.markedCount) : 0.0D;
+            long count = this.count.sum();
+            return count > 0 ? (this.time.sum() + this.markedTime) * 1.0E-6D / (count + this.markedCount) : 0.0D;
         }
         
         @Override
         protected long getMarkedTime() {
-            return this.markedTime;
+            return Profiler.toMillis(this.markedTime);
         }
         
         @Override
         protected int getMarkedCount() {
-            return this.markedCount;
+            return (int)this.markedCount;
         }
 
     }
@@ -541,21 +561,15 @@ public final class Profiler {
         }
         
         @Override
-        Section start() {
-            this.root.start();
-            return super.start();
+        protected Section record(long nanos) {
+            this.root.record(nanos);
+            return super.record(nanos);
         }
         
         @Override
-        public Section end() {
-            this.root.stop();
-            return super.end();
-        }
-        
-        @Override
-        public Section next(String name) {
-            super.stop();
-            return this.root.next(name);
+        public Section tick() {
+            this.root.tick();
+            return super.tick();
         }
         
     }
@@ -683,15 +697,110 @@ public final class Profiler {
         
     }
     
+    /**
+     * Cached resolution of a section begun under a parent section
+     */
+    static final class Child {
+        
+        final int flags;
+        
+        final boolean parentRoot;
+        
+        final boolean root;
+        
+        final Section section;
+        
+        Child(int flags, boolean parentRoot, boolean root, Section section) {
+            this.flags = flags;
+            this.parentRoot = parentRoot;
+            this.root = root;
+            this.section = section;
+        }
+        
+        boolean isValid(int flags, Section parent) {
+            return this.flags == flags && this.parentRoot == parent.isRoot() && !this.section.invalidated;
+        }
+        
+    }
+    
+    /**
+     * Section stack for a single thread, stores the start time of each section
+     * alongside it so that sections shared between threads can be timed
+     * independently
+     */
+    static final class SectionStack {
+        
+        private Section[] sections = new Section[16];
+        
+        private long[] starts = new long[16];
+        
+        private int depth;
+        
+        /**
+         * Profiler generation this stack belongs to, the stack is discarded
+         * when the profiler is reset
+         */
+        int generation;
+        
+        SectionStack(int generation) {
+            this.generation = generation;
+        }
+        
+        Section peek() {
+            return this.depth > 0 ? this.sections[this.depth - 1] : null;
+        }
+        
+        void push(Section section, long start) {
+            if (this.depth == this.sections.length) {
+                this.sections = Arrays.copyOf(this.sections, this.depth * 2);
+                this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+            }
+            this.sections[this.depth] = section;
+            this.starts[this.depth++] = start;
+        }
+        
+        /**
+         * Pop the specified section and any sections above it
+         * 
+         * @param section section to pop
+         * @return start time of the section, or {@link Profiler#NOT_STARTED}
+         *      if the section is not in the stack
+         */
+        long pop(Section section) {
+            for (int pos = this.depth - 1; pos >= 0; pos--) {
+                if (this.sections[pos] == section) {
+                    Arrays.fill(this.sections, pos, this.depth, null);
+                    this.depth = pos;
+                    return this.starts[pos];
+                }
+            }
+            return Profiler.NOT_STARTED;
+        }
+        
+        void clear(int generation) {
+            Arrays.fill(this.sections, 0, this.depth, null);
+            this.depth = 0;
+            this.generation = generation;
+        }
+        
+    }
+    
+    /**
+     * Start time returned for a section which was not started. Timestamps
+     * from {@link System#nanoTime} have an arbitrary origin and can be zero
+     * or negative, so no valid timestamp range can be used instead.
+     */
+    static final long NOT_STARTED = Long.MIN_VALUE;
+    
     /**
      * All Profiler instances
      */
-    private static final Map<String, Profiler> profilers = new HashMap<String, Profiler>();
+    private static final Map<String, Profiler> profilers = new ConcurrentHashMap<String, Profiler>();
 
     /**
      * True when profilers are active
      */
-    private static boolean active;
+    private static volatile boolean active;
     
     /**
      * Profiler id 
@@ -699,19 +808,35 @@ public final class Profiler {
     private final String id;
     
     /**
-     * All profiler sections
+     * All profiler sections, sorted by name
      */
-    private final Map<String, Section> sections = new TreeMap<String, Profiler.Section>();
+    private final ConcurrentMap<String, Section> sections = new ConcurrentSkipListMap<String, Profiler.Section>();
     
     /**
      * Profiler phases, recorded by calling {@link #mark}
      */
-    private final List<String> phases = new ArrayList<String>();
+    private final List<String> phases = new CopyOnWriteArrayList<String>();
     
     /**
-     * Profiler section stack
+     * Profiler section stacks for each thread
      */
-    private final Deque<Section> stack = new LinkedList<Section>();
+    private final ThreadLocal<SectionStack> stacks = new ThreadLocal<SectionStack>() {
+        @Override
+        protected SectionStack initialValue() {
+            return new SectionStack(Profiler.this.generation);
+        }
+    };
+    
+    /**
+     * Incremented when the profiler is reset, so that each thread discards its
+     * stack the next time it is used
+     */
+    private volatile int generation;
+    
+    /**
+     * Section returned by {@link #begin} when the profiler is not active
+     */
+    private final Section disabled = new DisabledSection("disabled");
     
     public Profiler(String id) {
         this.id = id;
@@ -732,6 +857,18 @@ public final class Profiler {
         Profiler.active = active;
     }
     
+    /**
+     * Get the active state of the profiler. Callers can use this to skip
+     * gathering data which is only used for profiling.
+     */
+    public static boolean isActive() {
+        return Profiler.active;
+    }
+    
+    static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+    
     /**
      * Reset all profiler state
      */
@@ -743,7 +880,7 @@ public final class Profiler {
         this.sections.clear();
         this.phases.clear();
         this.phases.add("Initial");
-        this.stack.clear();
+        this.generation++;
     }
 
     /**
@@ -752,27 +889,41 @@ public final class Profiler {
      * @param name section name
      * @return profiler section
      */
-    public synchronized Section get(String name) {
+    public Section get(String name) {
         Section section = this.sections.get(name);
         if (section == null) {
-            section = Profiler.active ? new LiveSection(name, this.phases.size() - 1) : new DisabledSection(name);
-            this.sections.put(name, section);
+            Section created = Profiler.active ? new LiveSection(name, this.phases.size() - 1) : new DisabledSection(name);
+            section = this.sections.putIfAbsent(name, created);
+            if (section == null) {
+                section = created;
+            }
         }
         return section;
     }
     
-    private synchronized Section getSubSection(String name, String baseName, Section root) {
+    private Section getSubSection(String name, String baseName, Section root) {
         Section section = this.sections.get(name);
         if (section == null) {
-            section = new SubSection(name, this.phases.size() - 1, baseName, root);
-            this.sections.put(name, section);
+            Section created = new SubSection(name, this.phases.size() - 1, baseName, root);
+            section = this.sections.putIfAbsent(name, created);
+            if (section == null) {
+                section = created;
+            }
         }
-        
         return section;
     }
     
+    private SectionStack getStack() {
+        SectionStack stack = this.stacks.get();
+        int generation = this.generation;
+        if (stack.generation != generation) {
+            stack.clear(generation);
+        }
+        return stack;
+    }
+    
     boolean isHead(Section section) {
-        return this.stack.peek() == section;
+        return this.getStack().peek() == section;
     }
     
     /**
@@ -793,6 +944,9 @@ public final class Profiler {
      * @return new profiler section
      */
     public Section begin(int flags, String... path) {
+        if (!Profiler.active) {
+            return this.disabled;
+        }
         return this.begin(flags, Joiner.on('.').join(path));
     }
 
@@ -807,18 +961,41 @@ public final class Profiler {
     }
     
     /**
-     * Begin a new profiler section using the specified name and flags
+     * Begin a new profiler section using the specified name and flags. When
+     * the profiler is not active this returns a shared section which does
+     * nothing, and sections which have already been resolved under the same
+     * parent are reused without allocating.
      * 
      * @param flags section flags
      * @param name section name
      * @return new profiler section
      */
-    public synchronized Section begin(int flags, String name) {
+    public Section begin(int flags, String name) {
+        if (!Profiler.active) {
+            return this.disabled;
+        }
+        
+        SectionStack stack = this.getStack();
+        Section head = stack.peek();
+        Child child = head != null ? head.children.get(name) : null;
+        if (child == null || !child.isValid(flags, head)) {
+            child = this.resolve(head, flags, name);
+            if (head != null) {
+                head.children.put(name, child);
+            }
+        }
+        
+        Section section = child.section;
+        section.setFine((flags & Profiler.FINE) != 0).setRoot(child.root);
+        stack.push(section, System.nanoTime());
+        
+        return section.start();
+    }
+    
+    private Child resolve(Section head, int flags, String name) {
         boolean root = (flags & Profiler.ROOT) != 0;
-        boolean fine = (flags & Profiler.FINE) != 0;
         
         String path = name;
-        Section head = this.stack.peek();
         if (head != null) {
             path = head.getName() + (root ? Section.SEPARATOR_ROOT : Section.SEPARATOR_CHILD) + path;
             if (head.isRoot() && !root) {
@@ -829,37 +1006,32 @@ public final class Profiler {
         }
         
         Section section = this.get(root ? name : path);
-        if (root && head != null && Profiler.active) {
+        if (root && head != null) {
             section = this.getSubSection(path, head.getName(), section);
         }
         
-        section.setFine(fine).setRoot(root);
-        this.stack.push(section);
-        
-        return section.start();
+        return new Child(flags, head != null && head.isRoot(), root, section);
     }
     
     /**
      * Callback from section when {@link Section#end} is called, pops the
-     * section from the profiler stack
+     * section from the current thread's profiler stack
      * 
      * @param section section ending
+     * @return time the section was started in nanoseconds, or {@link
+     *      #NOT_STARTED} if the section was not in the stack
      */
-    synchronized void end(Section section) {
-        try {
-            for (Section head = this.stack.pop(), next = head; next != section; next = this.stack.pop()) {
-                if (next == null && Profiler.active) {
-                    if (head == null) {
-                        throw new IllegalStateException("Attempted to pop " + section + " but the stack is empty");
-                    }
-                    throw new IllegalStateException("Attempted to pop " + section + " which was not in the stack, head was " + head);
-                }
-            }
-        } catch (NoSuchElementException ex) {
-            if (Profiler.active) {
+    long end(Section section) {
+        SectionStack stack = this.getStack();
+        Section head = stack.peek();
+        long start = stack.pop(section);
+        if (start == Profiler.NOT_STARTED && Profiler.active && section instanceof LiveSection) {
+            if (head == null) {
                 throw new IllegalStateException("Attempted to pop " + section + " but the stack is empty");
             }
+            throw new IllegalStateException("Attempted to pop " + section + " which was not in the stack, head was " + head);
         }
+        return start;
     }
     
     /**
@@ -891,9 +1063,16 @@ public final class Profiler {
     /**
      * Get all recorded profiler sections
      */
-    public synchronized Collection<Section> getSections() {
+    public Collection<Section> getSections() {
         return Collections.<Section>unmodifiableCollection(this.sections.values());
     }
+    
+    /**
+     * Get the names of the phases recorded by this profiler, in order
+     */
+    public List<String> getPhases() {
+        return Collections.<String>unmodifiableList(this.phases);
+    }
 
     /**
      * Get the profiler state with all sections in a {@link PrettyPrinter}.
@@ -1012,30 +1191,29 @@ public final class Profiler {
         Map<String, Section> allSections;
 
         // Collect sections from all profilers into ResultSections
-        synchronized (Profiler.profilers) {
-            id = Joiner.on(',').join(Profiler.profilers.values());
-            allPhases = new LinkedHashSet<String>();
-            allSections = new TreeMap<String, Section>() {
+        Collection<Profiler> profilers = Profiler.getProfilers();
+        id = Joiner.on(',').join(profilers);
+        allPhases = new LinkedHashSet<String>();
+        allSections = new TreeMap<String, Section>() {
 
-                private static final long serialVersionUID = 1L;
+            private static final long serialVersionUID = 1L;
 
-                @Override
-                public Section get(Object name) {
-                    Section section = super.get(name);
-                    if (section == null) {
-                        this.put(name.toString(), section = new ResultSection(name.toString()));
-                    }
-                    return section;
-                }
-            };
-            for (Profiler profiler : Profiler.profilers.values()) {
-                for (String phase : profiler.phases) {
-                    allPhases.add(phase);
+            @Override
+            public Section get(Object name) {
+                Section section = super.get(name);
+                if (section == null) {
+                    this.put(name.toString(), section = new ResultSection(name.toString()));
                 }
+                return section;
+            }
+        };
+        for (Profiler profiler : profilers) {
+            for (String phase : profiler.phases) {
+                allPhases.add(phase);
+            }
 
-                for (Entry<String, Section> section : profiler.sections.entrySet()) {
-                    ((ResultSection)allSections.get(section.getKey())).add(section.getValue());
-                }
+            for (Entry<String, Section> section : profiler.sections.entrySet()) {
+                ((ResultSection)allSections.get(section.getKey())).add(section.getValue());
             }
         }
         
@@ -1149,13 +1327,15 @@ public final class Profiler {
      * @return profiler
      */
     public static Profiler getProfiler(String id) {
-        synchronized (Profiler.profilers) {
-            Profiler profiler = Profiler.profilers.get(id);
+        Profiler profiler = Profiler.profilers.get(id);
+        if (profiler == null) {
+            Profiler created = new Profiler(id);
+            profiler = Profiler.profilers.putIfAbsent(id, created);
             if (profiler == null) {
-                Profiler.profilers.put(id, profiler = new Profiler(id));
+                profiler = created;
             }
-            return profiler;
         }
+        return profiler;
     }
     
     /**
@@ -1164,11 +1344,7 @@ public final class Profiler {
      * @return immutable collection of profilers
      */
     public static Collection<Profiler> getProfilers() {
-        Builder<Profiler> list = ImmutableList.<Profiler>builder();
-        synchronized (Profiler.profilers) {
-            list.addAll(Profiler.profilers.values());
-        }
-        return list.build();
+        return ImmutableList.<Profiler>copyOf(Profiler.profilers.values());
     }
     
 }
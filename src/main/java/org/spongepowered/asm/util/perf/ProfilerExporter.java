@@ -0,0 +1,214 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.spongepowered.asm.mixin.extensibility.IMixinCostAudit.ICost;
+import org.spongepowered.asm.util.perf.Profiler.Section;
+
+import com.google.common.io.Files;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Writes profiler data in machine-readable formats. The JSON export contains
+ * every section of every profiler, including the FINE per-target and per-mixin
+ * sections which are omitted from the printed summary, along with the time
+ * attributed to each mixin config and the costs recorded by the {@link
+ * CostAudit}. The CSV export contains one row per section and is intended for
+ * importing into spreadsheets or graphing tools. All times in both exports are
+ * in milliseconds.
+ */
+public final class ProfilerExporter {
+    
+    /**
+     * Id of the profiler which records time spent applying each mixin, the
+     * info of each section is the name of the owning config
+     */
+    static final String MIXINS_PROFILER = "mixins";
+    
+    private static final String CSV_HEADER = "Profiler,Section,Info,Root,Fine,Delegate,Total (ms),Count,Average (ms)\n";
+    
+    private ProfilerExporter() {
+    }
+    
+    /**
+     * Export the data from all profilers to <tt>profiler.json</tt> and
+     * <tt>profiler.csv</tt> in the specified directory
+     * 
+     * @param dir Output directory
+     * @throws IOException if the files could not be written
+     */
+    public static void export(File dir) throws IOException {
+        Collection<Profiler> profilers = Profiler.getProfilers();
+        dir.mkdirs();
+        
+        Writer writer = new OutputStreamWriter(Files.asByteSink(new File(dir, "profiler.json")).openStream(), StandardCharsets.UTF_8);
+        try {
+            new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(ProfilerExporter.toJson(profilers), writer);
+        } finally {
+            writer.close();
+        }
+        
+        Files.asCharSink(new File(dir, "profiler.csv"), StandardCharsets.UTF_8).write(ProfilerExporter.toCsv(profilers));
+    }
+    
+    /**
+     * Get the data from the specified profilers as a JSON object
+     * 
+     * @param profilers Profilers to export
+     * @return JSON representation of the profiler data
+     */
+    public static JsonObject toJson(Collection<Profiler> profilers) {
+        JsonObject root = new JsonObject();
+        root.addProperty("generated", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+        
+        JsonArray profilerArray = new JsonArray();
+        Map<String, long[]> configs = new TreeMap<String, long[]>();
+        for (Profiler profiler : profilers) {
+            JsonObject profilerObject = new JsonObject();
+            profilerObject.addProperty("id", profiler.toString());
+            
+            JsonArray phases = new JsonArray();
+            for (String phase : profiler.getPhases()) {
+                phases.add(phase);
+            }
+            profilerObject.add("phases", phases);
+            
+            JsonArray sections = new JsonArray();
+            for (Section section : profiler.getSections()) {
+                sections.add(ProfilerExporter.toJson(section));
+                if (ProfilerExporter.MIXINS_PROFILER.equals(profiler.toString()) && section.getDelegate() == section) {
+                    long[] config = configs.get(section.getInfo());
+                    if (config == null) {
+                        configs.put(section.getInfo(), config = new long[3]);
+                    }
+                    config[0] += section.getTotalTime();
+                    config[1] += section.getTotalCount();
+                    config[2]++;
+                }
+            }
+            profilerObject.add("sections", sections);
+            profilerArray.add(profilerObject);
+        }
+        root.add("profilers", profilerArray);
+        
+        JsonArray configArray = new JsonArray();
+        for (Map.Entry<String, long[]> entry : configs.entrySet()) {
+            JsonObject config = new JsonObject();
+            config.addProperty("name", entry.getKey());
+            config.addProperty("totalTime", entry.getValue()[0]);
+            config.addProperty("count", entry.getValue()[1]);
+            config.addProperty("mixins", entry.getValue()[2]);
+            configArray.add(config);
+        }
+        root.add("configs", configArray);
+        
+        JsonArray costArray = new JsonArray();
+        for (ICost cost : CostAudit.getInstance().getCosts()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("config", cost.getConfig());
+            object.addProperty("mixin", cost.getMixin());
+            object.addProperty("activity", cost.getActivity());
+            object.addProperty("element", cost.getElement());
+            object.addProperty("time", cost.getTime() * 1.0E-6D);
+            object.addProperty("allocatedBytes", cost.getAllocatedBytes());
+            object.addProperty("count", cost.getCount());
+            costArray.add(object);
+        }
+        root.add("costs", costArray);
+        
+        return root;
+    }
+    
+    private static JsonObject toJson(Section section) {
+        JsonObject object = new JsonObject();
+        object.addProperty("name", section.getName());
+        if (!section.getName().equals(section.getInfo())) {
+            object.addProperty("info", section.getInfo());
+        }
+        object.addProperty("root", section.isRoot());
+        object.addProperty("fine", section.isFine());
+        if (section.getDelegate() != section) {
+            object.addProperty("delegate", section.getDelegate().getName());
+        }
+        object.addProperty("totalTime", section.getTotalTime());
+        object.addProperty("count", section.getTotalCount());
+        object.addProperty("averageTime", section.getTotalAverageTime());
+        JsonArray times = new JsonArray();
+        for (long time : section.getTimes()) {
+            times.add(time);
+        }
+        object.add("times", times);
+        return object;
+    }
+    
+    /**
+     * Get the data from the specified profilers as CSV, with one row per
+     * section
+     * 
+     * @param profilers Profilers to export
+     * @return CSV representation of the profiler data
+     */
+    public static String toCsv(Collection<Profiler> profilers) {
+        StringBuilder csv = new StringBuilder(ProfilerExporter.CSV_HEADER);
+        for (Profiler profiler : profilers) {
+            for (Section section : profiler.getSections()) {
+                Section delegate = section.getDelegate();
+                ProfilerExporter.appendCsv(csv, profiler.toString()).append(',');
+                ProfilerExporter.appendCsv(csv, section.getName()).append(',');
+                ProfilerExporter.appendCsv(csv, section.getInfo()).append(',');
+                csv.append(section.isRoot()).append(',').append(section.isFine()).append(',');
+                ProfilerExporter.appendCsv(csv, delegate != section ? delegate.getName() : "").append(',');
+                csv.append(section.getTotalTime()).append(',').append(section.getTotalCount()).append(',');
+                csv.append(String.format(Locale.ROOT, "%.3f", section.getTotalAverageTime())).append('\n');
+            }
+        }
+        return csv.toString();
+    }
+    
+    private static StringBuilder appendCsv(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return csv.append(value);
+        }
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+    
+}